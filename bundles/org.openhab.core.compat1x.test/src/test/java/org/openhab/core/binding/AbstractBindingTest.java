@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.binding;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.core.items.Item;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.types.Command;
+import org.openhab.model.item.binding.AbstractGenericBindingProvider;
+import org.openhab.model.item.binding.BindingConfigParseException;
+
+public class AbstractBindingTest {
+
+    private static class TestProvider extends AbstractGenericBindingProvider {
+
+        @Override
+        public String getBindingType() {
+            return "test";
+        }
+
+        @Override
+        public void validateItemType(Item item, String bindingConfig) throws BindingConfigParseException {
+        }
+
+        @Override
+        public void processBindingConfiguration(String context, Item item, String bindingConfig)
+                throws BindingConfigParseException {
+            super.processBindingConfiguration(context, item, bindingConfig);
+            addBindingConfig(item, new BindingConfig() {
+            });
+        }
+    }
+
+    /** lists an item which it does not provide a binding for */
+    private static class InconsistentProvider extends TestProvider {
+
+        @Override
+        public boolean providesBindingFor(String itemName) {
+            return !"X".equals(itemName) && super.providesBindingFor(itemName);
+        }
+    }
+
+    /** does not list its items and does not notify the binding about changes */
+    private static class SilentProvider extends TestProvider {
+
+        @Override
+        public Collection<String> getItemNames() {
+            return null;
+        }
+
+        @Override
+        public void addBindingChangeListener(BindingChangeListener listener) {
+        }
+    }
+
+    private static class TestBinding extends AbstractBinding<TestProvider> {
+
+        private final List<String> received = new ArrayList<String>();
+
+        @Override
+        protected void internalReceiveCommand(String itemName, Command command) {
+            received.add(itemName);
+        }
+
+        // does not call super, the index must be maintained regardless
+        @Override
+        public void bindingChanged(BindingProvider provider, String itemName) {
+        }
+    }
+
+    @Test
+    public void testEventsAreFilteredByBoundItems() throws Exception {
+        TestProvider provider = new TestProvider();
+        provider.processBindingConfiguration("a.items", new SwitchItem("A"), "");
+
+        TestBinding binding = new TestBinding();
+        binding.addBindingProvider(provider);
+        assertTrue(binding.providesBindingFor("A"));
+        assertFalse(binding.providesBindingFor("B"));
+
+        provider.processBindingConfiguration("b.items", new SwitchItem("B"), "");
+        binding.receiveCommand("A", OnOffType.ON);
+        binding.receiveCommand("B", OnOffType.ON);
+        binding.receiveCommand("C", OnOffType.ON);
+        assertEquals(2, binding.received.size());
+
+        provider.removeConfigurations("a.items");
+        assertFalse(binding.providesBindingFor("A"));
+        assertTrue(binding.providesBindingFor("B"));
+
+        binding.removeBindingProvider(provider);
+        assertFalse(binding.providesBindingFor("B"));
+    }
+
+    @Test
+    public void testIndexUsesProvidesBindingForOnRebuild() throws Exception {
+        TestProvider provider = new InconsistentProvider();
+        TestBinding binding = new TestBinding();
+        assertFalse(binding.bindingsExist());
+
+        provider.processBindingConfiguration("x.items", new SwitchItem("X"), "");
+        binding.addBindingProvider(provider);
+        assertFalse(binding.providesBindingFor("X"));
+        // whether bindings exist is decided by the providers
+        assertTrue(binding.bindingsExist());
+
+        provider.processBindingConfiguration("a.items", new SwitchItem("A"), "");
+        assertTrue(binding.providesBindingFor("A"));
+        assertTrue(binding.bindingsExist());
+
+        // a complete rebuild has to come to the same result as the single changes
+        binding.removeBindingProvider(provider);
+        binding.addBindingProvider(provider);
+        assertTrue(binding.providesBindingFor("A"));
+        assertFalse(binding.providesBindingFor("X"));
+    }
+
+    @Test
+    public void testProvidersAreAskedForItemsMissingInIndex() throws Exception {
+        TestProvider provider = new SilentProvider();
+        TestBinding binding = new TestBinding();
+        binding.addBindingProvider(provider);
+        assertFalse(binding.bindingsExist());
+        assertFalse(binding.providesBindingFor("A"));
+
+        provider.processBindingConfiguration("a.items", new SwitchItem("A"), "");
+        assertTrue(binding.bindingsExist());
+        binding.receiveCommand("A", OnOffType.ON);
+        binding.receiveCommand("B", OnOffType.ON);
+        assertEquals(1, binding.received.size());
+        assertTrue(binding.providesBindingFor("A"));
+    }
+
+}
@@ -10,6 +10,12 @@ package org.openhab.core.compat1x.internal;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.library.items.ColorItem;
 import org.eclipse.smarthome.core.library.items.ContactItem;
@@ -19,6 +25,8 @@ import org.eclipse.smarthome.core.library.items.NumberItem;
 import org.eclipse.smarthome.core.library.items.RollershutterItem;
 import org.eclipse.smarthome.core.library.items.StringItem;
 import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.library.types.StringType;
 import org.eclipse.smarthome.core.types.UnDefType;
 import org.junit.Test;
@@ -95,4 +103,79 @@ public class ItemMapperTest {
         assertEquals(new org.openhab.core.library.types.StringType("ABC"), ItemMapper.mapToOpenHABItem(item).getState());
     }
 
+    @Test
+    public void testProxyItemState() {
+        NumberItem eshItem = new NumberItem("test");
+        Item item = ItemMapper.mapToOpenHABItem(eshItem, true);
+        assertTrue(item instanceof org.openhab.core.library.items.NumberItem);
+        assertEquals("test", item.getName());
+        assertEquals(org.openhab.core.types.UnDefType.NULL, item.getState());
+
+        eshItem.setState(new DecimalType(21));
+        assertEquals(new org.openhab.core.library.types.DecimalType(21), item.getState());
+        assertEquals(new org.openhab.core.library.types.DecimalType(21),
+                item.getStateAs(org.openhab.core.library.types.DecimalType.class));
+    }
+
+    @Test
+    public void testProxyGroupItem() {
+        SwitchItem eshMember = new SwitchItem("member");
+        GroupItem eshGroup = new GroupItem("group", new SwitchItem("baseItem"));
+        eshGroup.addMember(eshMember);
+        org.openhab.core.items.GroupItem group = (org.openhab.core.items.GroupItem) ItemMapper
+                .mapToOpenHABItem(eshGroup, true);
+        assertEquals(1, group.getMembers().size());
+        Item member = group.getMembers().get(0);
+
+        eshMember.setState(OnOffType.ON);
+        assertEquals(org.openhab.core.library.types.OnOffType.ON, member.getState());
+        eshGroup.setState(OnOffType.OFF);
+        assertEquals(org.openhab.core.library.types.OnOffType.OFF, group.getState());
+    }
+
+    @Test
+    public void testMappingContextMapsEveryItemOnce() {
+        // 10,000 items in 10 chains of 20 nested groups, every item is a member of 5 groups
+        List<org.eclipse.smarthome.core.items.Item> eshItems = new ArrayList<>();
+        GroupItem[] groups = new GroupItem[200];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = new GroupItem("group" + i);
+            if (i % 20 != 0) {
+                groups[i - 1].addMember(groups[i]);
+            }
+            eshItems.add(groups[i]);
+        }
+        for (int i = 0; i < 10000; i++) {
+            NumberItem item = new NumberItem("item" + i);
+            for (int j = 0; j < 5; j++) {
+                groups[(i + j * 41) % groups.length].addMember(item);
+            }
+            eshItems.add(item);
+        }
+
+        long start = System.nanoTime();
+        Map<String, Item> mappedItems = new HashMap<>();
+        List<Item> items = new ArrayList<>();
+        for (org.eclipse.smarthome.core.items.Item eshItem : eshItems) {
+            items.add(ItemMapper.mapToOpenHABItem(eshItem, false, mappedItems));
+        }
+        long duration = System.nanoTime() - start;
+        assertTrue("mapping took " + duration / 1000000 + "ms", duration < 5000000000L);
+
+        // no item has been mapped more than once
+        Map<Item, Boolean> instances = new IdentityHashMap<>();
+        for (Item item : items) {
+            instances.put(item, Boolean.TRUE);
+            if (item instanceof org.openhab.core.items.GroupItem) {
+                for (Item member : ((org.openhab.core.items.GroupItem) item).getMembers()) {
+                    assertSame(mappedItems.get(member.getName()), member);
+                    instances.put(member, Boolean.TRUE);
+                }
+            }
+        }
+        assertEquals(eshItems.size(), instances.size());
+        assertEquals(eshItems.size(), mappedItems.size());
+        assertEquals(5 * 10000 / 200 + 1, ((org.openhab.core.items.GroupItem) items.get(0)).getMembers().size());
+    }
+
 }
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.compat1x.internal;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.eclipse.smarthome.core.library.types.DateTimeType;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.HSBType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.PercentType;
+import org.eclipse.smarthome.core.library.types.PointType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.library.types.UpDownType;
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.junit.Test;
+
+public class TypeMapperTest {
+
+    @Test
+    public void testConstantMapping() {
+        assertSame(org.openhab.core.types.UnDefType.NULL, TypeMapper.mapToOpenHABType(UnDefType.NULL));
+        assertSame(org.openhab.core.types.UnDefType.UNDEF, TypeMapper.mapToOpenHABType(UnDefType.UNDEF));
+        assertSame(org.openhab.core.library.types.OnOffType.ON, TypeMapper.mapToOpenHABType(OnOffType.ON));
+        assertSame(org.openhab.core.library.types.UpDownType.DOWN, TypeMapper.mapToOpenHABType(UpDownType.DOWN));
+
+        assertSame(UnDefType.NULL, TypeMapper.mapToESHType(org.openhab.core.types.UnDefType.NULL));
+        assertSame(OnOffType.OFF, TypeMapper.mapToESHType(org.openhab.core.library.types.OnOffType.OFF));
+        assertSame(UpDownType.UP, TypeMapper.mapToESHType(org.openhab.core.library.types.UpDownType.UP));
+
+        assertNull(TypeMapper.mapToOpenHABType(null));
+        assertNull(TypeMapper.mapToESHType(null));
+    }
+
+    @Test
+    public void testValueMapping() {
+        assertEquals(new org.openhab.core.library.types.StringType("ABC"),
+                TypeMapper.mapToOpenHABType(new StringType("ABC")));
+        assertEquals(new StringType("ABC"),
+                TypeMapper.mapToESHType(new org.openhab.core.library.types.StringType("ABC")));
+
+        org.openhab.core.types.Type decimal = TypeMapper.mapToOpenHABType(new DecimalType("21.5"));
+        assertEquals(org.openhab.core.library.types.DecimalType.class, decimal.getClass());
+        assertEquals(new BigDecimal("21.5"), ((org.openhab.core.library.types.DecimalType) decimal).toBigDecimal());
+        assertEquals(new DecimalType("-3.25"),
+                TypeMapper.mapToESHType(new org.openhab.core.library.types.DecimalType("-3.25")));
+
+        org.openhab.core.types.Type percent = TypeMapper.mapToOpenHABType(new PercentType(42));
+        assertEquals(org.openhab.core.library.types.PercentType.class, percent.getClass());
+        assertEquals(new org.openhab.core.library.types.PercentType(42), percent);
+        assertEquals(PercentType.class,
+                TypeMapper.mapToESHType(new org.openhab.core.library.types.PercentType(42)).getClass());
+    }
+
+    @Test
+    public void testComplexTypeMapping() {
+        HSBType hsb = new HSBType(new DecimalType(120), new PercentType(50), new PercentType(75));
+        org.openhab.core.types.Type ohHsb = TypeMapper.mapToOpenHABType(hsb);
+        assertEquals(org.openhab.core.library.types.HSBType.class, ohHsb.getClass());
+        assertEquals("120,50,75", ohHsb.toString());
+        assertEquals(hsb.toString(), TypeMapper.mapToESHType(ohHsb).toString());
+
+        PointType point = new PointType(new DecimalType("52.5"), new DecimalType("13.4"), new DecimalType("34"));
+        org.openhab.core.types.Type ohPoint = TypeMapper.mapToOpenHABType(point);
+        assertEquals(org.openhab.core.library.types.PointType.class, ohPoint.getClass());
+        PointType eshPoint = (PointType) TypeMapper.mapToESHType(ohPoint);
+        assertEquals(0, new BigDecimal("52.5").compareTo(eshPoint.getLatitude().toBigDecimal()));
+        assertEquals(0, new BigDecimal("13.4").compareTo(eshPoint.getLongitude().toBigDecimal()));
+        assertEquals(0, new BigDecimal("34").compareTo(eshPoint.getAltitude().toBigDecimal()));
+    }
+
+    @Test
+    public void testDateTimeMapping() {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(1444000000123L);
+
+        org.openhab.core.library.types.DateTimeType ohDateTime = (org.openhab.core.library.types.DateTimeType) TypeMapper
+                .mapToOpenHABType(new DateTimeType(calendar));
+        assertEquals(calendar, ohDateTime.getCalendar());
+        assertNotSame(calendar, ohDateTime.getCalendar());
+
+        DateTimeType eshDateTime = (DateTimeType) TypeMapper.mapToESHType(ohDateTime);
+        assertEquals(1444000000123L, eshDateTime.getCalendar().getTimeInMillis());
+        assertEquals(calendar.getTimeZone(), eshDateTime.getCalendar().getTimeZone());
+    }
+
+    @Test
+    public void testDecimalStatesAreShared() {
+        org.openhab.core.types.Type first = TypeMapper.mapToOpenHABType(new DecimalType("100"));
+        org.openhab.core.types.Type second = TypeMapper.mapToOpenHABType(new DecimalType("100"));
+        assertSame(first, second);
+
+        // different scales must not be folded into the same instance
+        org.openhab.core.types.Type scaled = TypeMapper.mapToOpenHABType(new DecimalType("100.0"));
+        assertEquals("100.0", scaled.toString());
+
+        assertSame(TypeMapper.mapToESHType(new org.openhab.core.library.types.PercentType(50)),
+                TypeMapper.mapToESHType(new org.openhab.core.library.types.PercentType(50)));
+        assertEquals(4, TypeMapper.getStateCaches().size());
+    }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.events;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.EventType;
+import org.openhab.core.types.State;
+import org.osgi.service.event.Event;
+
+public class AbstractEventSubscriberTest {
+
+    private String receivedItem;
+    private Object received;
+
+    private AbstractEventSubscriber subscriber = new AbstractEventSubscriber() {
+        @Override
+        public void receiveCommand(String itemName, Command command) {
+            receivedItem = itemName;
+            received = command;
+        }
+
+        @Override
+        public void receiveUpdate(String itemName, State newState) {
+            receivedItem = itemName;
+            received = newState;
+        }
+    };
+
+    @Test
+    public void testParseEventType() {
+        assertEquals(EventType.UPDATE, AbstractEventSubscriber.parseEventType("openhab/update/Item1"));
+        assertEquals(EventType.COMMAND, AbstractEventSubscriber.parseEventType("openhab/command/Item1"));
+        assertEquals(EventType.COMMAND, AbstractEventSubscriber.parseEventType("openhab/command//Item1"));
+
+        assertNull(AbstractEventSubscriber.parseEventType("openhab/update"));
+        assertNull(AbstractEventSubscriber.parseEventType("openhab/update/"));
+        assertNull(AbstractEventSubscriber.parseEventType("openhab/updates/Item1"));
+        assertNull(AbstractEventSubscriber.parseEventType("openhab/upd/Item1"));
+        assertNull(AbstractEventSubscriber.parseEventType("openhabx/update/Item1"));
+        assertNull(AbstractEventSubscriber.parseEventType("smarthome/update/Item1"));
+        assertNull(AbstractEventSubscriber.parseEventType(null));
+    }
+
+    @Test
+    public void testHandleEvent() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("item", "Item1");
+        properties.put("state", new StringType("ABC"));
+        subscriber.handleEvent(new Event("openhab/update/Item1", properties));
+        assertEquals("Item1", receivedItem);
+        assertEquals(new StringType("ABC"), received);
+
+        properties.clear();
+        properties.put("item", "Item2");
+        properties.put("command", OnOffType.ON);
+        subscriber.handleEvent(new Event("openhab/command/Item2", properties));
+        assertEquals("Item2", receivedItem);
+        assertEquals(OnOffType.ON, received);
+
+        received = null;
+        subscriber.handleEvent(new Event("openhab/other/Item2", properties));
+        assertNull(received);
+    }
+
+}
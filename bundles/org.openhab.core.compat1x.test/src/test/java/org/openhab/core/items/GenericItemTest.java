@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.types.State;
+
+public class GenericItemTest {
+
+    private static class RecordingListener implements StateChangeListener {
+
+        private final List<String> events;
+
+        private final String name;
+
+        RecordingListener(List<String> events, String name) {
+            this.events = events;
+            this.name = name;
+        }
+
+        @Override
+        public void stateChanged(Item item, State oldState, State newState) {
+            events.add(name + " changed " + oldState + "->" + newState);
+        }
+
+        @Override
+        public void stateUpdated(Item item, State state) {
+            events.add(name + " updated " + state);
+        }
+    }
+
+    @Test
+    public void testListenersAreNotifiedInOrder() {
+        List<String> events = new ArrayList<String>();
+        RecordingListener listener1 = new RecordingListener(events, "1");
+        RecordingListener listener2 = new RecordingListener(events, "2");
+        SwitchItem item = new SwitchItem("item");
+        item.addStateChangeListener(listener1);
+        item.addStateChangeListener(listener2);
+        item.addStateChangeListener(listener1);
+
+        item.setState(OnOffType.ON);
+        assertEquals("[1 updated ON, 2 updated ON, 1 changed Uninitialized->ON, 2 changed Uninitialized->ON]", events.toString());
+
+        events.clear();
+        item.setState(OnOffType.ON);
+        assertEquals("[1 updated ON, 2 updated ON]", events.toString());
+    }
+
+    @Test
+    public void testRemovedListenersAreNotNotified() {
+        List<String> events = new ArrayList<String>();
+        RecordingListener listener1 = new RecordingListener(events, "1");
+        RecordingListener listener2 = new RecordingListener(events, "2");
+        SwitchItem item = new SwitchItem("item");
+        item.addStateChangeListener(listener1);
+        item.addStateChangeListener(listener2);
+        item.removeStateChangeListener(listener1);
+
+        item.setState(OnOffType.OFF);
+        assertEquals("[2 updated OFF, 2 changed Uninitialized->OFF]", events.toString());
+
+        events.clear();
+        item.removeStateChangeListener(listener2);
+        item.setState(OnOffType.ON);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testListenerCanRemoveItselfDuringNotification() {
+        final List<String> events = new ArrayList<String>();
+        final SwitchItem item = new SwitchItem("item");
+        StateChangeListener listener = new RecordingListener(events, "1") {
+            @Override
+            public void stateUpdated(Item updatedItem, State state) {
+                super.stateUpdated(updatedItem, state);
+                item.removeStateChangeListener(this);
+            }
+        };
+        item.addStateChangeListener(listener);
+
+        item.setState(OnOffType.ON);
+        item.setState(OnOffType.OFF);
+        assertEquals("[1 updated ON, 1 changed Uninitialized->ON]", events.toString());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedListenersField() {
+        List<String> events = new ArrayList<String>();
+        RecordingListener listener1 = new RecordingListener(events, "1");
+        RecordingListener listener2 = new RecordingListener(events, "2");
+        SwitchItem item = new SwitchItem("item");
+        assertTrue(item.listeners.add(listener1));
+        assertFalse(item.listeners.add(listener1));
+        item.addStateChangeListener(listener2);
+        assertEquals(2, item.listeners.size());
+        assertTrue(item.listeners.contains(listener2));
+
+        Iterator<StateChangeListener> iterator = item.listeners.iterator();
+        iterator.next();
+        iterator.remove();
+        assertTrue(item.listeners.remove(listener2));
+        assertTrue(item.listeners.isEmpty());
+
+        item.setState(OnOffType.ON);
+        assertTrue(events.isEmpty());
+    }
+
+}
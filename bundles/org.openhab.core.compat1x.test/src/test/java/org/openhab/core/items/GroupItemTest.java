@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.ArithmeticGroupFunction;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+public class GroupItemTest {
+
+    private static final String[] VALUES = { "1", "2.50", "-3", "2.5", "1E+1", "0.125" };
+
+    @Test
+    public void testIncrementalNumericFunctions() {
+        GroupFunction[] functions = { new ArithmeticGroupFunction.Sum(), new ArithmeticGroupFunction.Avg(),
+                new ArithmeticGroupFunction.Min(), new ArithmeticGroupFunction.Max() };
+        for (GroupFunction function : functions) {
+            Random random = new Random(42);
+            GroupItem group = new GroupItem("group", new NumberItem("base"), function);
+            List<NumberItem> items = new ArrayList<NumberItem>();
+            for (int i = 0; i < 10; i++) {
+                NumberItem item = new NumberItem("item" + i);
+                items.add(item);
+                group.addMember(item);
+            }
+            for (int i = 0; i < 500; i++) {
+                NumberItem item = items.get(random.nextInt(items.size()));
+                int value = random.nextInt(VALUES.length + 1);
+                item.setState(value == VALUES.length ? UnDefType.UNDEF : new DecimalType(VALUES[value]));
+                if (i % 50 == 0) {
+                    group.removeMember(items.get(1 + i % (items.size() - 1)));
+                } else if (i % 50 == 25) {
+                    group.addMember(items.get(1 + i % (items.size() - 1)));
+                }
+                // the group state is only calculated on updates of its members
+                items.get(0).setState(items.get(0).getState());
+                assertStateRecalculated(group);
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalLogicalFunctions() {
+        GroupFunction[] functions = { new ArithmeticGroupFunction.And(OnOffType.ON, OnOffType.OFF),
+                new ArithmeticGroupFunction.Or(OnOffType.ON, OnOffType.OFF),
+                new ArithmeticGroupFunction.NAnd(OnOffType.ON, OnOffType.OFF),
+                new ArithmeticGroupFunction.NOr(OnOffType.ON, OnOffType.OFF) };
+        for (GroupFunction function : functions) {
+            Random random = new Random(42);
+            GroupItem group = new GroupItem("group", new SwitchItem("base"), function);
+            List<SwitchItem> items = new ArrayList<SwitchItem>();
+            for (int i = 0; i < 3; i++) {
+                SwitchItem item = new SwitchItem("item" + i);
+                items.add(item);
+                group.addMember(item);
+            }
+            for (int i = 0; i < 200; i++) {
+                items.get(random.nextInt(items.size())).setState(random.nextBoolean() ? OnOffType.ON : OnOffType.OFF);
+                assertStateRecalculated(group);
+            }
+        }
+    }
+
+    @Test
+    public void testFunctionCanBeExchanged() {
+        GroupItem group = new GroupItem("group", new NumberItem("base"), new ArithmeticGroupFunction.Sum());
+        NumberItem item1 = new NumberItem("item1");
+        NumberItem item2 = new NumberItem("item2");
+        group.addMember(item1);
+        group.addMember(item2);
+        item1.setState(new DecimalType(2));
+        item2.setState(new DecimalType(4));
+        assertEquals(new DecimalType(6), group.getState());
+
+        group.function = new ArithmeticGroupFunction.Max();
+        item1.setState(new DecimalType(3));
+        assertEquals(new DecimalType(4), group.getState());
+    }
+
+    @Test
+    public void testAllMembersAreInvalidatedInNestedGroups() {
+        GroupItem floor = new GroupItem("floor");
+        GroupItem room = new GroupItem("room");
+        GroupItem lights = new GroupItem("lights");
+        SwitchItem light1 = new SwitchItem("light1");
+        SwitchItem light2 = new SwitchItem("light2");
+        floor.addMember(room);
+        room.addMember(lights);
+        lights.addMember(light1);
+        assertEquals(1, floor.getAllMembers().size());
+        floor.getAllMembers().clear();
+        assertEquals(1, floor.getAllMembers().size());
+
+        lights.addMember(light2);
+        assertEquals(2, floor.getAllMembers().size());
+        assertTrue(floor.getAllMembers().contains(light2));
+
+        room.removeMember(lights);
+        assertTrue(floor.getAllMembers().isEmpty());
+        lights.addMember(new SwitchItem("light3"));
+        assertTrue(floor.getAllMembers().isEmpty());
+    }
+
+    @Test
+    public void testMembersViewUpdatesAllMembers() {
+        GroupItem floor = new GroupItem("floor");
+        GroupItem room = new GroupItem("room");
+        SwitchItem light = new SwitchItem("light");
+        floor.getMembers().add(room);
+        assertTrue(floor.getAllMembers().isEmpty());
+
+        room.getMembers().add(light);
+        assertEquals(1, floor.getAllMembers().size());
+
+        room.getMembers().remove(light);
+        assertTrue(floor.getAllMembers().isEmpty());
+        assertTrue(room.getMembers().isEmpty());
+    }
+
+    @Test
+    public void testMembersViewRejectsPositionalModifications() {
+        GroupItem group = new GroupItem("group");
+        SwitchItem light1 = new SwitchItem("light1");
+        SwitchItem light2 = new SwitchItem("light2");
+        group.getMembers().add(light1);
+        try {
+            group.getMembers().add(0, light2);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            group.getMembers().set(0, light2);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(1, group.getMembers().size());
+        assertSame(light1, group.getMembers().get(0));
+    }
+
+    @Test
+    public void testAllMembersOfRecursiveGroups() {
+        GroupItem group1 = new GroupItem("group1");
+        GroupItem group2 = new GroupItem("group2");
+        SwitchItem item = new SwitchItem("item");
+        group1.addMember(group2);
+        group2.addMember(group1);
+        group2.addMember(item);
+        assertEquals(1, group1.getAllMembers().size());
+        assertEquals(1, group2.getAllMembers().size());
+
+        group2.removeMember(item);
+        assertTrue(group1.getAllMembers().isEmpty());
+    }
+
+    private void assertStateRecalculated(GroupItem group) {
+        State expected = group.function.calculate(group.getMembers());
+        // equal decimals may differ in their scale, e.g. the maximum of 2.5 and 2.50
+        assertEquals(group.function.getClass().getSimpleName(), expected, group.getState());
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.library.items.SwitchItem;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ItemNameIndexTest {
+
+    private static final String[] NAMES = { "Light", "Light_Kitchen", "Light_Living", "LightSensor", "Lights",
+            "Temperature", "Temperature_Kitchen", "Window_Kitchen" };
+
+    private ItemNameIndex index;
+
+    @Before
+    public void setUp() {
+        index = new ItemNameIndex();
+        for (String name : NAMES) {
+            index.add(new SwitchItem(name));
+        }
+    }
+
+    @Test
+    public void testPatternsMatchLikeTheItemRegistry() {
+        String[] patterns = { "Light", "Light*", "Light_*", "Light?", "*Kitchen", "Light_Kitchen|Window_Kitchen",
+                "Temp.*", "Light_[KL]i.*", "Lights+", "Li[a-z]+_Kitchen", "Unknown*", "" };
+        for (String pattern : patterns) {
+            String regex = pattern.replace("?", ".?").replace("*", ".*?");
+            List<String> expected = new ArrayList<>();
+            for (String name : NAMES) {
+                if (name.matches(regex)) {
+                    expected.add(name);
+                }
+            }
+            // the index returns the items sorted by their names
+            Collections.sort(expected);
+            assertEquals(pattern, expected, match(pattern));
+        }
+    }
+
+    @Test
+    public void testPrefixOfPattern() {
+        assertEquals("Light_", ItemNameIndex.compile("Light_*").prefix);
+        assertEquals("Light", ItemNameIndex.compile("Light?").prefix);
+        assertEquals("Light", ItemNameIndex.compile("Lights+").prefix);
+        assertEquals("", ItemNameIndex.compile("Light|Window").prefix);
+        assertEquals("", ItemNameIndex.compile("*Kitchen").prefix);
+        assertNull(ItemNameIndex.compile("Light").regex);
+        assertSame(ItemNameIndex.compile("Light*"), ItemNameIndex.compile("Light*"));
+    }
+
+    @Test
+    public void testIndexIsUpdated() {
+        index.remove(new SwitchItem("Light_Kitchen"));
+        index.add(new SwitchItem("Light_Bath"));
+        assertEquals("[Light_Bath, Light_Living]", match("Light_*").toString());
+        index.clear();
+        assertTrue(match("*").isEmpty());
+    }
+
+    private List<String> match(String pattern) {
+        List<String> names = new ArrayList<>();
+        for (Item item : index.match(pattern)) {
+            names.add(item.getName());
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.persistence.FilterCriteria.AggregateFunction;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+public class HistoricItemAggregatorTest {
+
+    private static HistoricItem historicItem(final long timestamp, final State state) {
+        return new HistoricItem() {
+            @Override
+            public Date getTimestamp() {
+                return new Date(timestamp);
+            }
+
+            @Override
+            public State getState() {
+                return state;
+            }
+
+            @Override
+            public String getName() {
+                return "item";
+            }
+
+            @Override
+            public String toString() {
+                return timestamp + "=" + state;
+            }
+        };
+    }
+
+    private static List<HistoricItem> series(double... values) {
+        List<HistoricItem> series = new ArrayList<HistoricItem>();
+        for (int i = 0; i < values.length; i++) {
+            series.add(historicItem(i * 1000L, new DecimalType(values[i])));
+        }
+        return series;
+    }
+
+    private static String timestamps(Iterable<HistoricItem> items) {
+        StringBuilder result = new StringBuilder();
+        for (HistoricItem item : items) {
+            result.append(result.length() > 0 ? "," : "").append(item.getTimestamp().getTime() / 1000);
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testMinMaxLast() {
+        List<HistoricItem> series = series(3, 1, 2, 7, 9, 8, 4);
+
+        assertEquals("1,3,6", timestamps(HistoricItemAggregator.aggregate(series, AggregateFunction.MIN, 3000)));
+        assertEquals("0,4,6", timestamps(HistoricItemAggregator.aggregate(series, AggregateFunction.MAX, 3000)));
+        assertEquals("2,5,6", timestamps(HistoricItemAggregator.aggregate(series, AggregateFunction.LAST, 3000)));
+    }
+
+    @Test
+    public void testAverage() {
+        List<HistoricItem> series = series(1, 2, 4, 8, 16);
+        series.add(3, historicItem(2500, OnOffType.ON));
+
+        List<HistoricItem> result = HistoricItemAggregator.aggregate(series, AggregateFunction.AVG, 2000);
+        assertEquals("0,2,4", timestamps(result));
+        assertEquals(1.5, ((DecimalType) result.get(0).getState()).doubleValue(), 0.0);
+        assertEquals(6.0, ((DecimalType) result.get(1).getState()).doubleValue(), 0.0);
+        assertEquals(16.0, ((DecimalType) result.get(2).getState()).doubleValue(), 0.0);
+        assertEquals("item", result.get(0).getName());
+    }
+
+    @Test
+    public void testLargestTriangleThreeBuckets() {
+        // a flat series with one peak, which must survive the decimation
+        double[] values = new double[100];
+        values[42] = 50;
+        List<HistoricItem> result = HistoricItemAggregator.aggregate(series(values), AggregateFunction.LTTB, 10000);
+
+        assertEquals(12, result.size());
+        assertEquals(0, result.get(0).getTimestamp().getTime());
+        assertEquals(99000, result.get(11).getTimestamp().getTime());
+        assertTrue(timestamps(result).contains(",42,"));
+    }
+
+    @Test
+    public void testLargestTriangleThreeBucketsWithoutValuesAtTheEnds() {
+        List<HistoricItem> series = new ArrayList<HistoricItem>();
+        series.add(historicItem(0, UnDefType.UNDEF));
+        series.add(historicItem(1000, new DecimalType(5)));
+        series.add(historicItem(2000, UnDefType.UNDEF));
+
+        List<HistoricItem> result = HistoricItemAggregator.aggregate(series, AggregateFunction.LTTB, 10000);
+        assertEquals("0,1,2", timestamps(result));
+    }
+
+    @Test
+    public void testFallbackAppliesOrderingAndPaging() {
+        final List<HistoricItem> series = series(3, 1, 2, 7, 9, 8, 4);
+        final List<FilterCriteria> queries = new ArrayList<FilterCriteria>();
+        QueryablePersistenceService service = new QueryablePersistenceService() {
+            @Override
+            public String getName() {
+                return "test";
+            }
+
+            @Override
+            public void store(org.openhab.core.items.Item item) {
+            }
+
+            @Override
+            public void store(org.openhab.core.items.Item item, String alias) {
+            }
+
+            @Override
+            public Iterable<HistoricItem> query(FilterCriteria filter) {
+                queries.add(filter);
+                return series;
+            }
+        };
+
+        FilterCriteria filter = new FilterCriteria().setItemName("item").setAggregateFunction(AggregateFunction.MAX)
+                .setBucketSize(2000).setOrdering(Ordering.DESCENDING).setPageNumber(1).setPageSize(2);
+        assertEquals("3,0", timestamps(HistoricItemAggregator.query(service, filter)));
+        assertEquals(Ordering.ASCENDING, queries.get(0).getOrdering());
+        assertEquals(Integer.MAX_VALUE, queries.get(0).getPageSize());
+        assertFalse(queries.get(0).isAggregated());
+    }
+
+}
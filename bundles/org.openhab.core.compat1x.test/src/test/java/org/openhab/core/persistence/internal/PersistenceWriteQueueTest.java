@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.junit.Test;
+import org.openhab.core.items.Item;
+import org.openhab.core.persistence.PersistenceService;
+import org.openhab.core.persistence.internal.PersistenceWriteQueue.OverflowPolicy;
+
+public class PersistenceWriteQueueTest {
+
+    /**
+     * Records all stores, the first store waits until the service is released.
+     */
+    private static class BlockingPersistenceService implements PersistenceService {
+
+        final List<String> stores = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch firstStore = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public void store(Item item) {
+            store(item, null);
+        }
+
+        @Override
+        public void store(Item item, String alias) {
+            firstStore.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stores.add(item.getName() + (alias != null ? "/" + alias : "") + "=" + item.getState());
+        }
+    }
+
+    @Test
+    public void testStoresAreCoalesced() throws InterruptedException {
+        BlockingPersistenceService service = new BlockingPersistenceService();
+        PersistenceServiceDelegate delegate = new PersistenceServiceDelegate(service);
+        PersistenceWriteQueue queue = new PersistenceWriteQueue(delegate, 4, 10, OverflowPolicy.COALESCE);
+        delegate.setWriteQueue(queue);
+
+        NumberItem item1 = new NumberItem("item1");
+        NumberItem item2 = new NumberItem("item2");
+        item1.setState(new DecimalType(0));
+        delegate.store(item1);
+        assertTrue(service.firstStore.await(10, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= 5; i++) {
+            item1.setState(new DecimalType(i));
+            delegate.store(item1);
+            item2.setState(new DecimalType(i * 10));
+            delegate.store(item2, "alias");
+        }
+        item1.setState(new DecimalType(99));
+        service.release.countDown();
+        queue.shutdown(10000);
+
+        // the stores are only coalesced once the queue is full
+        assertEquals("[item1=0, item1=1, item2/alias=10, item1=5, item2/alias=50]", service.stores.toString());
+        assertEquals(6, queue.getCoalescedCount());
+        assertEquals(5, queue.getStoredCount());
+        assertEquals(0, queue.getSize());
+    }
+
+    @Test
+    public void testOldestStoresAreDropped() throws InterruptedException {
+        BlockingPersistenceService service = new BlockingPersistenceService();
+        PersistenceServiceDelegate delegate = new PersistenceServiceDelegate(service);
+        PersistenceWriteQueue queue = new PersistenceWriteQueue(delegate, 2, 10, OverflowPolicy.DROP_OLDEST);
+        delegate.setWriteQueue(queue);
+
+        NumberItem item = new NumberItem("item");
+        item.setState(new DecimalType(0));
+        delegate.store(item);
+        assertTrue(service.firstStore.await(10, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= 4; i++) {
+            item.setState(new DecimalType(i));
+            delegate.store(item);
+        }
+        service.release.countDown();
+        queue.shutdown(10000);
+
+        assertEquals("[item=0, item=3, item=4]", service.stores.toString());
+        assertEquals(2, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testWaitingStoresAreDroppedOnShutdownTimeout() throws InterruptedException {
+        BlockingPersistenceService service = new BlockingPersistenceService();
+        PersistenceServiceDelegate delegate = new PersistenceServiceDelegate(service);
+        PersistenceWriteQueue queue = new PersistenceWriteQueue(delegate, 10, 1, OverflowPolicy.BLOCK);
+        delegate.setWriteQueue(queue);
+
+        NumberItem item = new NumberItem("item");
+        item.setState(new DecimalType(0));
+        delegate.store(item);
+        assertTrue(service.firstStore.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= 3; i++) {
+            item.setState(new DecimalType(i));
+            delegate.store(item);
+        }
+
+        // the worker is blocked in the first store
+        queue.shutdown(10);
+        assertEquals(3, queue.getDroppedCount());
+        assertEquals(0, queue.getSize());
+
+        service.release.countDown();
+        delegate.store(item);
+        queue.shutdown(10000);
+        assertEquals("[item=0]", service.stores.toString());
+        assertEquals(4, queue.getDroppedCount());
+    }
+
+    @Test
+    public void testOverflowPolicyNames() {
+        assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.parse("block"));
+        assertEquals(OverflowPolicy.DROP_OLDEST, OverflowPolicy.parse("Drop-Oldest"));
+        assertEquals(OverflowPolicy.COALESCE, OverflowPolicy.parse(" coalesce"));
+        assertNull(OverflowPolicy.parse("unknown"));
+    }
+
+}
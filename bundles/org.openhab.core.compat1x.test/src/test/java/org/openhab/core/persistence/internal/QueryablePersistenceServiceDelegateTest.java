@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.eclipse.smarthome.core.library.items.NumberItem;
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+import org.junit.Test;
+import org.openhab.core.items.Item;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.FilterCriteria.AggregateFunction;
+import org.openhab.core.persistence.QueryablePersistenceService;
+import org.openhab.core.types.State;
+
+public class QueryablePersistenceServiceDelegateTest {
+
+    /**
+     * Generates a given number of historic items with one value per minute while they are iterated.
+     */
+    private static class GeneratingPersistenceService implements QueryablePersistenceService {
+
+        final int size;
+        int generated = 0;
+        int queries = 0;
+
+        GeneratingPersistenceService(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public void store(Item item) {
+        }
+
+        @Override
+        public void store(Item item, String alias) {
+        }
+
+        @Override
+        public Iterable<org.openhab.core.persistence.HistoricItem> query(
+                final org.openhab.core.persistence.FilterCriteria filter) {
+            queries++;
+            return new Iterable<org.openhab.core.persistence.HistoricItem>() {
+                @Override
+                public Iterator<org.openhab.core.persistence.HistoricItem> iterator() {
+                    return new Iterator<org.openhab.core.persistence.HistoricItem>() {
+                        int index = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < size;
+                        }
+
+                        @Override
+                        public org.openhab.core.persistence.HistoricItem next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            generated++;
+                            return historicItem(filter.getItemName(), index++);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+
+        private static org.openhab.core.persistence.HistoricItem historicItem(final String name, final int index) {
+            return new org.openhab.core.persistence.HistoricItem() {
+                @Override
+                public Date getTimestamp() {
+                    return new Date(index * 60000L);
+                }
+
+                @Override
+                public State getState() {
+                    return new DecimalType(index);
+                }
+
+                @Override
+                public String getName() {
+                    return name;
+                }
+            };
+        }
+    }
+
+    @Test
+    public void testResultsAreMappedLazily() {
+        GeneratingPersistenceService service = new GeneratingPersistenceService(1000000);
+        QueryablePersistenceServiceDelegate delegate = new QueryablePersistenceServiceDelegate(service);
+
+        FilterCriteria filter = new FilterCriteria();
+        filter.setItemName("item");
+        Iterable<HistoricItem> result = delegate.query(filter);
+        assertEquals(0, service.generated);
+
+        int count = 0;
+        for (HistoricItem historicItem : result) {
+            assertEquals("item", historicItem.getName());
+            assertEquals(new org.eclipse.smarthome.core.library.types.DecimalType(count), historicItem.getState());
+            assertSame(historicItem.getState(), historicItem.getState());
+            if (++count == 10) {
+                break;
+            }
+        }
+        assertEquals(10, service.generated);
+    }
+
+    @Test
+    public void testResultsAreCached() {
+        GeneratingPersistenceService service = new GeneratingPersistenceService(100);
+        QueryablePersistenceServiceDelegate delegate = new QueryablePersistenceServiceDelegate(service,
+                new QueryResultCache(10, 1000, 60000, 10000));
+
+        assertEquals(100, count(delegate.query(filter("item", 100000, 200000))));
+        assertEquals(100, count(delegate.query(filter("item", 101000, 209000))));
+        assertEquals(1, service.queries);
+
+        // different window and different item
+        assertEquals(100, count(delegate.query(filter("item", 100000, 210000))));
+        assertEquals(100, count(delegate.query(filter("other", 100000, 200000))));
+        assertEquals(3, service.queries);
+
+        delegate.store(new NumberItem("item"));
+        assertEquals(100, count(delegate.query(filter("item", 100000, 200000))));
+        assertEquals(100, count(delegate.query(filter("other", 100000, 200000))));
+        assertEquals(4, service.queries);
+    }
+
+    @Test
+    public void testIncompleteAndLargeResultsAreNotCached() {
+        GeneratingPersistenceService service = new GeneratingPersistenceService(100);
+        QueryablePersistenceServiceDelegate delegate = new QueryablePersistenceServiceDelegate(service,
+                new QueryResultCache(10, 50, 60000, 10000));
+
+        delegate.query(filter("item", 0, 1000)).iterator().next();
+        assertEquals(100, count(delegate.query(filter("item", 0, 1000))));
+        assertEquals(100, count(delegate.query(filter("item", 0, 1000))));
+        assertEquals(3, service.queries);
+        assertEquals(0, delegate.getQueryCache().getSize());
+    }
+
+    @Test
+    public void testAggregatedQueryFallsBackToInMemoryAggregation() {
+        GeneratingPersistenceService service = new GeneratingPersistenceService(100);
+        QueryablePersistenceServiceDelegate delegate = new QueryablePersistenceServiceDelegate(service,
+                new QueryResultCache(10, 1000, 60000, 10000));
+
+        FilterCriteria filter = filter("item", 0, 6000000);
+        filter.setOrdering(FilterCriteria.Ordering.DESCENDING);
+        Iterator<HistoricItem> result = delegate.query(filter, AggregateFunction.AVG, 600000).iterator();
+        HistoricItem latest = result.next();
+        assertEquals(5400000, latest.getTimestamp().getTime());
+        assertEquals(new org.eclipse.smarthome.core.library.types.DecimalType(94.5), latest.getState());
+        assertEquals(10, count(delegate.query(filter, AggregateFunction.AVG, 600000)));
+        assertEquals(0, delegate.getQueryCache().getSize());
+    }
+
+    private static FilterCriteria filter(String itemName, long begin, long end) {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setItemName(itemName);
+        filter.setBeginDate(new Date(begin));
+        filter.setEndDate(new Date(end));
+        return filter;
+    }
+
+    private static int count(Iterable<HistoricItem> result) {
+        int count = 0;
+        for (Iterator<HistoricItem> iterator = result.iterator(); iterator.hasNext(); iterator.next()) {
+            count++;
+        }
+        return count;
+    }
+
+}
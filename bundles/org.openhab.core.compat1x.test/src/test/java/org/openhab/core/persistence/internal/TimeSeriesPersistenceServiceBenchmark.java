@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.HistoricItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the ingest rate and the latency of range queries of the {@link TimeSeriesPersistenceService}. The
+ * numbers depend on the machine, so they are only logged. As the name of the class does not match the test
+ * includes, the benchmark is not part of the default build; it has to be selected explicitly, e.g. with
+ * <code>-Dtest=TimeSeriesPersistenceServiceBenchmark</code>.
+ */
+public class TimeSeriesPersistenceServiceBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesPersistenceServiceBenchmark.class);
+
+    private static final int ITEMS = 10;
+    private static final int ENTRIES = 200000;
+    private static final int QUERIES = 2000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void benchmarkIngestAndRangeQueries() throws IOException {
+        // the first round warms up the JIT and is not reported
+        for (int round = 0; round <= ROUNDS; round++) {
+            File directory = Files.createTempDirectory("timeseries").toFile();
+            TimeSeriesPersistenceService service = new TimeSeriesPersistenceService(directory, 262144);
+            try {
+                Random random = new Random(42);
+                long ingest = ingest(service, random);
+                long query = query(service, random);
+                if (round > 0) {
+                    logger.info("Round {}: {} stores/s, {} us per 1h range query", round,
+                            ENTRIES * 1000000000L / ingest, query / 1000 / QUERIES);
+                }
+            } finally {
+                service.deactivate();
+                delete(directory);
+            }
+        }
+    }
+
+    private static long ingest(TimeSeriesPersistenceService service, Random random) {
+        double value = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < ENTRIES; i++) {
+            value += random.nextGaussian() / 10;
+            service.store("item" + (i % ITEMS), i * 1000L, new DecimalType(Math.round(value * 10) / 10.0));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long query(TimeSeriesPersistenceService service, Random random) {
+        int rows = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            long begin = random.nextInt(ENTRIES - 3600) * 1000L;
+            FilterCriteria filter = new FilterCriteria().setItemName("item" + random.nextInt(ITEMS))
+                    .setBeginDate(new Date(begin)).setEndDate(new Date(begin + 3600000));
+            Iterator<HistoricItem> items = service.query(filter).iterator();
+            while (items.hasNext()) {
+                items.next();
+                rows++;
+            }
+        }
+        long duration = System.nanoTime() - start;
+        logger.debug("{} rows queried", rows);
+        return duration;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
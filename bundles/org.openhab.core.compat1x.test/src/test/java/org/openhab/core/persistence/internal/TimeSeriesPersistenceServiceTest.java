@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.library.types.DateTimeType;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.HSBType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Operator;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+public class TimeSeriesPersistenceServiceTest {
+
+    private File directory;
+    private TimeSeriesPersistenceService service;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("timeseries").toFile();
+        service = new TimeSeriesPersistenceService(directory, 4096);
+    }
+
+    @After
+    public void tearDown() {
+        service.deactivate();
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static List<String> query(TimeSeriesPersistenceService service, FilterCriteria filter) {
+        List<String> result = new ArrayList<>();
+        for (HistoricItem item : service.query(filter)) {
+            result.add(item.getName() + "@" + item.getTimestamp().getTime() + "=" + item.getState());
+        }
+        return result;
+    }
+
+    @Test
+    public void testStatesAreRestored() {
+        State[] states = { new DecimalType("21.5"), new DecimalType("21.5"), new DecimalType("-0.125"),
+                new PercentType(40), OnOffType.ON, OnOffType.OFF, OnOffType.ON, new StringType("ON"),
+                new StringType("hello world"), new HSBType("120,50,100"), new DecimalType(1e12),
+                new DateTimeType("2015-06-01T12:00:00") };
+        long timestamp = 1000000;
+        for (State state : states) {
+            service.store("item", timestamp, state);
+            timestamp += 1000 + (timestamp % 7);
+        }
+        service.store("item", timestamp, UnDefType.UNDEF);
+
+        List<HistoricItem> result = new ArrayList<>();
+        for (HistoricItem item : service.query(new FilterCriteria().setItemName("item").setOrdering(Ordering.ASCENDING))) {
+            result.add(item);
+        }
+        assertEquals(states.length, result.size());
+        for (int i = 0; i < states.length; i++) {
+            assertEquals(states[i].getClass(), result.get(i).getState().getClass());
+            assertEquals(states[i].toString(), result.get(i).getState().toString());
+        }
+    }
+
+    @Test
+    public void testSegmentsAreReopened() {
+        for (int i = 0; i < 5000; i++) {
+            service.store("item", i * 60000L, new DecimalType(i % 100 / 4.0));
+        }
+        assertTrue(new File(directory, "item").listFiles().length > 1);
+        service.deactivate();
+
+        service = new TimeSeriesPersistenceService(directory, 4096);
+        service.store("item", 5000 * 60000L, new DecimalType(0));
+        List<String> result = query(service, new FilterCriteria().setItemName("item").setPageSize(3));
+        assertEquals("[item@300000000=0, item@299940000=24.75, item@299880000=24.5]", result.toString());
+        assertEquals(5001, query(service, new FilterCriteria().setItemName("item")).size());
+    }
+
+    @Test
+    public void testCorruptSegmentIsTruncated() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            service.store("item", i * 1000L, new DecimalType(i));
+        }
+        service.deactivate();
+        // overwrite the encoded entries after the first bytes with garbage which cannot be decoded
+        File segment = new File(new File(directory, "item"), "0000000000.seg");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(TimeSeriesSegment.HEADER_SIZE + 100);
+            for (long i = file.getFilePointer(); i < file.length(); i++) {
+                file.write(0xFF);
+            }
+        }
+
+        service = new TimeSeriesPersistenceService(directory, 4096);
+        List<String> result = query(service, new FilterCriteria().setItemName("item").setOrdering(Ordering.ASCENDING));
+        assertTrue(result.size() > 0 && result.size() < 100);
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals("item@" + i * 1000L + "=" + i, result.get(i));
+        }
+        service.store("item", 1000000L, new DecimalType(-1));
+        service.deactivate();
+
+        service = new TimeSeriesPersistenceService(directory, 4096);
+        List<String> reopened = query(service, new FilterCriteria().setItemName("item").setOrdering(Ordering.ASCENDING));
+        assertEquals(result.size() + 1, reopened.size());
+        assertEquals("item@1000000=-1", reopened.get(result.size()));
+    }
+
+    @Test
+    public void testPartiallyWrittenSegmentIsTruncated() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            service.store("item", i * 1000L, new DecimalType(i));
+        }
+        service.deactivate();
+        // the header claims more entries than have been written
+        File segment = new File(new File(directory, "item"), "0000000000.seg");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(8);
+            file.writeInt(150);
+        }
+
+        service = new TimeSeriesPersistenceService(directory, 4096);
+        assertEquals(100, query(service, new FilterCriteria().setItemName("item")).size());
+        service.store("item", 100000L, new DecimalType(100));
+        List<String> result = query(service, new FilterCriteria().setItemName("item").setPageSize(1));
+        assertEquals("[item@100000=100]", result.toString());
+    }
+
+    @Test
+    public void testUnreadableSegmentsAreSkipped() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            service.store("item", i * 1000L, new DecimalType(i));
+        }
+        service.deactivate();
+        File seriesDirectory = new File(directory, "item");
+        Files.write(new File(seriesDirectory, "backup.seg").toPath(), new byte[] { 1, 2, 3 });
+        Files.write(new File(seriesDirectory, "0000000005.seg").toPath(), new byte[] { 1, 2, 3 });
+
+        service = new TimeSeriesPersistenceService(directory, 4096);
+        service.store("item", 10000L, new DecimalType(10));
+        assertEquals(11, query(service, new FilterCriteria().setItemName("item")).size());
+        assertTrue(new File(seriesDirectory, "0000000006.seg").exists());
+    }
+
+    @Test
+    public void testFilters() {
+        for (int i = 0; i < 100; i++) {
+            service.store("item", i * 1000L, new DecimalType(i % 10));
+            service.store("other", i * 1000L + 500, new DecimalType(i));
+        }
+
+        FilterCriteria range = new FilterCriteria().setItemName("item").setBeginDate(new Date(10000))
+                .setEndDate(new Date(19000)).setOrdering(Ordering.ASCENDING);
+        assertEquals(10, query(service, range).size());
+        assertEquals("item@10000=0", query(service, range).get(0));
+
+        FilterCriteria gte = new FilterCriteria().setItemName("item").setOperator(Operator.GTE)
+                .setState(new DecimalType(8));
+        assertEquals(20, query(service, gte).size());
+        assertEquals("item@99000=9", query(service, gte).get(0));
+        assertEquals(10, query(service, gte.setOperator(Operator.EQ)).size());
+        assertEquals(90, query(service, gte.setOperator(Operator.NEQ)).size());
+        assertEquals(80, query(service, gte.setOperator(Operator.LT)).size());
+        assertEquals(90, query(service, gte.setOperator(Operator.LTE)).size());
+        assertEquals(10, query(service, gte.setOperator(Operator.GT)).size());
+
+        FilterCriteria page = new FilterCriteria().setItemName("item").setPageNumber(2).setPageSize(5);
+        assertEquals("[item@89000=9, item@88000=8, item@87000=7, item@86000=6, item@85000=5]",
+                query(service, page).toString());
+
+        FilterCriteria all = new FilterCriteria().setBeginDate(new Date(1000)).setEndDate(new Date(2000))
+                .setOrdering(Ordering.ASCENDING);
+        assertEquals("[item@1000=1, other@1500=1, item@2000=2]", query(service, all).toString());
+
+        assertTrue(query(service, new FilterCriteria().setItemName("unknown")).isEmpty());
+        assertFalse(new File(directory, "unknown").exists());
+    }
+
+    @Test
+    public void testNamesDifferingInCaseAreStoredSeparately() {
+        service.store("Temp", 1000L, new DecimalType(1));
+        service.store("temp", 2000L, new DecimalType(2));
+        service.store("a.b*c/^D", 3000L, new DecimalType(3));
+
+        // the directory names are unique on case-insensitive file systems as well
+        assertEquals("^temp", TimeSeriesPersistenceService.encode("Temp"));
+        assertTrue(new File(directory, "^temp").isDirectory());
+        assertTrue(new File(directory, "temp").isDirectory());
+        for (String name : new String[] { "Temp", "temp", "a.b*c/^D" }) {
+            String fileName = TimeSeriesPersistenceService.encode(name);
+            assertEquals(fileName.toLowerCase(), fileName);
+            assertEquals(name, TimeSeriesPersistenceService.decode(fileName));
+        }
+        assertEquals("[Temp@1000=1]", query(service, new FilterCriteria().setItemName("Temp")).toString());
+        assertEquals("[Temp@1000=1, temp@2000=2, a.b*c/^D@3000=3]",
+                query(service, new FilterCriteria().setOrdering(Ordering.ASCENDING)).toString());
+    }
+
+    @Test
+    public void testQueriesWhileStoring() throws InterruptedException {
+        final int count = 20000;
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    service.store("item", i, new DecimalType(i));
+                }
+            }
+        };
+        writer.start();
+        int previous = 0;
+        while (previous < count) {
+            int size = 0;
+            long expected = -1;
+            for (HistoricItem item : service.query(new FilterCriteria().setItemName("item").setOrdering(Ordering.ASCENDING))) {
+                assertEquals(++expected, item.getTimestamp().getTime());
+                assertEquals(expected, ((DecimalType) item.getState()).longValue());
+                size++;
+            }
+            assertTrue(size >= previous);
+            previous = size;
+        }
+        writer.join();
+    }
+
+    @Test
+    public void testRangeQueriesOnLargeSeries() {
+        service = new TimeSeriesPersistenceService(directory, 262144);
+        Random random = new Random(42);
+        int items = 10;
+        int entries = 100000;
+        double value = 20;
+
+        for (int i = 0; i < entries; i++) {
+            value += random.nextGaussian() / 10;
+            service.store("item" + (i % items), i * 1000L, new DecimalType(Math.round(value * 10) / 10.0));
+        }
+
+        int queries = 1000;
+        int rows = 0;
+        for (int i = 0; i < queries; i++) {
+            long begin = random.nextInt(entries - 3600) * 1000L;
+            FilterCriteria filter = new FilterCriteria().setItemName("item" + random.nextInt(items))
+                    .setBeginDate(new Date(begin)).setEndDate(new Date(begin + 3600000));
+            rows += query(service, filter).size();
+        }
+
+        assertEquals(queries * 360, rows, queries * 2);
+    }
+
+}
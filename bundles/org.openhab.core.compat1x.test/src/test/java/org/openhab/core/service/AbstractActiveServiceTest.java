@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.service;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AbstractActiveServiceTest {
+
+    /**
+     * A service whose executions take no time, except for one execution which waits until it is released.
+     * The hooks into {@link AbstractActiveService} allow the tests to wait for events instead of waiting for
+     * some time.
+     */
+    private static class TestService extends AbstractActiveService {
+
+        private final boolean pooled;
+        private final AtomicInteger executions = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private volatile boolean overlapped = false;
+
+        /** the number of the execution which waits until it is released, 0 for none */
+        private volatile int blockedExecution = 0;
+        private volatile Thread blockedThread;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        /** counted down once the statistics of the blocked execution have been recorded */
+        private final CountDownLatch blockedRecorded = new CountDownLatch(1);
+
+        /** counted down whenever an execution is skipped, as the previous one is still running */
+        private volatile CountDownLatch skipped = new CountDownLatch(1);
+
+        TestService(boolean pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        protected void execute() {
+            int execution = executions.incrementAndGet();
+            if (concurrent.incrementAndGet() > 1) {
+                overlapped = true;
+            }
+            try {
+                if (execution == blockedExecution) {
+                    blockedThread = Thread.currentThread();
+                    blocked.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+
+        // called by each execution after its statistics have been recorded
+        @Override
+        protected boolean isAdaptive() {
+            if (Thread.currentThread() == blockedThread) {
+                blockedRecorded.countDown();
+            }
+            return false;
+        }
+
+        // called by an execution which is skipped
+        @Override
+        public long getEffectiveRefreshInterval() {
+            skipped.countDown();
+            return super.getEffectiveRefreshInterval();
+        }
+
+        @Override
+        protected long getRefreshInterval() {
+            return 10;
+        }
+
+        @Override
+        protected String getName() {
+            return "test service";
+        }
+
+        @Override
+        protected boolean isPooled() {
+            return pooled;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        AbstractActiveService.shutdownScheduler();
+    }
+
+    @Test
+    public void testPooledExecution() throws InterruptedException {
+        TestService service = new TestService(true);
+        service.blockedExecution = 5;
+        service.setProperlyConfigured(true);
+        assertTrue(service.isRunning());
+        assertTrue(service.blocked.await(5, TimeUnit.SECONDS));
+
+        // shut down while the fifth execution is running, it is completed but not followed by another one
+        service.shutdown();
+        assertFalse(service.isRunning());
+        service.release.countDown();
+        assertTrue(service.blockedRecorded.await(5, TimeUnit.SECONDS));
+        assertEquals(5, service.executions.get());
+        assertEquals(5, service.getStatistics().getExecutionCount());
+    }
+
+    @Test
+    public void testPooledExecutionsDoNotOverlap() throws InterruptedException {
+        TestService service = new TestService(true);
+        service.blockedExecution = 1;
+        service.skipped = new CountDownLatch(3);
+        service.setProperlyConfigured(true);
+        assertTrue(service.blocked.await(5, TimeUnit.SECONDS));
+
+        // restart while the first execution is running; the new task skips its executions until the first
+        // one is released, with a pause of about the refresh interval after each one
+        service.shutdown();
+        service.start();
+        assertTrue(service.skipped.await(5, TimeUnit.SECONDS));
+        service.release.countDown();
+        assertTrue(service.blockedRecorded.await(5, TimeUnit.SECONDS));
+        service.shutdown();
+
+        assertFalse(service.overlapped);
+        assertTrue(service.getStatistics().getSkippedCount() >= 3);
+        // the first execution lasted for at least two pauses of the new task
+        assertTrue(service.getStatistics().getOverrunCount() > 0);
+        assertTrue(service.getStatistics().getMaxExecutionTime() > 10);
+    }
+
+    @Test
+    public void testThreadExecutionStatistics() throws InterruptedException {
+        TestService service = new TestService(false);
+        service.blockedExecution = 5;
+        service.setProperlyConfigured(true);
+        assertTrue(service.blocked.await(5, TimeUnit.SECONDS));
+        service.shutdown();
+        service.release.countDown();
+        assertTrue(service.blockedRecorded.await(5, TimeUnit.SECONDS));
+        assertEquals(5, service.getStatistics().getExecutionCount());
+        assertEquals(0, service.getStatistics().getFailureCount());
+    }
+
+    @Test
+    public void testAdaptiveBackoff() {
+        // overruns stretch the interval, but never beyond the maximum back-off
+        assertEquals(2000, AbstractActiveService.adaptInterval(1000, 1000, 1500));
+        assertEquals(5000, AbstractActiveService.adaptInterval(2000, 1000, 5000));
+        assertEquals(8000, AbstractActiveService.adaptInterval(4000, 1000, 60000));
+        // fast executions recover step by step down to the refresh interval
+        assertEquals(4000, AbstractActiveService.adaptInterval(8000, 1000, 10));
+        assertEquals(1000, AbstractActiveService.adaptInterval(1500, 1000, 10));
+        assertEquals(1000, AbstractActiveService.adaptInterval(1000, 1000, 10));
+        // executions close to the interval keep it
+        assertEquals(4000, AbstractActiveService.adaptInterval(4000, 1000, 3000));
+    }
+
+    @Test
+    public void testHistograms() {
+        ActiveServiceStatistics statistics = new ActiveServiceStatistics();
+        statistics.recordExecution(0, 0, false, false);
+        statistics.recordExecution(3, 1, false, false);
+        statistics.recordExecution(100000, 5, true, true);
+
+        long[] executionTimes = statistics.getExecutionTimeHistogram();
+        assertEquals(1, executionTimes[0]);
+        assertEquals(1, executionTimes[2]);
+        assertEquals(1, executionTimes[ActiveServiceStatistics.HISTOGRAM_BUCKETS - 1]);
+        long[] lags = statistics.getLagHistogram();
+        assertEquals(1, lags[0]);
+        assertEquals(1, lags[1]);
+        assertEquals(1, lags[3]);
+        assertEquals(4, ActiveServiceStatistics.getBucketUpperBound(2));
+        assertEquals(1, statistics.getOverrunCount());
+    }
+
+    @Test
+    public void testServicesAreRegistered() {
+        TestService service = new TestService(true);
+        assertTrue(AbstractActiveService.getServices().contains(service));
+        assertEquals(10, service.getEffectiveRefreshInterval());
+    }
+
+}
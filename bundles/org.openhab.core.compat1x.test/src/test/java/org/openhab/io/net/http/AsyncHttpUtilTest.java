@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.io.net.http.AsyncHttpUtil.ResponseCallback;
+
+public class AsyncHttpUtilTest {
+
+    private StubHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        AsyncHttpUtil.shutdownExecutor();
+        server.close();
+    }
+
+    @Test
+    public void testRequestsAreExecutedInParallel() throws InterruptedException, ExecutionException {
+        server.delay = 300;
+        long start = System.nanoTime();
+        List<Future<String>> responses = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            responses.add(AsyncHttpUtil.executeUrl("GET", server.getUrl("/" + i), 5000));
+        }
+        for (Future<String> response : responses) {
+            assertEquals("hello", response.get());
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(5, server.requests.get());
+        assertTrue("requests took " + duration + "ms", duration < 5 * 300);
+    }
+
+    @Test
+    public void testCallbackReceivesResponse() throws InterruptedException, ExecutionException {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final List<String> responses = new ArrayList<>();
+        ResponseCallback callback = new ResponseCallback() {
+            @Override
+            public void completed(String response) {
+                synchronized (responses) {
+                    responses.add(response);
+                }
+                latch.countDown();
+            }
+        };
+        assertEquals("hello", AsyncHttpUtil.executeUrl("GET", server.getUrl("/"), 5000, callback).get());
+        assertNull(AsyncHttpUtil.executeUrl("GET", "http://127.0.0.1:1/", 5000, callback).get());
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals("[hello, null]", responses.toString());
+    }
+
+    @Test
+    public void testWaitingRequestsAreDiscardedOnShutdown() throws Exception {
+        server.delay = 1000;
+        final CountDownLatch latch = new CountDownLatch(5);
+        ResponseCallback callback = new ResponseCallback() {
+            @Override
+            public void completed(String response) {
+                if (response == null) {
+                    latch.countDown();
+                }
+            }
+        };
+        // the default executor runs 10 requests at the same time, the others are waiting
+        List<Future<String>> responses = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            responses.add(AsyncHttpUtil.executeUrl("GET", server.getUrl("/" + i), 5000, callback));
+        }
+        AsyncHttpUtil.shutdownExecutor();
+
+        for (Future<String> response : responses.subList(10, 15)) {
+            assertNull(response.get(1, TimeUnit.SECONDS));
+        }
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import java.io.IOException;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the request rate of {@link HttpUtil} with and without {@link HttpClientPool}. The numbers depend on
+ * the machine, so they are only logged. As the name of the class does not match the test includes, the
+ * benchmark is not part of the default build; it has to be selected explicitly, e.g. with
+ * <code>-Dtest=HttpClientPoolBenchmark</code>.
+ */
+public class HttpClientPoolBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientPoolBenchmark.class);
+
+    private static final int REQUESTS = 2000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void benchmarkRequestRateWithAndWithoutPool() throws IOException {
+        StubHttpServer server = new StubHttpServer();
+        HttpClientPool previousPool = HttpUtil.setClientPool(null);
+        HttpResponseCache previousCache = HttpUtil.setResponseCache(null);
+        try {
+            String url = server.getUrl("/status");
+            // the first round warms up the JIT and is not reported
+            for (int round = 0; round <= ROUNDS; round++) {
+                HttpUtil.setClientPool(null);
+                long unpooled = execute(url);
+
+                HttpClientPool pool = new HttpClientPool(4, 40, 60000);
+                HttpUtil.setClientPool(pool);
+                long pooled;
+                try {
+                    pooled = execute(url);
+                } finally {
+                    HttpUtil.setClientPool(null);
+                    pool.shutdown();
+                }
+                if (round > 0) {
+                    logger.info("Round {}: {} requests/s without pool, {} requests/s with pool", round,
+                            REQUESTS * 1000000000L / unpooled, REQUESTS * 1000000000L / pooled);
+                }
+            }
+        } finally {
+            HttpUtil.setClientPool(previousPool);
+            HttpUtil.setResponseCache(previousCache);
+            server.close();
+        }
+    }
+
+    private static long execute(String url) {
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            if (HttpUtil.executeUrl("GET", url, 5000) == null) {
+                throw new IllegalStateException("Request " + i + " failed");
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+}
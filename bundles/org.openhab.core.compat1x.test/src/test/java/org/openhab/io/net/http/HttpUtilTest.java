@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpUtilTest {
+
+    private StubHttpServer server;
+    private HttpClientPool previousPool;
+    private HttpResponseCache previousCache;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer();
+        previousPool = HttpUtil.setClientPool(null);
+        previousCache = HttpUtil.setResponseCache(null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        HttpClientPool pool = HttpUtil.setClientPool(previousPool);
+        if (pool != null) {
+            pool.shutdown();
+        }
+        HttpUtil.setResponseCache(previousCache);
+        server.close();
+    }
+
+    @Test
+    public void testPooledConnectionsAreReused() {
+        HttpUtil.setClientPool(new HttpClientPool(4, 40, 60000));
+        for (int i = 0; i < 10; i++) {
+            assertEquals("hello", HttpUtil.executeUrl("GET", server.getUrl("/" + i), 5000));
+        }
+        assertEquals(10, server.requests.get());
+        assertEquals(1, server.connections.get());
+    }
+
+    @Test
+    public void testCredentialsAreNotSharedByPooledRequests() {
+        HttpUtil.setClientPool(new HttpClientPool(4, 40, 60000));
+        String url = server.getUrl("/");
+        HttpUtil.executeUrl("GET", url.replace("http://", "http://user:secret@"), 5000);
+        assertNotNull(server.lastHeaders.get("authorization"));
+
+        HttpUtil.executeUrl("GET", url, 5000);
+        assertNull(server.lastHeaders.get("authorization"));
+    }
+
+    @Test
+    public void testResponseIsDecodedWithItsCharset() {
+        server.body = "gr\u00fc\u00dfe";
+        assertEquals("gr\u00fc\u00dfe", HttpUtil.executeUrl("GET", server.getUrl("/"), 5000));
+    }
+
+    @Test
+    public void testResponseHandlerReceivesStream() {
+        server.body = "0123456789";
+        String result = HttpUtil.executeUrl("GET", server.getUrl("/"), null, null, null, 5000,
+                new HttpResponseHandler<String>() {
+                    @Override
+                    public String handleResponse(int statusCode, InputStream body, String charset) throws IOException {
+                        int count = 0;
+                        while (body.read() != -1) {
+                            count++;
+                        }
+                        return statusCode + " " + charset + " " + count;
+                    }
+                });
+        assertEquals("200 UTF-8 10", result);
+    }
+
+    @Test
+    public void testBytesAreLimited() {
+        server.body = "0123456789";
+        assertArrayEquals("0123456789".getBytes(), HttpUtil.executeUrlAsBytes("GET", server.getUrl("/"), 5000, 10));
+        assertArrayEquals("0123456789".getBytes(), HttpUtil.executeUrlAsBytes("GET", server.getUrl("/"), 5000, 0));
+        assertNull(HttpUtil.executeUrlAsBytes("GET", server.getUrl("/"), 5000, 9));
+    }
+
+    @Test(timeout = 30000)
+    public void testUnreadBodyIsNotConsumed() {
+        HttpUtil.setClientPool(new HttpClientPool(4, 40, 60000));
+        server.endless = true;
+        assertNull(HttpUtil.executeUrlAsBytes("GET", server.getUrl("/"), 5000, 100000));
+
+        String result = HttpUtil.executeUrl("GET", server.getUrl("/"), null, null, null, 5000,
+                new HttpResponseHandler<String>() {
+                    @Override
+                    public String handleResponse(int statusCode, InputStream body, String charset) throws IOException {
+                        return String.valueOf(body.read());
+                    }
+                });
+        assertEquals("0", result);
+
+        try {
+            HttpUtil.executeUrl("GET", server.getUrl("/"), null, null, null, 5000, new HttpResponseHandler<String>() {
+                @Override
+                public String handleResponse(int statusCode, InputStream body, String charset) {
+                    throw new IllegalStateException();
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // the aborted connections are not reused
+        server.endless = false;
+        assertEquals("hello", HttpUtil.executeUrl("GET", server.getUrl("/"), 5000));
+        assertEquals(4, server.connections.get());
+    }
+
+    @Test
+    public void testLimitedStream() throws IOException {
+        byte[] buffer = new byte[8];
+        InputStream in = HttpUtil.limit(new ByteArrayInputStream(new byte[10]), 12);
+        assertEquals(8, in.read(buffer));
+        assertEquals(2, in.read(buffer));
+        assertEquals(-1, in.read(buffer));
+
+        in = HttpUtil.limit(new ByteArrayInputStream(new byte[10]), 9);
+        assertEquals(8, in.read(buffer));
+        try {
+            in.read(buffer);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFreshResponsesAreServedFromCache() {
+        HttpUtil.setResponseCache(new HttpResponseCache(10, 1024, null));
+        server.responseHeaders = "Cache-Control: max-age=60\r\n";
+        for (int i = 0; i < 3; i++) {
+            assertEquals("hello", HttpUtil.executeUrl("GET", server.getUrl("/"), 5000));
+        }
+        assertEquals(1, server.requests.get());
+
+        // other methods are not cached
+        HttpUtil.executeUrl("POST", server.getUrl("/"), 5000);
+        HttpUtil.executeUrl("POST", server.getUrl("/"), 5000);
+        assertEquals(3, server.requests.get());
+    }
+
+    @Test
+    public void testStaleResponsesAreRevalidated() {
+        HttpUtil.setResponseCache(new HttpResponseCache(10, 1024, null));
+        server.responseHeaders = "Cache-Control: no-cache\r\n";
+        server.etag = "\"v1\"";
+        for (int i = 0; i < 3; i++) {
+            assertEquals("hello", HttpUtil.executeUrl("GET", server.getUrl("/"), 5000));
+        }
+        assertEquals(3, server.requests.get());
+        assertEquals(2, server.notModified.get());
+
+        server.etag = "\"v2\"";
+        server.body = "changed";
+        assertEquals("changed", HttpUtil.executeUrl("GET", server.getUrl("/"), 5000));
+        assertEquals("changed", HttpUtil.executeUrl("GET", server.getUrl("/"), 5000));
+        assertEquals(3, server.notModified.get());
+    }
+
+    @Test
+    public void testTimeToLiveOverridesHeaders() {
+        HttpUtil.setResponseCache(new HttpResponseCache(10, 1024, server.getUrl("/cached") + "=60"));
+        for (int i = 0; i < 3; i++) {
+            assertEquals("hello", HttpUtil.executeUrl("GET", server.getUrl("/cached?i=" + (i % 2)), 5000));
+            assertEquals("hello", HttpUtil.executeUrl("GET", server.getUrl("/other"), 5000));
+        }
+        assertEquals(5, server.requests.get());
+    }
+
+    @Test
+    public void testUncacheableResponses() {
+        HttpResponseCache cache = new HttpResponseCache(2, 8, null);
+        HttpUtil.setResponseCache(cache);
+        server.responseHeaders = "Cache-Control: max-age=60, no-store\r\n";
+        HttpUtil.executeUrl("GET", server.getUrl("/"), 5000);
+        assertEquals(0, cache.size());
+
+        server.responseHeaders = "Cache-Control: max-age=60\r\n";
+        server.body = "too large to be cached";
+        assertEquals("too large to be cached", HttpUtil.executeUrl("GET", server.getUrl("/"), 5000));
+        assertEquals(0, cache.size());
+
+        server.body = "hello";
+        for (int i = 0; i < 3; i++) {
+            HttpUtil.executeUrl("GET", server.getUrl("/" + i), 5000);
+        }
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testConnectionsAreReusedByPool() {
+        int count = 500;
+        String url = server.getUrl("/status");
+
+        for (int i = 0; i < count; i++) {
+            assertEquals("hello", HttpUtil.executeUrl("GET", url, 5000));
+        }
+        assertEquals(count, server.connections.get());
+
+        HttpUtil.setClientPool(new HttpClientPool(4, 40, 60000));
+        for (int i = 0; i < count; i++) {
+            assertEquals("hello", HttpUtil.executeUrl("GET", url, 5000));
+        }
+        assertEquals(count + 1, server.connections.get());
+    }
+
+}
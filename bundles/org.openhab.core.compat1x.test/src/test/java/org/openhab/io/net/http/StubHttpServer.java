@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal HTTP/1.1 server on the loopback interface, which answers every request with the same body and
+ * keeps connections alive unless the client closes them.
+ */
+class StubHttpServer {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private final ServerSocket serverSocket;
+
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicInteger notModified = new AtomicInteger();
+
+    /** the body of all responses */
+    volatile String body = "hello";
+
+    /** additional header lines of all responses, each terminated by CRLF */
+    volatile String responseHeaders = "";
+
+    /** the entity tag of the body or <code>null</code>, requests with a matching If-None-Match get a 304 */
+    volatile String etag;
+
+    /** true, if the body of all responses is endless and is written until the client closes the connection */
+    volatile boolean endless;
+
+    /** the time in milliseconds the server waits before it answers a request */
+    volatile long delay;
+
+    /** the headers of the last request, with lower case names */
+    volatile Map<String, String> lastHeaders;
+
+    StubHttpServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread("stub HTTP server") {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+                        Thread handler = new Thread("stub HTTP connection") {
+                            @Override
+                            public void run() {
+                                handle(socket);
+                            }
+                        };
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        // closed
+                    }
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String getUrl(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void handle(Socket socket) {
+        try {
+            socket.setSoTimeout(5000);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                String requestLine = readLine(in);
+                if (requestLine == null || requestLine.isEmpty()) {
+                    break;
+                }
+                Map<String, String> headers = new HashMap<String, String>();
+                for (String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+                    int colon = line.indexOf(':');
+                    headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+                }
+                if (headers.containsKey("content-length")) {
+                    for (int i = Integer.parseInt(headers.get("content-length")); i > 0; i--) {
+                        in.read();
+                    }
+                }
+                lastHeaders = headers;
+                requests.incrementAndGet();
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+
+                String etagHeader = etag != null ? "ETag: " + etag + "\r\n" : "";
+                if (endless) {
+                    out.write("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\n\r\n"
+                            .getBytes(ISO_8859_1));
+                    byte[] chunk = new byte[4096];
+                    while (true) {
+                        out.write(chunk);
+                    }
+                } else if (etag != null && etag.equals(headers.get("if-none-match"))) {
+                    notModified.incrementAndGet();
+                    out.write(("HTTP/1.1 304 Not Modified\r\n" + etagHeader + responseHeaders + "\r\n")
+                            .getBytes(ISO_8859_1));
+                } else {
+                    byte[] content = body.getBytes("UTF-8");
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Length: "
+                            + content.length + "\r\n" + etagHeader + responseHeaders + "\r\n").getBytes(ISO_8859_1));
+                    out.write(content);
+                }
+                out.flush();
+                if ("close".equalsIgnoreCase(headers.get("connection"))) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // connection closed or timed out
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b == -1) {
+                return line.size() > 0 ? new String(line.toByteArray(), ISO_8859_1) : null;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), ISO_8859_1);
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.chart;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.ui.chart.ChartSeriesFetcher.Series;
+import org.openhab.ui.chart.ChartSeriesFetcher.SeriesQuery;
+
+public class ChartSeriesFetcherTest {
+
+    @After
+    public void tearDown() {
+        ChartSeriesFetcher.shutdownExecutor();
+    }
+
+    @Test
+    public void testSeriesAreFetchedInParallel() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<String> names = ChartSeriesFetcher.split(" a,b , c,d,,e,f,g,h ");
+        assertEquals(8, names.size());
+
+        List<Series<String>> result = ChartSeriesFetcher.fetch(names, new SeriesQuery<String>() {
+            @Override
+            public String fetch(String name) throws Exception {
+                int current = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), current));
+                }
+                Thread.sleep(100);
+                running.decrementAndGet();
+                if (name.equals("c")) {
+                    throw new ItemNotFoundException(name);
+                }
+                return name.toUpperCase();
+            }
+        });
+
+        assertEquals(8, result.size());
+        assertTrue(maxRunning.get() > 1);
+        assertTrue(maxRunning.get() <= 4);
+        for (int i = 0; i < names.size(); i++) {
+            Series<String> series = result.get(i);
+            assertEquals(names.get(i), series.getName());
+            assertTrue(series.getFetchTime() >= 90);
+            if (series.getName().equals("c")) {
+                assertNull(series.getData());
+                assertTrue(series.getError() instanceof ItemNotFoundException);
+            } else {
+                assertEquals(names.get(i).toUpperCase(), series.getData());
+                assertNull(series.getError());
+            }
+        }
+    }
+
+    @Test
+    public void testSingleSeriesIsFetchedByCaller() {
+        final Thread caller = Thread.currentThread();
+        List<Series<Boolean>> result = ChartSeriesFetcher.fetch(Arrays.asList("a"), new SeriesQuery<Boolean>() {
+            @Override
+            public Boolean fetch(String name) {
+                return Thread.currentThread() == caller;
+            }
+        });
+        assertEquals(Boolean.TRUE, result.get(0).getData());
+    }
+
+}
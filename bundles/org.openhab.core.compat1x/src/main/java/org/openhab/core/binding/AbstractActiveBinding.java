@@ -9,6 +9,7 @@
 package org.openhab.core.binding;
 
 import org.openhab.core.service.AbstractActiveService;
+import org.openhab.core.service.ActiveServiceStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -108,6 +109,43 @@ public abstract class AbstractActiveBinding<P extends BindingProvider> extends A
         return activeService.isProperlyConfigured();
     }
 
+    /**
+     * Returns whether the binding is executed on the scheduler shared by all active services
+     * instead of its own refresh thread. Bindings which block for a long time within
+     * <code>execute()</code> should return <code>false</code> here.
+     *
+     * @return <code>true</code> if the binding should be executed on the shared scheduler
+     * @see AbstractActiveService#isPooled()
+     */
+    protected boolean isPooled() {
+        return AbstractActiveService.isPooledExecutionEnabled();
+    }
+
+    /**
+     * Returns whether the pause between two executions should be stretched while executions take
+     * longer than the refresh interval.
+     *
+     * @return <code>true</code> if adaptive back-off should be applied
+     * @see AbstractActiveService#isAdaptive()
+     */
+    protected boolean isAdaptive() {
+        return AbstractActiveService.isAdaptiveBackoffEnabled();
+    }
+
+    /**
+     * @return the pause which is currently applied between two executions
+     */
+    public long getEffectiveRefreshInterval() {
+        return activeService.getEffectiveRefreshInterval();
+    }
+
+    /**
+     * @return the execution statistics of this binding
+     */
+    public ActiveServiceStatistics getStatistics() {
+        return activeService.getStatistics();
+    }
+
     /**
      * The working method which is called by the refresh thread frequently.
      * Developers should put their binding code here.
@@ -167,6 +205,16 @@ public abstract class AbstractActiveBinding<P extends BindingProvider> extends A
             return AbstractActiveBinding.this.getName();
         }
 
+        @Override
+        protected boolean isPooled() {
+            return AbstractActiveBinding.this.isPooled();
+        }
+
+        @Override
+        protected boolean isAdaptive() {
+            return AbstractActiveBinding.this.isAdaptive();
+        }
+
     }
 
 }
\ No newline at end of file
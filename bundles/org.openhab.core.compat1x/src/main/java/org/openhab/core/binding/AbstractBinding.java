@@ -9,6 +9,10 @@
 package org.openhab.core.binding;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.openhab.core.events.AbstractEventSubscriber;
@@ -32,6 +36,29 @@ public abstract class AbstractBinding<P extends BindingProvider> extends Abstrac
 
     protected EventPublisher eventPublisher = null;
 
+    /**
+     * the names of items any of the providers is known to have a binding for; this allows to
+     * accept events for bound items with a single lookup. The index is not authoritative, since
+     * providers may not list all of their items or may change them without notifying the binding,
+     * so the providers are still asked for items which are not in the index.
+     */
+    private final Set<String> boundItemNames = Collections
+            .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** keeps {@link #boundItemNames} up to date, independent of overriding subclasses */
+    private final BindingChangeListener itemNameIndexer = new BindingChangeListener() {
+
+        @Override
+        public void bindingChanged(BindingProvider provider, String itemName) {
+            updateItemName(itemName);
+        }
+
+        @Override
+        public void allBindingsChanged(BindingProvider provider) {
+            rebuildItemNames();
+        }
+    };
+
     public void setEventPublisher(EventPublisher eventPublisher) {
         this.eventPublisher = eventPublisher;
     }
@@ -57,7 +84,10 @@ public abstract class AbstractBinding<P extends BindingProvider> extends Abstrac
     @SuppressWarnings("unchecked")
     public void addBindingProvider(BindingProvider provider) {
         this.providers.add((P) provider);
+        // the index must be registered first so that it is current when the binding gets notified
+        provider.addBindingChangeListener(itemNameIndexer);
         provider.addBindingChangeListener(this);
+        rebuildItemNames();
         allBindingsChanged(provider);
     }
 
@@ -70,6 +100,8 @@ public abstract class AbstractBinding<P extends BindingProvider> extends Abstrac
     public void removeBindingProvider(BindingProvider provider) {
         this.providers.remove(provider);
         provider.removeBindingChangeListener(this);
+        provider.removeBindingChangeListener(itemNameIndexer);
+        rebuildItemNames();
     }
 
     /**
@@ -138,6 +170,66 @@ public abstract class AbstractBinding<P extends BindingProvider> extends Abstrac
      *         otherwise
      */
     protected boolean providesBindingFor(String itemName) {
+        if (itemName == null) {
+            return false;
+        }
+        return boundItemNames.contains(itemName) || indexIfBound(itemName);
+    }
+
+    /**
+     * Asks the providers about an item which is missing in the index of bound items and adds it,
+     * if any of them has a binding for it.
+     *
+     * @param itemName the item to check
+     * @return <code>true</code> if any of the providers has a binding for <code>itemName</code>
+     */
+    private synchronized boolean indexIfBound(String itemName) {
+        if (isBound(itemName)) {
+            boundItemNames.add(itemName);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds or removes a single item name from the index of bound items, depending on
+     * whether any provider (still) has a binding for it.
+     *
+     * @param itemName the item whose binding has changed
+     */
+    private synchronized void updateItemName(String itemName) {
+        if (itemName == null) {
+            return;
+        }
+        if (isBound(itemName)) {
+            boundItemNames.add(itemName);
+        } else {
+            boundItemNames.remove(itemName);
+        }
+    }
+
+    /**
+     * Recreates the index of bound items. The item names of the providers are only the candidates,
+     * whether an item is bound is decided by {@link #isBound(String)} like for a single change.
+     */
+    private synchronized void rebuildItemNames() {
+        Set<String> itemNames = new HashSet<String>();
+        for (P provider : providers) {
+            Collection<String> names = provider.getItemNames();
+            if (names != null) {
+                for (String itemName : names) {
+                    if (itemName != null && isBound(itemName)) {
+                        itemNames.add(itemName);
+                    }
+                }
+            }
+        }
+        // add before removing so that items which stay bound are never missing
+        boundItemNames.addAll(itemNames);
+        boundItemNames.retainAll(itemNames);
+    }
+
+    private boolean isBound(String itemName) {
         for (P provider : providers) {
             if (provider.providesBindingFor(itemName)) {
                 return true;
@@ -11,7 +11,11 @@ package org.openhab.core.compat1x.internal;
 import org.eclipse.smarthome.model.script.engine.ScriptEngine;
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.service.AbstractActiveService;
 import org.openhab.io.multimedia.actions.Audio;
+import org.openhab.io.net.http.AsyncHttpUtil;
+import org.openhab.io.net.http.HttpUtil;
+import org.openhab.ui.chart.ChartSeriesFetcher;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.util.tracker.ServiceTracker;
@@ -60,6 +64,10 @@ public class CompatibilityActivator implements BundleActivator {
         eventPublisherTracker.close();
         scriptEngineTracker.close();
         Audio.playStream(null);
+        AbstractActiveService.shutdownScheduler();
+        ChartSeriesFetcher.shutdownExecutor();
+        AsyncHttpUtil.shutdownExecutor();
+        HttpUtil.shutdownConnectionPool();
     }
 
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.compat1x.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free cache which allows to share immutable values that are frequently created for the
+ * same key (such as mapped states of common numbers).
+ *
+ * <p>
+ * The cache is a direct-mapped table: every key has exactly one slot and a new entry simply replaces
+ * whatever was stored in this slot before. Lookups and updates therefore never block and the memory
+ * consumption is bounded by the capacity. Keys and values must be immutable.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class InterningCache<K, V> {
+
+    private static final class Entry<K, V> {
+        final K key;
+        final V value;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final String name;
+    private final AtomicReferenceArray<Entry<K, V>> table;
+    private final int mask;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param name a name to identify the cache in statistics
+     * @param capacity the maximum number of entries, which is rounded up to the next power of two
+     */
+    public InterningCache(String name, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.name = name;
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the value which has been cached for the given key.
+     *
+     * @param key the key to look up, must not be null
+     * @return the cached value or <code>null</code> if there is none
+     */
+    public V get(K key) {
+        Entry<K, V> entry = table.get(indexFor(key));
+        if (entry != null && entry.key.equals(key)) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a value for the given key, possibly evicting another entry.
+     *
+     * @param key the key, must not be null
+     * @param value the value to cache, must not be null
+     * @return the given value
+     */
+    public V put(K key, V value) {
+        table.set(indexFor(key), new Entry<K, V>(key, value));
+        return value;
+    }
+
+    /**
+     * Removes all entries and resets the statistics.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return table.length();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private int indexFor(K key) {
+        int h = key.hashCode();
+        // spread the higher bits as the table size is a power of two
+        h ^= (h >>> 16);
+        return h & mask;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (capacity=" + getCapacity() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ")";
+    }
+
+}
@@ -8,6 +8,9 @@
  */
 package org.openhab.core.compat1x.internal;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.library.items.ColorItem;
@@ -24,10 +27,61 @@ import org.openhab.library.tel.items.ESHCallItem;
 
 public class ItemMapper {
 
+	/**
+	 * Maps an ESH item to a new 1.x item. The 1.x item is a copy, i.e. its state is the state of the
+	 * ESH item at the time of the mapping.
+	 * 
+	 * @param item the ESH item
+	 * @return the mapped item or <code>null</code> if the item type is not supported
+	 */
 	public static org.openhab.core.items.Item mapToOpenHABItem(Item item) {
+		return mapToOpenHABItem(item, false);
+	}
+
+	/**
+	 * Maps an ESH item to a new 1.x item.
+	 * 
+	 * <p>If a proxy is requested, the returned item is a view of the ESH item: its state is not copied,
+	 * but mapped from the current state of the ESH item whenever it is read. The members of groups
+	 * are proxies as well, but they are determined when the group is mapped.</p>
+	 * 
+	 * @param item the ESH item
+	 * @param proxy <code>true</code> to return a proxy, <code>false</code> to return a copy 
+	 * @return the mapped item or <code>null</code> if the item type is not supported
+	 */
+	public static org.openhab.core.items.Item mapToOpenHABItem(Item item, boolean proxy) {
+		return mapToOpenHABItem(item, proxy, null);
+	}
+
+	/**
+	 * Maps an ESH item to a new 1.x item, reusing the items which have already been mapped
+	 * in the same context.
+	 * 
+	 * <p>All items mapped through this method, including the members of groups, are added to the given
+	 * map and are looked up there before an item is mapped. When several items are mapped with the same
+	 * map, every item is therefore only mapped once, even if it is a member of several (nested) groups,
+	 * and the mapped groups share their member instances. Without a map, the items are only reused
+	 * within the mapped group.</p>
+	 * 
+	 * @param item the ESH item
+	 * @param proxy <code>true</code> to return a proxy, <code>false</code> to return a copy 
+	 * @param mappedItems the items mapped so far by their names, may be <code>null</code>
+	 * @return the mapped item or <code>null</code> if the item type is not supported
+	 */
+	public static org.openhab.core.items.Item mapToOpenHABItem(Item item, boolean proxy,
+			Map<String, org.openhab.core.items.Item> mappedItems) {
 		if (item==null) {
 		    return null;
 		}
+		if (mappedItems != null) {
+			org.openhab.core.items.Item mappedItem = mappedItems.get(item.getName());
+			if (mappedItem != null) {
+				return mappedItem;
+			}
+		}
+		if (proxy) {
+			return createProxy(item, mappedItems);
+		}
 	    
 	    org.openhab.core.items.Item result = null;
 		Class<? extends Item> itemClass = item.getClass();
@@ -63,8 +117,13 @@ public class ItemMapper {
 				ohgItem = new org.openhab.core.items.GroupItem(item.getName());
 			}
 			
+			// the group is registered before its members are mapped, so that nested references resolve to it
+			if (mappedItems == null) {
+				mappedItems = new HashMap<String, org.openhab.core.items.Item>();
+			}
+			mappedItems.put(item.getName(), ohgItem);
 			for (Item member : gItem.getMembers()) {
-				org.openhab.core.items.Item ohMember = ItemMapper.mapToOpenHABItem(member);
+				org.openhab.core.items.Item ohMember = ItemMapper.mapToOpenHABItem(member, false, mappedItems);
 				if (ohMember != null) {
 					ohgItem.addMember(ohMember);
 				}
@@ -83,6 +142,60 @@ public class ItemMapper {
 			}
 		}
 		
+		if (result != null && mappedItems != null) {
+			mappedItems.put(item.getName(), result);
+		}
+		return result;
+	}
+
+	/*
+	 * The proxy classes are defined in ProxyItems, they read the state of the ESH item through a LiveItemState.
+	 */
+	private static org.openhab.core.items.Item createProxy(Item item, Map<String, org.openhab.core.items.Item> mappedItems) {
+		LiveItemState liveState = new LiveItemState(item);
+		Class<? extends Item> itemClass = item.getClass();
+		
+		if (item instanceof GroupItem) {
+			GroupItem gItem = (GroupItem) item;
+			org.openhab.core.items.Item baseItem = ItemMapper.mapToOpenHABItem(gItem.getBaseItem(), false);
+			org.openhab.core.items.GroupItem ohgItem = new ProxyItems.GroupItemProxy(item.getName(),
+					baseItem instanceof GenericItem ? (GenericItem) baseItem : null, liveState);
+			if (mappedItems == null) {
+				mappedItems = new HashMap<String, org.openhab.core.items.Item>();
+			}
+			mappedItems.put(item.getName(), ohgItem);
+			for (Item member : gItem.getMembers()) {
+				org.openhab.core.items.Item ohMember = ItemMapper.mapToOpenHABItem(member, true, mappedItems);
+				if (ohMember != null) {
+					ohgItem.addMember(ohMember);
+				}
+			}
+			return ohgItem;
+		}
+		
+		org.openhab.core.items.Item result = null;
+		if (itemClass.equals(StringItem.class))
+			result = new ProxyItems.StringItemProxy(item.getName(), liveState);
+		else if (itemClass.equals(SwitchItem.class))
+			result = new ProxyItems.SwitchItemProxy(item.getName(), liveState);
+		else if (itemClass.equals(ContactItem.class))
+			result = new ProxyItems.ContactItemProxy(item.getName(), liveState);
+		else if (itemClass.equals(NumberItem.class))
+			result = new ProxyItems.NumberItemProxy(item.getName(), liveState);
+		else if (itemClass.equals(RollershutterItem.class))
+			result = new ProxyItems.RollershutterItemProxy(item.getName(), liveState);
+		else if (itemClass.equals(DimmerItem.class))
+			result = new ProxyItems.DimmerItemProxy(item.getName(), liveState);
+		else if (itemClass.equals(ColorItem.class))
+			result = new ProxyItems.ColorItemProxy(item.getName(), liveState);
+		else if (itemClass.equals(DateTimeItem.class))
+			result = new ProxyItems.DateTimeItemProxy(item.getName(), liveState);
+		else if (itemClass.equals(ESHCallItem.class))
+			result = new ProxyItems.CallItemProxy(item.getName(), liveState);
+		
+		if (result != null && mappedItems != null) {
+			mappedItems.put(item.getName(), result);
+		}
 		return result;
 	}
 
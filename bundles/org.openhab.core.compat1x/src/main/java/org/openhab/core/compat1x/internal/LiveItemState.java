@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.compat1x.internal;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+/**
+ * Provides the current state of an ESH item as 1.x state for the proxy items created by {@link ItemMapper}.
+ *
+ * <p>
+ * The state is mapped lazily when it is requested and the result is kept until the state of the ESH
+ * item changes, so that repeated reads of an unchanged state do not map it again. The same applies to the
+ * plain item which converts the state for {@link GenericItem#getStateAs(Class)}.
+ * </p>
+ */
+class LiveItemState {
+
+    /**
+     * Creates plain items of the type of a proxy, which convert states as the item class of the proxy does.
+     */
+    interface ConverterFactory {
+
+        /**
+         * @return a new item of the type of the proxy
+         */
+        GenericItem createConverter();
+    }
+
+    private static final class MappedState {
+        final org.eclipse.smarthome.core.types.State eshState;
+        final State state;
+
+        /** an item which holds {@link #state} and converts it, created on first use */
+        volatile GenericItem converter;
+
+        MappedState(org.eclipse.smarthome.core.types.State eshState, State state) {
+            this.eshState = eshState;
+            this.state = state;
+        }
+    }
+
+    private final Item eshItem;
+
+    private volatile MappedState mappedState = new MappedState(null, UnDefType.NULL);
+
+    LiveItemState(Item eshItem) {
+        this.eshItem = eshItem;
+    }
+
+    /**
+     * @return the current state of the ESH item mapped to a 1.x state, never <code>null</code>
+     */
+    State get() {
+        return getMappedState().state;
+    }
+
+    private MappedState getMappedState() {
+        org.eclipse.smarthome.core.types.State eshState = eshItem.getState();
+        MappedState current = mappedState;
+        if (eshState != current.eshState) {
+            State state = null;
+            if (eshState != null) {
+                state = (State) TypeMapper.mapToOpenHABType(eshState);
+            }
+            current = new MappedState(eshState, state != null ? state : UnDefType.NULL);
+            mappedState = current;
+        }
+        return current;
+    }
+
+    /**
+     * Converts the current state as {@link GenericItem#getStateAs(Class)} of the proxy does. The 1.x item classes
+     * convert the state from their state field, so the conversion is done by a plain item of the type of the
+     * proxy, which is only created when the state has changed. Its state is never changed afterwards, so it can
+     * be used by several threads at once.
+     *
+     * @param factory the proxy which creates the converting item
+     * @param typeClass the class of the requested state
+     * @return the converted state or <code>null</code> if it cannot be converted
+     */
+    State getStateAs(ConverterFactory factory, Class<? extends State> typeClass) {
+        MappedState current = getMappedState();
+        GenericItem converter = current.converter;
+        if (converter == null) {
+            converter = factory.createConverter();
+            converter.setState(current.state);
+            current.converter = converter;
+        }
+        return converter.getStateAs(typeClass);
+    }
+
+    /**
+     * Converts the current state with the given item. Its state is overwritten, so the item must not be used by
+     * other threads at the same time.
+     *
+     * @param converter an item which converts the state
+     * @param typeClass the class of the requested state
+     * @return the converted state or <code>null</code> if it cannot be converted
+     */
+    State convert(GenericItem converter, Class<? extends State> typeClass) {
+        converter.setState(get());
+        return converter.getStateAs(typeClass);
+    }
+
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.compat1x.internal;
+
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.library.items.ColorItem;
+import org.openhab.core.library.items.ContactItem;
+import org.openhab.core.library.items.DateTimeItem;
+import org.openhab.core.library.items.DimmerItem;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.RollershutterItem;
+import org.openhab.core.library.items.StringItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.types.State;
+import org.openhab.library.tel.items.CallItem;
+
+/**
+ * The proxy items created by {@link ItemMapper}.
+ *
+ * <p>
+ * The proxies are subclasses of the regular 1.x item classes, so that type checks of the 1.x code still work.
+ * They read their state from a {@link LiveItemState} and never write the state field of the 1.x item.
+ * </p>
+ */
+final class ProxyItems {
+
+    private ProxyItems() {
+    }
+
+    static final class GroupItemProxy extends GroupItem {
+        private final LiveItemState liveState;
+
+        GroupItemProxy(String name, GenericItem baseItem, LiveItemState liveState) {
+            super(name, baseItem);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            State newState = function.getStateAs(getAllMembers(), typeClass);
+            if (newState == null && baseItem != null) {
+                // the base item is only used by this group, so it can convert the state
+                synchronized (baseItem) {
+                    newState = liveState.convert(baseItem, typeClass);
+                }
+            }
+            if (newState == null) {
+                State state = liveState.get();
+                newState = typeClass != null && typeClass.isInstance(state) ? state : null;
+            }
+            return newState;
+        }
+    }
+
+    static final class StringItemProxy extends StringItem implements LiveItemState.ConverterFactory {
+        private final LiveItemState liveState;
+
+        StringItemProxy(String name, LiveItemState liveState) {
+            super(name);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            return liveState.getStateAs(this, typeClass);
+        }
+
+        @Override
+        public GenericItem createConverter() {
+            return new StringItem(getName());
+        }
+    }
+
+    static final class SwitchItemProxy extends SwitchItem implements LiveItemState.ConverterFactory {
+        private final LiveItemState liveState;
+
+        SwitchItemProxy(String name, LiveItemState liveState) {
+            super(name);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            return liveState.getStateAs(this, typeClass);
+        }
+
+        @Override
+        public GenericItem createConverter() {
+            return new SwitchItem(getName());
+        }
+    }
+
+    static final class ContactItemProxy extends ContactItem implements LiveItemState.ConverterFactory {
+        private final LiveItemState liveState;
+
+        ContactItemProxy(String name, LiveItemState liveState) {
+            super(name);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            return liveState.getStateAs(this, typeClass);
+        }
+
+        @Override
+        public GenericItem createConverter() {
+            return new ContactItem(getName());
+        }
+    }
+
+    static final class NumberItemProxy extends NumberItem implements LiveItemState.ConverterFactory {
+        private final LiveItemState liveState;
+
+        NumberItemProxy(String name, LiveItemState liveState) {
+            super(name);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            return liveState.getStateAs(this, typeClass);
+        }
+
+        @Override
+        public GenericItem createConverter() {
+            return new NumberItem(getName());
+        }
+    }
+
+    static final class RollershutterItemProxy extends RollershutterItem implements LiveItemState.ConverterFactory {
+        private final LiveItemState liveState;
+
+        RollershutterItemProxy(String name, LiveItemState liveState) {
+            super(name);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            return liveState.getStateAs(this, typeClass);
+        }
+
+        @Override
+        public GenericItem createConverter() {
+            return new RollershutterItem(getName());
+        }
+    }
+
+    static final class DimmerItemProxy extends DimmerItem implements LiveItemState.ConverterFactory {
+        private final LiveItemState liveState;
+
+        DimmerItemProxy(String name, LiveItemState liveState) {
+            super(name);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            return liveState.getStateAs(this, typeClass);
+        }
+
+        @Override
+        public GenericItem createConverter() {
+            return new DimmerItem(getName());
+        }
+    }
+
+    static final class ColorItemProxy extends ColorItem implements LiveItemState.ConverterFactory {
+        private final LiveItemState liveState;
+
+        ColorItemProxy(String name, LiveItemState liveState) {
+            super(name);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            return liveState.getStateAs(this, typeClass);
+        }
+
+        @Override
+        public GenericItem createConverter() {
+            return new ColorItem(getName());
+        }
+    }
+
+    static final class DateTimeItemProxy extends DateTimeItem implements LiveItemState.ConverterFactory {
+        private final LiveItemState liveState;
+
+        DateTimeItemProxy(String name, LiveItemState liveState) {
+            super(name);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            return liveState.getStateAs(this, typeClass);
+        }
+
+        @Override
+        public GenericItem createConverter() {
+            return new DateTimeItem(getName());
+        }
+    }
+
+    static final class CallItemProxy extends CallItem implements LiveItemState.ConverterFactory {
+        private final LiveItemState liveState;
+
+        CallItemProxy(String name, LiveItemState liveState) {
+            super(name);
+            this.liveState = liveState;
+        }
+
+        @Override
+        public State getState() {
+            return liveState.get();
+        }
+
+        @Override
+        public State getStateAs(Class<? extends State> typeClass) {
+            return liveState.getStateAs(this, typeClass);
+        }
+
+        @Override
+        public GenericItem createConverter() {
+            return new CallItem(getName());
+        }
+    }
+
+}
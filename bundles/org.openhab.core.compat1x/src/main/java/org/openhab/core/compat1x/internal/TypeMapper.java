@@ -8,6 +8,14 @@
  */
 package org.openhab.core.compat1x.internal;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.eclipse.smarthome.core.library.types.DateTimeType;
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.HSBType;
@@ -22,106 +30,259 @@ import org.eclipse.smarthome.core.library.types.UpDownType;
 import org.eclipse.smarthome.core.types.Type;
 import org.eclipse.smarthome.core.types.UnDefType;
 
+/**
+ * Maps types between the openHAB 1.x and the Eclipse SmartHome namespace.
+ *
+ * <p>
+ * Singleton types (such as ON/OFF or NULL/UNDEF) are resolved through an identity lookup, all other
+ * types through a class dispatch table that is built once. Numeric, color, location and date values
+ * are converted directly from their internal {@link java.math.BigDecimal} and {@link Calendar}
+ * fields, so no string formatting and re-parsing is involved.
+ * </p>
+ *
+ * <p>
+ * Only exact classes are mapped; subclasses which are not registered are mapped to UNDEF.
+ * </p>
+ *
+ * <p>
+ * As decimal and percent values are immutable, mapped instances are shared through bounded
+ * {@link InterningCache}s keyed on the source value. The capacity of each cache can be set through the
+ * system property <code>openhab.compat1x.stateCacheSize</code>, a value of 0 disables caching.
+ * </p>
+ */
 public class TypeMapper {
 
-	public static org.openhab.core.types.Type mapToOpenHABType(Type type) {
-		if (type==null) {
-		    return null;
-		}
-	    
-	    org.openhab.core.types.Type result = org.openhab.core.types.UnDefType.UNDEF;
-		Class<? extends Type> typeClass = type.getClass();
-
-        if (type==UnDefType.NULL) {
-            result = org.openhab.core.types.UnDefType.NULL;
-        } else if (type==UnDefType.UNDEF) {
-            result = org.openhab.core.types.UnDefType.UNDEF;
-        } else if (type==OnOffType.ON) {
-            result = org.openhab.core.library.types.OnOffType.ON;
-        } else if (type==OnOffType.OFF) {
-            result = org.openhab.core.library.types.OnOffType.OFF;
-        } else if (type==OpenClosedType.OPEN) {
-            result = org.openhab.core.library.types.OpenClosedType.OPEN;
-        } else if (type==OpenClosedType.CLOSED) {
-            result = org.openhab.core.library.types.OpenClosedType.CLOSED;
-        } else if (type==IncreaseDecreaseType.INCREASE) {
-            result = org.openhab.core.library.types.IncreaseDecreaseType.INCREASE;
-        } else if (type==IncreaseDecreaseType.DECREASE) {
-            result = org.openhab.core.library.types.IncreaseDecreaseType.DECREASE;
-        } else if (type==StopMoveType.MOVE) {
-            result = org.openhab.core.library.types.StopMoveType.MOVE;
-        } else if (type==StopMoveType.STOP) {
-            result = org.openhab.core.library.types.StopMoveType.STOP;
-        } else if (type==UpDownType.UP) {
-            result = org.openhab.core.library.types.UpDownType.UP;
-        } else if (type==UpDownType.DOWN) {
-            result = org.openhab.core.library.types.UpDownType.DOWN;
-        } else if (typeClass.equals(StringType.class)) {
-		    result = new org.openhab.core.library.types.StringType(type.toString());
-		} else if (typeClass.equals(DecimalType.class)) {
-            result = new org.openhab.core.library.types.DecimalType(type.toString());
-        } else if (typeClass.equals(HSBType.class)) {
-            result = new org.openhab.core.library.types.HSBType(type.toString());
-        } else if (typeClass.equals(PercentType.class)) {
-            result = new org.openhab.core.library.types.PercentType(type.toString());
-        } else if (typeClass.equals(DateTimeType.class)) {
-            result = new org.openhab.core.library.types.DateTimeType(type.toString());
-        } else if (typeClass.equals(PointType.class)) {
-            result = new org.openhab.core.library.types.PointType(type.toString());
-		}
-		
-		return result;
-	}
-
-	   public static Type mapToESHType(org.openhab.core.types.Type type) {
-	        if (type==null) {
-	            return null;
-	        }
-	        
-	        Type result = UnDefType.UNDEF;
-	        Class<? extends org.openhab.core.types.Type> typeClass = type.getClass();
-
-	        if (type==org.openhab.core.types.UnDefType.NULL) {
-	            result = UnDefType.NULL;
-	        } else if (type==org.openhab.core.types.UnDefType.UNDEF) {
-	            result = UnDefType.UNDEF;
-	        } else if (type==org.openhab.core.library.types.OnOffType.ON) {
-	            result = OnOffType.ON;
-	        } else if (type==org.openhab.core.library.types.OnOffType.OFF) {
-	            result = OnOffType.OFF;
-	        } else if (type==org.openhab.core.library.types.OpenClosedType.OPEN) {
-	            result = OpenClosedType.OPEN;
-	        } else if (type==org.openhab.core.library.types.OpenClosedType.CLOSED) {
-	            result = OpenClosedType.CLOSED;
-	        } else if (type==org.openhab.core.library.types.IncreaseDecreaseType.INCREASE) {
-	            result = IncreaseDecreaseType.INCREASE;
-	        } else if (type==org.openhab.core.library.types.IncreaseDecreaseType.DECREASE) {
-	            result = IncreaseDecreaseType.DECREASE;
-	        } else if (type==org.openhab.core.library.types.StopMoveType.MOVE) {
-	            result = StopMoveType.MOVE;
-	        } else if (type==org.openhab.core.library.types.StopMoveType.STOP) {
-	            result = StopMoveType.STOP;
-	        } else if (type==org.openhab.core.library.types.UpDownType.UP) {
-	            result = UpDownType.UP;
-	        } else if (type==org.openhab.core.library.types.UpDownType.DOWN) {
-	            result = UpDownType.DOWN;
-	        } else if (typeClass.equals(org.openhab.core.library.types.StringType.class)) {
-	            result = new StringType(type.toString());
-	        } else if (typeClass.equals(org.openhab.core.library.types.DecimalType.class)) {
-	            result = new DecimalType(type.toString());
-	        } else if (typeClass.equals(org.openhab.core.library.types.HSBType.class)) {
-	            result = new HSBType(type.toString());
-	        } else if (typeClass.equals(org.openhab.core.library.types.PercentType.class)) {
-	            result = new PercentType(type.toString());
-	        } else if (typeClass.equals(org.openhab.core.library.types.DateTimeType.class)) {
-	            result = new DateTimeType(type.toString());
-            } else if (typeClass.equals(org.openhab.core.library.types.PointType.class)) {
-                result = new PointType(type.toString());
-            } else if (typeClass.equals(org.openhab.library.tel.types.CallType.class)) {
-                result = new org.openhab.library.tel.types.ESHCallType(type.toString());
-	        }
-	        
-	        return result;
-	   }
+    /** converts a value of one namespace into the other */
+    private interface Mapping<S, T> {
+        T map(S source);
+    }
+
+    private static final int STATE_CACHE_SIZE = Integer.getInteger("openhab.compat1x.stateCacheSize", 512);
+
+    private static final InterningCache<BigDecimal, org.openhab.core.library.types.DecimalType> OH_DECIMAL_CACHE = createCache(
+            "openHAB DecimalType");
+    private static final InterningCache<BigDecimal, org.openhab.core.library.types.PercentType> OH_PERCENT_CACHE = createCache(
+            "openHAB PercentType");
+    private static final InterningCache<BigDecimal, DecimalType> ESH_DECIMAL_CACHE = createCache("ESH DecimalType");
+    private static final InterningCache<BigDecimal, PercentType> ESH_PERCENT_CACHE = createCache("ESH PercentType");
+
+    private static final Map<Type, org.openhab.core.types.Type> ESH_TO_OH_CONSTANTS = new IdentityHashMap<>();
+    private static final Map<org.openhab.core.types.Type, Type> OH_TO_ESH_CONSTANTS = new IdentityHashMap<>();
+
+    private static final Map<Class<?>, Mapping<Type, org.openhab.core.types.Type>> ESH_TO_OH_MAPPINGS = new IdentityHashMap<>();
+    private static final Map<Class<?>, Mapping<org.openhab.core.types.Type, Type>> OH_TO_ESH_MAPPINGS = new IdentityHashMap<>();
+
+    static {
+        addConstant(UnDefType.NULL, org.openhab.core.types.UnDefType.NULL);
+        addConstant(UnDefType.UNDEF, org.openhab.core.types.UnDefType.UNDEF);
+        addConstant(OnOffType.ON, org.openhab.core.library.types.OnOffType.ON);
+        addConstant(OnOffType.OFF, org.openhab.core.library.types.OnOffType.OFF);
+        addConstant(OpenClosedType.OPEN, org.openhab.core.library.types.OpenClosedType.OPEN);
+        addConstant(OpenClosedType.CLOSED, org.openhab.core.library.types.OpenClosedType.CLOSED);
+        addConstant(IncreaseDecreaseType.INCREASE, org.openhab.core.library.types.IncreaseDecreaseType.INCREASE);
+        addConstant(IncreaseDecreaseType.DECREASE, org.openhab.core.library.types.IncreaseDecreaseType.DECREASE);
+        addConstant(StopMoveType.MOVE, org.openhab.core.library.types.StopMoveType.MOVE);
+        addConstant(StopMoveType.STOP, org.openhab.core.library.types.StopMoveType.STOP);
+        addConstant(UpDownType.UP, org.openhab.core.library.types.UpDownType.UP);
+        addConstant(UpDownType.DOWN, org.openhab.core.library.types.UpDownType.DOWN);
+
+        ESH_TO_OH_MAPPINGS.put(StringType.class, new Mapping<Type, org.openhab.core.types.Type>() {
+            @Override
+            public org.openhab.core.types.Type map(Type source) {
+                return new org.openhab.core.library.types.StringType(source.toString());
+            }
+        });
+        ESH_TO_OH_MAPPINGS.put(DecimalType.class, new Mapping<Type, org.openhab.core.types.Type>() {
+            @Override
+            public org.openhab.core.types.Type map(Type source) {
+                BigDecimal value = ((DecimalType) source).toBigDecimal();
+                org.openhab.core.library.types.DecimalType result = get(OH_DECIMAL_CACHE, value);
+                if (result == null) {
+                    result = put(OH_DECIMAL_CACHE, value, new org.openhab.core.library.types.DecimalType(value));
+                }
+                return result;
+            }
+        });
+        ESH_TO_OH_MAPPINGS.put(PercentType.class, new Mapping<Type, org.openhab.core.types.Type>() {
+            @Override
+            public org.openhab.core.types.Type map(Type source) {
+                BigDecimal value = ((PercentType) source).toBigDecimal();
+                org.openhab.core.library.types.PercentType result = get(OH_PERCENT_CACHE, value);
+                if (result == null) {
+                    result = put(OH_PERCENT_CACHE, value, new org.openhab.core.library.types.PercentType(value));
+                }
+                return result;
+            }
+        });
+        ESH_TO_OH_MAPPINGS.put(HSBType.class, new Mapping<Type, org.openhab.core.types.Type>() {
+            @Override
+            public org.openhab.core.types.Type map(Type source) {
+                HSBType hsb = (HSBType) source;
+                return new org.openhab.core.library.types.HSBType(
+                        new org.openhab.core.library.types.DecimalType(hsb.getHue().toBigDecimal()),
+                        new org.openhab.core.library.types.PercentType(hsb.getSaturation().toBigDecimal()),
+                        new org.openhab.core.library.types.PercentType(hsb.getBrightness().toBigDecimal()));
+            }
+        });
+        ESH_TO_OH_MAPPINGS.put(DateTimeType.class, new Mapping<Type, org.openhab.core.types.Type>() {
+            @Override
+            public org.openhab.core.types.Type map(Type source) {
+                return new org.openhab.core.library.types.DateTimeType(
+                        copy(((DateTimeType) source).getCalendar()));
+            }
+        });
+        ESH_TO_OH_MAPPINGS.put(PointType.class, new Mapping<Type, org.openhab.core.types.Type>() {
+            @Override
+            public org.openhab.core.types.Type map(Type source) {
+                PointType point = (PointType) source;
+                return new org.openhab.core.library.types.PointType(
+                        new org.openhab.core.library.types.DecimalType(point.getLatitude().toBigDecimal()),
+                        new org.openhab.core.library.types.DecimalType(point.getLongitude().toBigDecimal()),
+                        new org.openhab.core.library.types.DecimalType(point.getAltitude().toBigDecimal()));
+            }
+        });
+
+        OH_TO_ESH_MAPPINGS.put(org.openhab.core.library.types.StringType.class,
+                new Mapping<org.openhab.core.types.Type, Type>() {
+                    @Override
+                    public Type map(org.openhab.core.types.Type source) {
+                        return new StringType(source.toString());
+                    }
+                });
+        OH_TO_ESH_MAPPINGS.put(org.openhab.core.library.types.DecimalType.class,
+                new Mapping<org.openhab.core.types.Type, Type>() {
+                    @Override
+                    public Type map(org.openhab.core.types.Type source) {
+                        BigDecimal value = ((org.openhab.core.library.types.DecimalType) source).toBigDecimal();
+                        DecimalType result = get(ESH_DECIMAL_CACHE, value);
+                        if (result == null) {
+                            result = put(ESH_DECIMAL_CACHE, value, new DecimalType(value));
+                        }
+                        return result;
+                    }
+                });
+        OH_TO_ESH_MAPPINGS.put(org.openhab.core.library.types.PercentType.class,
+                new Mapping<org.openhab.core.types.Type, Type>() {
+                    @Override
+                    public Type map(org.openhab.core.types.Type source) {
+                        BigDecimal value = ((org.openhab.core.library.types.PercentType) source).toBigDecimal();
+                        PercentType result = get(ESH_PERCENT_CACHE, value);
+                        if (result == null) {
+                            result = put(ESH_PERCENT_CACHE, value, new PercentType(value));
+                        }
+                        return result;
+                    }
+                });
+        OH_TO_ESH_MAPPINGS.put(org.openhab.core.library.types.HSBType.class,
+                new Mapping<org.openhab.core.types.Type, Type>() {
+                    @Override
+                    public Type map(org.openhab.core.types.Type source) {
+                        org.openhab.core.library.types.HSBType hsb = (org.openhab.core.library.types.HSBType) source;
+                        return new HSBType(new DecimalType(hsb.getHue().toBigDecimal()),
+                                new PercentType(hsb.getSaturation().toBigDecimal()),
+                                new PercentType(hsb.getBrightness().toBigDecimal()));
+                    }
+                });
+        OH_TO_ESH_MAPPINGS.put(org.openhab.core.library.types.DateTimeType.class,
+                new Mapping<org.openhab.core.types.Type, Type>() {
+                    @Override
+                    public Type map(org.openhab.core.types.Type source) {
+                        return new DateTimeType(
+                                copy(((org.openhab.core.library.types.DateTimeType) source).getCalendar()));
+                    }
+                });
+        OH_TO_ESH_MAPPINGS.put(org.openhab.core.library.types.PointType.class,
+                new Mapping<org.openhab.core.types.Type, Type>() {
+                    @Override
+                    public Type map(org.openhab.core.types.Type source) {
+                        org.openhab.core.library.types.PointType point = (org.openhab.core.library.types.PointType) source;
+                        return new PointType(new DecimalType(point.getLatitude().toBigDecimal()),
+                                new DecimalType(point.getLongitude().toBigDecimal()),
+                                new DecimalType(point.getAltitude().toBigDecimal()));
+                    }
+                });
+        OH_TO_ESH_MAPPINGS.put(org.openhab.library.tel.types.CallType.class,
+                new Mapping<org.openhab.core.types.Type, Type>() {
+                    @Override
+                    public Type map(org.openhab.core.types.Type source) {
+                        return new org.openhab.library.tel.types.ESHCallType(source.toString());
+                    }
+                });
+    }
+
+    private static void addConstant(Type eshType, org.openhab.core.types.Type ohType) {
+        ESH_TO_OH_CONSTANTS.put(eshType, ohType);
+        OH_TO_ESH_CONSTANTS.put(ohType, eshType);
+    }
+
+    private static <K, V> InterningCache<K, V> createCache(String name) {
+        return STATE_CACHE_SIZE > 0 ? new InterningCache<K, V>(name, STATE_CACHE_SIZE) : null;
+    }
+
+    private static <K, V> V get(InterningCache<K, V> cache, K key) {
+        return (cache != null && key != null) ? cache.get(key) : null;
+    }
+
+    private static <K, V> V put(InterningCache<K, V> cache, K key, V value) {
+        return (cache != null && key != null) ? cache.put(key, value) : value;
+    }
+
+    /**
+     * Returns the caches which are used for sharing mapped state instances, e.g. to inspect their hit and
+     * miss counters.
+     *
+     * @return the state caches or an empty list if caching is disabled
+     */
+    public static List<InterningCache<?, ?>> getStateCaches() {
+        if (STATE_CACHE_SIZE <= 0) {
+            return Collections.emptyList();
+        }
+        return Collections.<InterningCache<?, ?>> unmodifiableList(
+                Arrays.<InterningCache<?, ?>> asList(OH_DECIMAL_CACHE, OH_PERCENT_CACHE, ESH_DECIMAL_CACHE,
+                        ESH_PERCENT_CACHE));
+    }
+
+    /**
+     * Calendars are mutable, so both sides must not share the same instance.
+     */
+    private static Calendar copy(Calendar calendar) {
+        return calendar != null ? (Calendar) calendar.clone() : null;
+    }
+
+    public static org.openhab.core.types.Type mapToOpenHABType(Type type) {
+        if (type == null) {
+            return null;
+        }
+
+        org.openhab.core.types.Type constant = ESH_TO_OH_CONSTANTS.get(type);
+        if (constant != null) {
+            return constant;
+        }
+
+        Mapping<Type, org.openhab.core.types.Type> mapping = ESH_TO_OH_MAPPINGS.get(type.getClass());
+        if (mapping != null) {
+            return mapping.map(type);
+        }
+
+        return org.openhab.core.types.UnDefType.UNDEF;
+    }
+
+    public static Type mapToESHType(org.openhab.core.types.Type type) {
+        if (type == null) {
+            return null;
+        }
+
+        Type constant = OH_TO_ESH_CONSTANTS.get(type);
+        if (constant != null) {
+            return constant;
+        }
+
+        Mapping<org.openhab.core.types.Type, Type> mapping = OH_TO_ESH_MAPPINGS.get(type.getClass());
+        if (mapping != null) {
+            return mapping.map(type);
+        }
+
+        return UnDefType.UNDEF;
+    }
 
 }
@@ -19,30 +19,75 @@ import org.osgi.service.event.EventHandler;
 
 abstract public class AbstractEventSubscriber implements EventHandler {
 	
+	private static final String UPDATE = EventType.UPDATE.toString();
+	private static final String COMMAND = EventType.COMMAND.toString();
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public void handleEvent(Event event) {  
-		String itemName = (String) event.getProperty("item");
-		
-		String topic = event.getTopic();
-		String[] topicParts = topic.split(TOPIC_SEPERATOR);
-		
-		if(!(topicParts.length > 2) || !topicParts[0].equals(TOPIC_PREFIX)) {
+		EventType operation = parseEventType(event.getTopic());
+		if(operation == null) {
 			return; // we have received an event with an invalid topic
 		}
-		String operation = topicParts[1];
 		
-		if(operation.equals(EventType.UPDATE.toString())) {
+		String itemName = (String) event.getProperty("item");
+		
+		if(operation == EventType.UPDATE) {
 			State newState = (State) event.getProperty("state");
 			if(newState!=null) receiveUpdate(itemName, newState);
-		}
-		if(operation.equals(EventType.COMMAND.toString())) {
+		} else {
 			Command command = (Command) event.getProperty("command");
 			if(command!=null) receiveCommand(itemName, command);
 		}
 	}
 	
+	/**
+	 * Determines the operation of an event from its topic, which has the form
+	 * <code>openhab/&lt;operation&gt;/&lt;item&gt;</code>. The topic is inspected in place,
+	 * so that no substrings or arrays need to be allocated for the many events
+	 * that are dispatched to every subscriber.
+	 * 
+	 * @param topic the topic of the event
+	 * @return the event type or <code>null</code>, if the topic is not a valid
+	 * openHAB item event topic
+	 */
+	static EventType parseEventType(String topic) {
+		if(topic==null || !topic.startsWith(TOPIC_PREFIX)) {
+			return null;
+		}
+		int operationStart = TOPIC_PREFIX.length() + TOPIC_SEPERATOR.length();
+		if(!topic.startsWith(TOPIC_SEPERATOR, TOPIC_PREFIX.length())) {
+			return null;
+		}
+		int operationEnd = topic.indexOf(TOPIC_SEPERATOR, operationStart);
+		if(operationEnd < 0 || !hasSegment(topic, operationEnd + TOPIC_SEPERATOR.length())) {
+			return null;
+		}
+		
+		int length = operationEnd - operationStart;
+		if(length == UPDATE.length() && topic.startsWith(UPDATE, operationStart)) {
+			return EventType.UPDATE;
+		}
+		if(length == COMMAND.length() && topic.startsWith(COMMAND, operationStart)) {
+			return EventType.COMMAND;
+		}
+		return null;
+	}
+	
+	/**
+	 * Checks whether the topic contains at least one more non-empty segment
+	 * starting at the given index.
+	 */
+	private static boolean hasSegment(String topic, int fromIndex) {
+		for(int i = fromIndex; i < topic.length(); i++) {
+			if(!topic.startsWith(TOPIC_SEPERATOR, i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
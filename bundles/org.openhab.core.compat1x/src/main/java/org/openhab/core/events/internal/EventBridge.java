@@ -8,10 +8,18 @@
  */
 package org.openhab.core.events.internal;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.smarthome.core.events.EventFilter;
 import org.eclipse.smarthome.core.events.EventPublisher;
@@ -27,21 +35,57 @@ import org.openhab.core.types.Type;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
 import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This class acts as a bridge between events from openHAB 1.x (using "openhab" as a topic prefix) and
  * Eclipse SmartHome (using "smarthome" as a topic prefix).
  * It simply duplicates events with an updated topic prefix and works both ways.
- * 
+ *
+ * <p>
+ * By default, every event is mapped and delivered on the thread that received it. Through the
+ * configuration (pid <code>org.openhab.core.compat1x.eventbridge</code>) a batching mode can be enabled instead:
+ * events are then put into a bounded queue and delivered in micro-batches by a dedicated dispatcher
+ * thread, so that bursts of events do not block the sender. Optionally, consecutive state updates for
+ * the same item that are still waiting in the queue are coalesced within a given time window, so only
+ * the most recent state is delivered.
+ * </p>
+ *
+ * <p>
+ * The following configuration parameters are supported:
+ * <ul>
+ * <li><code>batching</code>: <code>true</code> to enable the batching mode (default: <code>false</code>)</li>
+ * <li><code>queueSize</code>: the maximum number of queued events; further events are dropped (default: 10000)</li>
+ * <li><code>batchSize</code>: the maximum number of events delivered in one batch (default: 100)</li>
+ * <li><code>coalesceWindow</code>: the time window in milliseconds in which state updates for the same item
+ * are coalesced, 0 disables coalescing (default: 0)</li>
+ * </ul>
+ * </p>
+ *
  * @author Kai Kreuzer - Initial contribution and API
  *
  */
 public class EventBridge implements EventHandler, EventSubscriber {
 
+    private static final Logger logger = LoggerFactory.getLogger(EventBridge.class);
+
     private static final String BRIDGEMARKER = "bridgemarker";
+
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
     private EventAdmin eventAdmin;
     private EventPublisher eventPublisher;
 
+    /** the dispatcher of the batching mode or <code>null</code> if events are delivered directly */
+    private volatile Dispatcher dispatcher;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
     public void setEventAdmin(EventAdmin eventAdmin) {
         this.eventAdmin = eventAdmin;
     }
@@ -58,6 +102,64 @@ public class EventBridge implements EventHandler, EventSubscriber {
         this.eventPublisher = null;
     }
 
+    protected void activate(Map<String, Object> configProps) {
+        configure(configProps);
+    }
+
+    protected void modified(Map<String, Object> configProps) {
+        configure(configProps);
+    }
+
+    protected void deactivate() {
+        replaceDispatcher(null);
+    }
+
+    private void configure(Map<String, Object> configProps) {
+        if (configProps != null && Boolean.parseBoolean(String.valueOf(configProps.get("batching")))) {
+            int queueSize = getInt(configProps, "queueSize", DEFAULT_QUEUE_SIZE);
+            int batchSize = getInt(configProps, "batchSize", DEFAULT_BATCH_SIZE);
+            long coalesceWindow = getInt(configProps, "coalesceWindow", 0);
+            replaceDispatcher(new Dispatcher(queueSize, batchSize, coalesceWindow));
+            logger.debug("Event bridge uses batching with queue size {}, batch size {} and coalesce window {}ms.",
+                    queueSize, batchSize, coalesceWindow);
+        } else {
+            replaceDispatcher(null);
+        }
+    }
+
+    /**
+     * Replaces the dispatcher. Events which arrive meanwhile are already queued by the new dispatcher, but
+     * it only starts once the old dispatcher has delivered all of its events, so that their order is kept.
+     *
+     * @param newDispatcher the new dispatcher or <code>null</code> to deliver events directly
+     */
+    private synchronized void replaceDispatcher(Dispatcher newDispatcher) {
+        Dispatcher oldDispatcher = dispatcher;
+        dispatcher = newDispatcher;
+        if (oldDispatcher != null) {
+            oldDispatcher.shutdown(newDispatcher);
+            logger.debug("Event bridge batching stopped: delivered={}, dropped={}, coalesced={}, batches={}",
+                    getDeliveredCount(), getDroppedCount(), getCoalescedCount(), getBatchCount());
+        }
+        if (newDispatcher != null) {
+            newDispatcher.start();
+        }
+    }
+
+    private static int getInt(Map<String, Object> configProps, String key, int defaultValue) {
+        Object value = configProps.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value != null) {
+            try {
+                return Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid value '{}' for parameter '{}' - using {} instead.", value, key, defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
     @Override
     public void handleEvent(Event event) {
 
@@ -68,39 +170,30 @@ public class EventBridge implements EventHandler, EventSubscriber {
                 if (event.getTopic().endsWith(EventType.COMMAND.name())) {
                     String itemName = (String) event.getProperty("item");
                     Command ohCommand = (Command) event.getProperty("command");
-                    ItemCommandEvent eshEvent = ItemEventFactory.createCommandEvent(itemName,
-                            (org.eclipse.smarthome.core.types.Command) TypeMapper.mapToESHType(ohCommand));
-                    eventPublisher.post(eshEvent);
+                    dispatch(itemName, ohCommand, true, true);
                 } else if (event.getTopic().endsWith(EventType.UPDATE.name())) {
                     String itemName = (String) event.getProperty("item");
                     State ohState = (State) event.getProperty("state");
-                    ItemStateEvent eshEvent = ItemEventFactory.createStateEvent(itemName,
-                            (org.eclipse.smarthome.core.types.State) TypeMapper.mapToESHType(ohState));
-                    eventPublisher.post(eshEvent);
+                    dispatch(itemName, ohState, false, true);
                 }
             }
         }
     }
 
-    private Map<String, Object> constructProperties(org.eclipse.smarthome.core.events.Event event) {
+    private Map<String, Object> constructProperties(String itemName, boolean command,
+            org.eclipse.smarthome.core.types.Type eshType) {
         Map<String, Object> properties = new HashMap<>();
-        if (event instanceof ItemCommandEvent) {
-            ItemCommandEvent icEvent = (ItemCommandEvent) event;
-            String itemName = (String) icEvent.getItemName();
-            properties.put("item", itemName);
-            Type eshType = TypeMapper.mapToOpenHABType(icEvent.getItemCommand());
-            if (eshType instanceof Command) {
-                properties.put("command", (Command) eshType);
+        properties.put("item", itemName);
+        Type ohType = TypeMapper.mapToOpenHABType(eshType);
+        if (command) {
+            if (ohType instanceof Command) {
+                properties.put("command", (Command) ohType);
             } else {
                 return null;
             }
         } else {
-            ItemStateEvent isEvent = (ItemStateEvent) event;
-            String itemName = (String) isEvent.getItemName();
-            properties.put("item", itemName);
-            Type eshType = TypeMapper.mapToOpenHABType(isEvent.getItemState());
-            if (eshType instanceof State) {
-                properties.put("state", (State) eshType);
+            if (ohType instanceof State) {
+                properties.put("state", (State) ohType);
             } else {
                 return null;
             }
@@ -125,20 +218,287 @@ public class EventBridge implements EventHandler, EventSubscriber {
     @Override
     public void receive(org.eclipse.smarthome.core.events.Event event) {
         if (event.getType().equals(ItemCommandEvent.TYPE)) {
-            Map<String, Object> properties = constructProperties(event);
-            if (properties != null) {
-                String topic = org.openhab.core.events.EventConstants.TOPIC_PREFIX + "/" + EventType.COMMAND + "/"
-                        + properties.get("item");
-                eventAdmin.postEvent(new Event(topic, properties));
-            }
+            ItemCommandEvent icEvent = (ItemCommandEvent) event;
+            dispatch(icEvent.getItemName(), icEvent.getItemCommand(), true, false);
         } else if (event.getType().equals(ItemStateEvent.TYPE)) {
-            Map<String, Object> properties = constructProperties(event);
+            ItemStateEvent isEvent = (ItemStateEvent) event;
+            dispatch(isEvent.getItemName(), isEvent.getItemState(), false, false);
+        }
+    }
+
+    /**
+     * Delivers the given command or state directly or hands it over to the dispatcher, if batching is
+     * enabled.
+     *
+     * @param itemName the name of the item the event is about
+     * @param value the command or state, either of the openHAB 1.x or of the ESH namespace
+     * @param command <code>true</code>, if value is a command, <code>false</code> if it is a state
+     * @param toESH <code>true</code>, if the event is passed from openHAB 1.x to ESH
+     */
+    private void dispatch(String itemName, Object value, boolean command, boolean toESH) {
+        Dispatcher currentDispatcher = dispatcher;
+        if (currentDispatcher != null) {
+            currentDispatcher.enqueue(itemName, value, command, toESH);
+        } else {
+            deliver(itemName, value, command, toESH);
+        }
+    }
+
+    private void deliver(String itemName, Object value, boolean command, boolean toESH) {
+        if (toESH) {
+            EventPublisher publisher = eventPublisher;
+            if (publisher == null) {
+                return;
+            }
+            if (command) {
+                publisher.post(ItemEventFactory.createCommandEvent(itemName,
+                        (org.eclipse.smarthome.core.types.Command) TypeMapper.mapToESHType((Command) value)));
+            } else {
+                publisher.post(ItemEventFactory.createStateEvent(itemName,
+                        (org.eclipse.smarthome.core.types.State) TypeMapper.mapToESHType((State) value)));
+            }
+        } else {
+            EventAdmin admin = eventAdmin;
+            if (admin == null) {
+                return;
+            }
+            Map<String, Object> properties = constructProperties(itemName, command,
+                    (org.eclipse.smarthome.core.types.Type) value);
             if (properties != null) {
-                String topic = org.openhab.core.events.EventConstants.TOPIC_PREFIX + "/" + EventType.UPDATE + "/"
-                        + properties.get("item");
-                ;
-                eventAdmin.postEvent(new Event(topic, properties));
+                String topic = org.openhab.core.events.EventConstants.TOPIC_PREFIX + "/"
+                        + (command ? EventType.COMMAND : EventType.UPDATE) + "/" + itemName;
+                admin.postEvent(new Event(topic, properties));
+            }
+        }
+    }
+
+    /**
+     * @return the number of events that are currently waiting for delivery in batching mode
+     */
+    public int getQueueDepth() {
+        Dispatcher currentDispatcher = dispatcher;
+        return currentDispatcher != null ? currentDispatcher.queue.size() : 0;
+    }
+
+    /**
+     * @return the number of events that have been delivered in batching mode
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return the number of events that have been dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of state updates that have been merged into a queued update for the same item
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of batches that have been delivered
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * A command or state update which waits in the queue for delivery. The value of a state update can
+     * be replaced as long as it has not been taken for delivery.
+     */
+    private static class PendingEvent {
+
+        final String itemName;
+        final boolean command;
+        final boolean toESH;
+        final long enqueued;
+
+        private Object value;
+        private boolean taken = false;
+
+        PendingEvent(String itemName, Object value, boolean command, boolean toESH) {
+            this.itemName = itemName;
+            this.value = value;
+            this.command = command;
+            this.toESH = toESH;
+            this.enqueued = System.currentTimeMillis();
+        }
+
+        synchronized boolean replace(Object newValue) {
+            if (taken) {
+                return false;
+            }
+            value = newValue;
+            return true;
+        }
+
+        synchronized Object take() {
+            taken = true;
+            return value;
+        }
+    }
+
+    /**
+     * Worker thread which delivers queued events in batches.
+     */
+    private class Dispatcher extends Thread {
+
+        final BlockingQueue<PendingEvent> queue;
+        final int batchSize;
+        final long coalesceWindow;
+
+        /** the most recent queued state updates per item, separately for both directions */
+        final ConcurrentMap<String, PendingEvent> pendingToESH = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, PendingEvent> pendingToOpenHAB = new ConcurrentHashMap<>();
+
+        private volatile boolean shutdown = false;
+
+        /** set once the remaining events are taken from the queue on shutdown */
+        private volatile boolean drained = false;
+
+        /**
+         * held while the remaining events are delivered on shutdown and while events which arrive after that
+         * are handed on, so that these are only delivered after the remaining events
+         */
+        private final Object drainLock = new Object();
+
+        /** the dispatcher which takes over events that arrive after shutdown or <code>null</code> */
+        private volatile Dispatcher successor;
+
+        Dispatcher(int queueSize, int batchSize, long coalesceWindow) {
+            super("openHAB 1.x event bridge");
+            this.setDaemon(true);
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+            this.batchSize = Math.max(1, batchSize);
+            this.coalesceWindow = coalesceWindow;
+        }
+
+        void enqueue(String itemName, Object value, boolean command, boolean toESH) {
+            if (itemName == null) {
+                return;
+            }
+            ConcurrentMap<String, PendingEvent> pending = toESH ? pendingToESH : pendingToOpenHAB;
+            if (command) {
+                // a command breaks the sequence of consecutive updates for this item
+                pending.remove(itemName);
+            } else if (coalesceWindow > 0) {
+                PendingEvent previous = pending.get(itemName);
+                if (previous != null && System.currentTimeMillis() - previous.enqueued <= coalesceWindow
+                        && previous.replace(value)) {
+                    coalesced.incrementAndGet();
+                    return;
+                }
+            }
+
+            PendingEvent event = new PendingEvent(itemName, value, command, toESH);
+            if (queue.offer(event)) {
+                if (!command && coalesceWindow > 0) {
+                    pending.put(itemName, event);
+                }
+                if (drained) {
+                    handOn(event);
+                }
+            } else {
+                dropped.incrementAndGet();
+                logger.debug("Event bridge queue is full - dropping event for item '{}'.", itemName);
+            }
+        }
+
+        /**
+         * Hands on an event which has been queued after this dispatcher has been shut down to the successor
+         * or delivers it directly. This waits until the remaining events of the shutdown have been delivered.
+         *
+         * @param event the event which has been queued
+         */
+        private void handOn(PendingEvent event) {
+            synchronized (drainLock) {
+                if (!queue.remove(event)) {
+                    // the event has been taken by the shutdown
+                    return;
+                }
+                Dispatcher next = successor;
+                if (next != null) {
+                    next.enqueue(event.itemName, event.take(), event.command, event.toESH);
+                } else {
+                    deliver(event.itemName, event.take(), event.command, event.toESH);
+                }
+            }
+        }
+
+        /**
+         * Stops this dispatcher and delivers the remaining events on the calling thread.
+         *
+         * @param successor the dispatcher which takes over events that are enqueued concurrently to the
+         *            shutdown or <code>null</code> to deliver them directly
+         */
+        void shutdown(Dispatcher successor) {
+            this.successor = successor;
+            shutdown = true;
+            interrupt();
+            // the current batch has to be delivered completely before the remaining events
+            boolean interrupted = false;
+            while (isAlive()) {
+                try {
+                    join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            synchronized (drainLock) {
+                drained = true;
+                // deliver whatever is left, so no event gets lost on reconfiguration
+                List<PendingEvent> remaining = new ArrayList<>(queue.size());
+                queue.drainTo(remaining);
+                deliverBatch(remaining);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            List<PendingEvent> batch = new ArrayList<>(batchSize);
+            while (!shutdown) {
+                try {
+                    PendingEvent first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    deliverBatch(batch);
+                } catch (InterruptedException e) {
+                    // shutdown is handled by the loop condition
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void deliverBatch(List<PendingEvent> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            for (PendingEvent event : batch) {
+                if (!event.command) {
+                    (event.toESH ? pendingToESH : pendingToOpenHAB).remove(event.itemName, event);
+                }
+                Object value = event.take();
+                try {
+                    deliver(event.itemName, value, event.command, event.toESH);
+                    delivered.incrementAndGet();
+                } catch (RuntimeException e) {
+                    logger.error("Error while bridging event for item '" + event.itemName + "'", e);
+                }
             }
+            batches.incrementAndGet();
         }
     }
 
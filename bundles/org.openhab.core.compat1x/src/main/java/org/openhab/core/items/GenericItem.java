@@ -8,12 +8,13 @@
  */
 package org.openhab.core.items;
 
+import java.lang.ref.WeakReference;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.WeakHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.types.Command;
@@ -33,7 +34,26 @@ abstract public class GenericItem implements Item {
 	
 	protected EventPublisher eventPublisher;
 
-	protected Set<StateChangeListener> listeners = new CopyOnWriteArraySet<StateChangeListener>(Collections.newSetFromMap(new WeakHashMap<StateChangeListener, Boolean>()));
+	private static final ListenerReference[] NO_LISTENERS = new ListenerReference[0];
+	
+	/** 
+	 * weakly referenced listeners; the array is never modified but replaced on every change,
+	 * so that notifications can iterate over it without copying or locking
+	 */
+	private volatile ListenerReference[] listenerReferences = NO_LISTENERS;
+	
+	private final Object listenersLock = new Object();
+	
+	/**
+	 * A live view of the registered listeners, which is kept for subclasses only. Adding to and removing
+	 * from it is the same as calling {@link #addStateChangeListener(StateChangeListener)} and
+	 * {@link #removeStateChangeListener(StateChangeListener)}; replacing the field has no effect.
+	 * 
+	 * @deprecated use {@link #addStateChangeListener(StateChangeListener)} and
+	 *             {@link #removeStateChangeListener(StateChangeListener)} instead
+	 */
+	@Deprecated
+	protected Set<StateChangeListener> listeners = new ListenersView();
 	
 	protected List<String> groupNames = new ArrayList<String>();
 	
@@ -101,15 +121,31 @@ abstract public class GenericItem implements Item {
 	}
 
 	private void notifyListeners(State oldState, State newState) {
+		ListenerReference[] currentListeners = listenerReferences;
+		boolean collected = false;
 		// if nothing has changed, we send update notifications
-		Set<StateChangeListener> clonedListeners = null;
-		clonedListeners = new CopyOnWriteArraySet<StateChangeListener>(listeners);
-		for(StateChangeListener listener : clonedListeners) {
-			listener.stateUpdated(this, newState);
+		for(ListenerReference reference : currentListeners) {
+			StateChangeListener listener = reference.get();
+			if(listener!=null) {
+				listener.stateUpdated(this, newState);
+			} else {
+				collected = true;
+			}
 		}
 		if(!oldState.equals(newState)) {
-			for(StateChangeListener listener : clonedListeners) {
-				listener.stateChanged(this, oldState, newState);
+			for(ListenerReference reference : currentListeners) {
+				StateChangeListener listener = reference.get();
+				if(listener!=null) {
+					listener.stateChanged(this, oldState, newState);
+				} else {
+					collected = true;
+				}
+			}
+		}
+		if(collected) {
+			// remove the references to garbage collected listeners
+			synchronized(listenersLock) {
+				listenerReferences = copyListeners(null, null);
 			}
 		}
 	}
@@ -125,14 +161,121 @@ abstract public class GenericItem implements Item {
 	}
 
 	public void addStateChangeListener(StateChangeListener listener) {
-		synchronized(listeners) {
-			listeners.add(listener);
+		synchronized(listenersLock) {
+			for(ListenerReference reference : listenerReferences) {
+				if(listener.equals(reference.get())) {
+					return;
+				}
+			}
+			listenerReferences = copyListeners(null, new ListenerReference(listener));
 		}
 	}
 	
 	public void removeStateChangeListener(StateChangeListener listener) {
-		synchronized(listeners) {
-			listeners.remove(listener);
+		synchronized(listenersLock) {
+			listenerReferences = copyListeners(listener, null);
+		}
+	}
+	
+	/**
+	 * Copies the current listeners without the references to garbage collected listeners.
+	 * Must be called while holding the {@link #listenersLock}.
+	 * 
+	 * @param removedListener a listener to leave out as well, may be <code>null</code>
+	 * @param addedListener a reference to append, may be <code>null</code>
+	 * @return the new listeners
+	 */
+	private ListenerReference[] copyListeners(StateChangeListener removedListener, ListenerReference addedListener) {
+		ListenerReference[] currentListeners = listenerReferences;
+		ListenerReference[] newListeners = new ListenerReference[currentListeners.length + 1];
+		int size = 0;
+		for(ListenerReference reference : currentListeners) {
+			StateChangeListener listener = reference.get();
+			if(listener!=null && !listener.equals(removedListener)) {
+				newListeners[size++] = reference;
+			}
+		}
+		if(addedListener!=null) {
+			newListeners[size++] = addedListener;
+		}
+		return size==0 ? NO_LISTENERS : Arrays.copyOf(newListeners, size);
+	}
+	
+	private static final class ListenerReference extends WeakReference<StateChangeListener> {
+		
+		ListenerReference(StateChangeListener listener) {
+			super(listener);
+		}
+	}
+	
+	/**
+	 * The set behind the deprecated {@link GenericItem#listeners} field. It iterates over a snapshot of
+	 * the listeners which have not been garbage collected.
+	 */
+	private class ListenersView extends AbstractSet<StateChangeListener> {
+		
+		@Override
+		public Iterator<StateChangeListener> iterator() {
+			List<StateChangeListener> snapshot = new ArrayList<StateChangeListener>();
+			for(ListenerReference reference : listenerReferences) {
+				StateChangeListener listener = reference.get();
+				if(listener!=null) {
+					snapshot.add(listener);
+				}
+			}
+			final Iterator<StateChangeListener> iterator = snapshot.iterator();
+			return new Iterator<StateChangeListener>() {
+				private StateChangeListener current;
+				
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+				
+				@Override
+				public StateChangeListener next() {
+					current = iterator.next();
+					return current;
+				}
+				
+				@Override
+				public void remove() {
+					if(current==null) {
+						throw new IllegalStateException();
+					}
+					removeStateChangeListener(current);
+					current = null;
+				}
+			};
+		}
+		
+		@Override
+		public int size() {
+			int size = 0;
+			for(ListenerReference reference : listenerReferences) {
+				if(reference.get()!=null) {
+					size++;
+				}
+			}
+			return size;
+		}
+		
+		@Override
+		public boolean add(StateChangeListener listener) {
+			if(contains(listener)) {
+				return false;
+			}
+			addStateChangeListener(listener);
+			return true;
+		}
+		
+		@Override
+		public boolean remove(Object listener) {
+			if(!contains(listener)) {
+				return false;
+			}
+			removeStateChangeListener((StateChangeListener) listener);
+			return true;
 		}
 	}
 	
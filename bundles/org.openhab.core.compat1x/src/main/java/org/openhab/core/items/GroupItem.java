@@ -8,11 +8,14 @@
  */
 package org.openhab.core.items;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.apache.commons.collections.ListUtils;
 import org.openhab.core.types.Command;
@@ -29,6 +32,28 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	protected final List<Item> members;
 	
 	protected GroupFunction function;
+	
+	/** 
+	 * maintains the group state incrementally if the function supports it; it is bound to
+	 * {@link #aggregatedFunction} and recreated if the function is exchanged
+	 */
+	private GroupStateAggregator<?> aggregator;
+	
+	private GroupFunction aggregatedFunction;
+	
+	/** the groups which contain this group as a member and whose cached members depend on it */
+	private final Set<GroupItem> parents = new CopyOnWriteArraySet<GroupItem>();
+	
+	/** the cached result of {@link #getAllMembers()} or <code>null</code> if it has to be collected again */
+	private volatile List<Item> allMembers;
+	
+	/** incremented whenever the members of this group or of a contained group change */
+	private int allMembersVersion = 0;
+	
+	private final Object allMembersLock = new Object();
+	
+	/** the view of {@link #members} returned by {@link #getMembers()} */
+	private final List<Item> membersView = new MembersView();
 
 	public GroupItem(String name) {
 		this(name, null);
@@ -60,10 +85,17 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	 * Returns the direct members of this {@link GroupItem} regardless if these
 	 * members are {@link GroupItem}s as well.
 	 * 
+	 * The returned list is a live view; items added to or removed from it are
+	 * passed to {@link #addMember(Item)} and {@link #removeMember(Item)}, so
+	 * added items are always appended. The positional modifications
+	 * <code>add(int, Item)</code>, <code>addAll(int, Collection)</code> and
+	 * <code>set(int, Item)</code> are not supported and throw an
+	 * {@link UnsupportedOperationException}.
+	 * 
 	 * @return the direct members of this {@link GroupItem}
 	 */
 	public List<Item> getMembers() {
-		return members;
+		return membersView;
 	}
 	
 	/**
@@ -71,27 +103,79 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	 * members of the potentially contained {@link GroupItem}s as well. The 
 	 * {@link GroupItem}s itself aren't contained. The returned items are unique.
 	 * 
+	 * The result is cached until the members of this group or of one of the
+	 * contained groups change; each caller gets its own copy of it.
+	 * 
 	 * @return all members of this and all contained {@link GroupItem}s
 	 */
 	public List<Item> getAllMembers() {
-		Set<Item> allMembers = new HashSet<Item>();
-		collectMembers(allMembers, members);
-		return new ArrayList<Item>(allMembers);
+		List<Item> result = allMembers;
+		if (result == null) {
+			int version;
+			synchronized (allMembersLock) {
+				version = allMembersVersion;
+			}
+			Set<Item> collectedMembers = new HashSet<Item>();
+			Set<GroupItem> visitedGroups = new HashSet<GroupItem>();
+			visitedGroups.add(this);
+			collectMembers(collectedMembers, visitedGroups, members);
+			result = new ArrayList<Item>(collectedMembers);
+			synchronized (allMembersLock) {
+				// do not cache the result if the members have been changed in the meantime
+				if (version == allMembersVersion) {
+					allMembers = result;
+				}
+			}
+		}
+		return new ArrayList<Item>(result);
 	}
 	
-	private void collectMembers(Set<Item> allMembers, List<Item> members) {
+	private void collectMembers(Set<Item> allMembers, Set<GroupItem> visitedGroups, List<Item> members) {
 		for (Item member : members) {
 			if (member instanceof GroupItem) {
-				collectMembers(allMembers, ((GroupItem) member).members);
+				if (visitedGroups.add((GroupItem) member)) {
+					collectMembers(allMembers, visitedGroups, ((GroupItem) member).members);
+				} else if (member == this) {
+					logger.warn("Group '{}' contains itself recursively, ignoring the recursion.", getName());
+				}
 			}
 			else {
 				allMembers.add(member);
 			}
 		}
 	}
+	
+	/**
+	 * Discards the cached members of this group and of all groups which contain it.
+	 */
+	private void invalidateAllMembers() {
+		Set<GroupItem> visitedGroups = new HashSet<GroupItem>();
+		List<GroupItem> pendingGroups = new ArrayList<GroupItem>();
+		pendingGroups.add(this);
+		// iterate instead of recursing, so that neither deep nor recursive hierarchies are a problem
+		while (!pendingGroups.isEmpty()) {
+			GroupItem group = pendingGroups.remove(pendingGroups.size() - 1);
+			if (visitedGroups.add(group)) {
+				synchronized (group.allMembersLock) {
+					group.allMembersVersion++;
+					group.allMembers = null;
+				}
+				pendingGroups.addAll(group.parents);
+			}
+		}
+	}
 
 	public void addMember(Item item) {
-		members.add(item);
+		synchronized (members) {
+			members.add(item);
+			if (aggregator != null) {
+				aggregator.add(item);
+			}
+		}
+		if (item instanceof GroupItem) {
+			((GroupItem) item).parents.add(this);
+		}
+		invalidateAllMembers();
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.addStateChangeListener(this);
@@ -99,13 +183,82 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	}
 	
 	public void removeMember(Item item) {
-		members.remove(item);
-		if (item instanceof GenericItem) {
+		boolean contained;
+		synchronized (members) {
+			boolean removed = members.remove(item);
+			if (removed && aggregator != null) {
+				aggregator.remove(item);
+			}
+			contained = members.contains(item);
+			if (item instanceof GroupItem && !contained) {
+				((GroupItem) item).parents.remove(this);
+			}
+		}
+		invalidateAllMembers();
+		// an item which is still contained several times must still update the group state
+		if (item instanceof GenericItem && !contained) {
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.removeStateChangeListener(this);
 		}
 	}
 	
+	/**
+	 * Routes modifications of the list returned by {@link GroupItem#getMembers()} through
+	 * {@link GroupItem#addMember(Item)} and {@link GroupItem#removeMember(Item)}, so that the
+	 * cached members and the group state stay consistent.
+	 */
+	private class MembersView extends AbstractList<Item> {
+
+		@Override
+		public Item get(int index) {
+			return members.get(index);
+		}
+
+		@Override
+		public int size() {
+			return members.size();
+		}
+
+		@Override
+		public Iterator<Item> iterator() {
+			// iterates over a snapshot like the underlying list
+			return members.iterator();
+		}
+
+		@Override
+		public boolean add(Item item) {
+			addMember(item);
+			return true;
+		}
+
+		@Override
+		public void add(int index, Item item) {
+			// members can only be appended
+			throw new UnsupportedOperationException("Members cannot be inserted at a position.");
+		}
+
+		@Override
+		public Item set(int index, Item item) {
+			throw new UnsupportedOperationException("Members cannot be replaced at a position.");
+		}
+
+		@Override
+		public Item remove(int index) {
+			Item item = members.get(index);
+			removeMember(item);
+			return item;
+		}
+
+		@Override
+		public boolean remove(Object item) {
+			if (!(item instanceof Item) || !members.contains(item)) {
+				return false;
+			}
+			removeMember((Item) item);
+			return true;
+		}
+	}
+
 	/** 
 	 * The accepted data types of a group item is the same as of the underlying base item.
 	 * If none is defined, the intersection of all sets of accepted data types of all group
@@ -210,13 +363,42 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	 * @{inheritDoc
 	 */
 	public void stateChanged(Item item, State oldState, State newState) {
-		setState(function.calculate(members));
+		setState(calculateState(item));
 	}
 
 	/**
 	 * @{inheritDoc
 	 */
 	public void stateUpdated(Item item, State state) {
-		setState(function.calculate(members));
+		setState(calculateState(item));
+	}
+	
+	/**
+	 * Calculates the group state after the state of a member has been updated. If the group
+	 * function is an {@link IncrementalGroupFunction}, only the contribution of this member
+	 * is updated, otherwise the state is calculated over all members.
+	 * 
+	 * @param item the member whose state has been updated
+	 * @return the new group state
+	 */
+	private State calculateState(Item item) {
+		synchronized (members) {
+			GroupFunction currentFunction = function;
+			if (currentFunction != aggregatedFunction) {
+				aggregatedFunction = currentFunction;
+				aggregator = null;
+				if (currentFunction instanceof IncrementalGroupFunction) {
+					aggregator = ((IncrementalGroupFunction) currentFunction).createAggregator();
+					for (Item member : members) {
+						aggregator.add(member);
+					}
+				}
+			}
+			if (aggregator != null) {
+				aggregator.update(item);
+				return aggregator.getState();
+			}
+		}
+		return function.calculate(members);
 	}
 }
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.openhab.core.types.State;
+
+/**
+ * Maintains the result of an {@link IncrementalGroupFunction} for a changing set of items.
+ *
+ * <p>
+ * For every item the aggregator remembers the value the item contributes, so that a state change
+ * only requires to retract the old contribution and to add the new one. Items are tracked by
+ * identity and may be added several times, just like they can be contained several times in the
+ * member list of a group. Implementations are not thread-safe.
+ * </p>
+ *
+ * @param <V> the type of the values the items contribute
+ */
+public abstract class GroupStateAggregator<V> {
+
+    private static final class Contribution<V> {
+        V value;
+        int count;
+    }
+
+    private final Map<Item, Contribution<V>> contributions = new IdentityHashMap<Item, Contribution<V>>();
+
+    private int size = 0;
+
+    /**
+     * Adds an item with its current state.
+     *
+     * @param item the item to add
+     */
+    public void add(Item item) {
+        Contribution<V> contribution = contributions.get(item);
+        if (contribution == null) {
+            contribution = new Contribution<V>();
+            contribution.value = valueOf(item);
+            contributions.put(item, contribution);
+        }
+        contribution.count++;
+        size++;
+        if (contribution.value != null) {
+            addValue(contribution.value);
+        }
+    }
+
+    /**
+     * Removes an item, i.e. the value it has contributed when it was added or last updated.
+     *
+     * @param item the item to remove
+     */
+    public void remove(Item item) {
+        Contribution<V> contribution = contributions.get(item);
+        if (contribution == null) {
+            return;
+        }
+        if (--contribution.count == 0) {
+            contributions.remove(item);
+        }
+        size--;
+        if (contribution.value != null) {
+            removeValue(contribution.value);
+        }
+    }
+
+    /**
+     * Updates the contribution of an item after its state has changed. Unknown items are ignored.
+     *
+     * @param item the item whose state has changed
+     */
+    public void update(Item item) {
+        Contribution<V> contribution = contributions.get(item);
+        if (contribution == null) {
+            return;
+        }
+        V value = valueOf(item);
+        if (value == null ? contribution.value == null : value.equals(contribution.value)) {
+            return;
+        }
+        for (int i = 0; i < contribution.count; i++) {
+            if (contribution.value != null) {
+                removeValue(contribution.value);
+            }
+            if (value != null) {
+                addValue(value);
+            }
+        }
+        contribution.value = value;
+    }
+
+    /**
+     * @return the number of items which have been added, including duplicates
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Determines the value an item contributes to the result.
+     *
+     * @param item the item
+     * @return the value or <code>null</code> if the item does not contribute to the result
+     */
+    protected abstract V valueOf(Item item);
+
+    /**
+     * Adds a contributed value to the result.
+     *
+     * @param value the value, never <code>null</code>
+     */
+    protected abstract void addValue(V value);
+
+    /**
+     * Retracts a value that has previously been added.
+     *
+     * @param value the value, never <code>null</code>
+     */
+    protected abstract void removeValue(V value);
+
+    /**
+     * @return the current result for all added items
+     */
+    public abstract State getState();
+
+}
@@ -0,0 +1,26 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+/**
+ * A {@link GroupFunction} whose result can be maintained incrementally while the states of
+ * the group members change, so that a {@link GroupItem} does not need to recalculate its state
+ * over all members on every update.
+ */
+public interface IncrementalGroupFunction extends GroupFunction {
+
+    /**
+     * Creates a new, empty aggregator which calculates the same state as
+     * {@link GroupFunction#calculate(java.util.List)} does for the items added to it.
+     *
+     * @return a new aggregator
+     */
+    public GroupStateAggregator<?> createAggregator();
+
+}
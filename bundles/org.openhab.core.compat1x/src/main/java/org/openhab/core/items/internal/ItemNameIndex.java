@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items.internal;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.openhab.core.compat1x.internal.InterningCache;
+
+/**
+ * A sorted index of the ESH items by their names, which allows to find the items matching a search pattern
+ * without testing every item.
+ *
+ * <p>
+ * Search patterns are interpreted like the ESH item registry does: <code>?</code> and <code>*</code> are
+ * wildcards and the result is used as regular expression, which has to match the whole item name. The literal
+ * prefix of a pattern limits the search to the range of names starting with it, a pattern without any special
+ * characters is a direct lookup. Compiled patterns are cached.
+ * </p>
+ */
+class ItemNameIndex {
+
+    private static final InterningCache<String, ItemNamePattern> PATTERN_CACHE = new InterningCache<>(
+            "item name patterns", 256);
+
+    private final ConcurrentNavigableMap<String, Item> items = new ConcurrentSkipListMap<>();
+
+    /**
+     * Adds an item or replaces the item with the same name.
+     *
+     * @param item the item
+     */
+    void add(Item item) {
+        items.put(item.getName(), item);
+    }
+
+    /**
+     * Removes an item.
+     *
+     * @param item the item
+     */
+    void remove(Item item) {
+        items.remove(item.getName());
+    }
+
+    void clear() {
+        items.clear();
+    }
+
+    /**
+     * Returns the items matching a search pattern. The result is evaluated lazily on every iteration.
+     *
+     * @param pattern the search pattern
+     * @return the matching items in the order of their names
+     */
+    Iterable<Item> match(String pattern) {
+        final ItemNamePattern namePattern = compile(pattern);
+        return new Iterable<Item>() {
+            @Override
+            public Iterator<Item> iterator() {
+                Map<String, Item> range = namePattern.regex == null
+                        ? items.subMap(namePattern.prefix, true, namePattern.prefix, true)
+                        : items.tailMap(namePattern.prefix);
+                return new MatchingIterator(range.entrySet().iterator(), namePattern);
+            }
+        };
+    }
+
+    static ItemNamePattern compile(String pattern) {
+        ItemNamePattern namePattern = PATTERN_CACHE.get(pattern);
+        if (namePattern == null) {
+            namePattern = PATTERN_CACHE.put(pattern, new ItemNamePattern(pattern));
+        }
+        return namePattern;
+    }
+
+    /**
+     * A compiled search pattern.
+     */
+    static final class ItemNamePattern {
+
+        /** all matching names start with this prefix */
+        final String prefix;
+
+        /** the expression to match or <code>null</code> if only the prefix itself matches */
+        final Pattern regex;
+
+        ItemNamePattern(String pattern) {
+            int length = 0;
+            while (length < pattern.length() && isLiteral(pattern.charAt(length))) {
+                length++;
+            }
+            if (length == pattern.length()) {
+                prefix = pattern;
+                regex = null;
+            } else {
+                regex = Pattern.compile(pattern.replace("?", ".?").replace("*", ".*?"));
+                if (pattern.indexOf('|') >= 0) {
+                    // alternatives may start with anything
+                    length = 0;
+                } else if (pattern.charAt(length) == '+' || pattern.charAt(length) == '{') {
+                    // the last character of the prefix is repeated
+                    length--;
+                }
+                prefix = pattern.substring(0, length);
+            }
+        }
+
+        private static boolean isLiteral(char c) {
+            return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+        }
+
+        boolean matches(String name) {
+            return regex == null ? prefix.equals(name) : regex.matcher(name).matches();
+        }
+    }
+
+    private static class MatchingIterator implements Iterator<Item> {
+
+        private final Iterator<Map.Entry<String, Item>> entries;
+        private final ItemNamePattern pattern;
+        private Item next;
+        private boolean done = false;
+
+        MatchingIterator(Iterator<Map.Entry<String, Item>> entries, ItemNamePattern pattern) {
+            this.entries = entries;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done) {
+                if (!entries.hasNext()) {
+                    done = true;
+                    break;
+                }
+                Map.Entry<String, Item> entry = entries.next();
+                if (!entry.getKey().startsWith(pattern.prefix)) {
+                    // the names are sorted, so no further name can start with the prefix
+                    done = true;
+                    break;
+                }
+                if (pattern.matches(entry.getKey())) {
+                    next = entry.getValue();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Item item = next;
+            next = null;
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -8,9 +8,15 @@
  */
 package org.openhab.core.items.internal;
 
+import java.util.AbstractCollection;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.smarthome.core.common.registry.RegistryChangeListener;
@@ -25,65 +31,227 @@ import org.openhab.model.sitemap.Sitemap;
 import org.openhab.model.sitemap.Widget;
 import org.openhab.ui.items.ItemUIRegistry;
 
+/**
+ * Provides the ESH item registry as 1.x item registry.
+ *
+ * <p>
+ * The mapped 1.x items are cached by name, so that repeated lookups neither map the items nor rebuild
+ * the member trees of groups again. Within a single lookup, every item is mapped only once and the
+ * mapped groups share their member instances. The cache is cleared whenever items are added, removed or updated.
+ * The cached items are proxies of the ESH items (see
+ * {@link ItemMapper#mapToOpenHABItem(org.eclipse.smarthome.core.items.Item, boolean)}), so their states are
+ * always current, no matter whether the state of the ESH item was changed by an event or directly.
+ * </p>
+ *
+ * <p>
+ * Search patterns are evaluated on an {@link ItemNameIndex} of the ESH items. The collections returned by
+ * {@link #getItems(String)} are views which look up and map the matching items while they are iterated.
+ * </p>
+ */
 public class ItemUIRegistryDelegate
         implements ItemUIRegistry, RegistryChangeListener<org.eclipse.smarthome.core.items.Item> {
 
     private org.eclipse.smarthome.ui.items.ItemUIRegistry itemUIRegistry;
     private Set<ItemRegistryChangeListener> listeners = new HashSet<>();
 
+    private final ConcurrentMap<String, Item> itemCache = new ConcurrentHashMap<>();
+
+    /**
+     * Guards {@link #cacheGeneration} and serializes clearing the cache with adding mapped items to it, so that
+     * items mapped from an outdated registry are not put back into a cache which has been cleared meanwhile.
+     */
+    private final Object cacheLock = new Object();
+
+    /** incremented whenever the cache is cleared */
+    private long cacheGeneration;
+
+    private final ItemNameIndex nameIndex = new ItemNameIndex();
+
     protected void setItemUIRegistry(org.eclipse.smarthome.ui.items.ItemUIRegistry itemUIRegistry) {
         this.itemUIRegistry = itemUIRegistry;
         itemUIRegistry.addRegistryChangeListener(this);
+        for (org.eclipse.smarthome.core.items.Item eshItem : itemUIRegistry.getItems()) {
+            nameIndex.add(eshItem);
+        }
+        clearCache();
     }
 
     protected void unsetItemUIRegistry(org.eclipse.smarthome.core.items.ItemRegistry itemUIRegistry) {
         this.itemUIRegistry = null;
+        nameIndex.clear();
+        clearCache();
     }
 
     @Override
     public Item getItem(String name) throws ItemNotFoundException {
+        Item item = itemCache.get(name);
+        if (item != null) {
+            return item;
+        }
+        MappingContext mappedItems = new MappingContext();
         org.eclipse.smarthome.core.items.Item eshItem;
         try {
             eshItem = itemUIRegistry.getItem(name);
         } catch (org.eclipse.smarthome.core.items.ItemNotFoundException e) {
             throw new ItemNotFoundException(name);
         }
-        return ItemMapper.mapToOpenHABItem(eshItem);
+        item = getMappedItem(eshItem, mappedItems);
+        cacheMappedItems(mappedItems);
+        return item;
+    }
+
+    /**
+     * Returns the cached 1.x item for an ESH item or maps it, if it is not cached yet.
+     *
+     * @param eshItem the ESH item
+     * @param mappedItems the items which have been looked up or mapped within the current call; the
+     *            mapper reuses them for the members of groups
+     * @return the mapped item
+     */
+    private Item getMappedItem(org.eclipse.smarthome.core.items.Item eshItem, MappingContext mappedItems) {
+        // the mapping context returns the item if it has already been mapped or cached
+        return ItemMapper.mapToOpenHABItem(eshItem, true, mappedItems);
+    }
+
+    /**
+     * Adds all items mapped within a call to the cache, including the members of mapped groups. The items are
+     * discarded if the cache has been cleared since the call started, as they may have been mapped from ESH items
+     * which have been replaced meanwhile.
+     *
+     * @param mappedItems the mapped items
+     */
+    private void cacheMappedItems(MappingContext mappedItems) {
+        synchronized (cacheLock) {
+            if (mappedItems.generation != cacheGeneration) {
+                return;
+            }
+            for (Map.Entry<String, Item> entry : mappedItems.entrySet()) {
+                itemCache.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Adds a single mapped item to the cache, unless the cache has been cleared since the mapping context was
+     * created.
+     *
+     * @param item the mapped item
+     * @param mappedItems the mapping context the item was mapped with
+     */
+    private void cacheMappedItem(Item item, MappingContext mappedItems) {
+        synchronized (cacheLock) {
+            if (mappedItems.generation == cacheGeneration) {
+                itemCache.putIfAbsent(item.getName(), item);
+            }
+        }
+    }
+
+    private void clearCache() {
+        synchronized (cacheLock) {
+            cacheGeneration++;
+            itemCache.clear();
+        }
+    }
+
+    /**
+     * The items mapped within a single call. Items which are not mapped yet are looked up in the cache, so
+     * that the members of a mapped group reuse the cached items as well.
+     */
+    private class MappingContext extends HashMap<String, Item> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** the generation of the cache when the context was created, i.e. before any ESH item was looked up */
+        private final long generation;
+
+        MappingContext() {
+            synchronized (cacheLock) {
+                generation = cacheGeneration;
+            }
+        }
+
+        @Override
+        public Item get(Object key) {
+            Item item = super.get(key);
+            if (item == null) {
+                item = itemCache.get(key);
+                if (item != null) {
+                    put((String) key, item);
+                }
+            }
+            return item;
+        }
     }
 
     @Override
     public Item getItemByPattern(String name) throws ItemNotFoundException, ItemNotUniqueException {
-        org.eclipse.smarthome.core.items.Item eshItem;
-        try {
-            eshItem = itemUIRegistry.getItemByPattern(name);
-        } catch (org.eclipse.smarthome.core.items.ItemNotFoundException e) {
+        MappingContext mappedItems = new MappingContext();
+        Iterator<org.eclipse.smarthome.core.items.Item> matches = nameIndex.match(name).iterator();
+        if (!matches.hasNext()) {
             throw new ItemNotFoundException(name);
-        } catch (org.eclipse.smarthome.core.items.ItemNotUniqueException e) {
-            throw new ItemNotUniqueException(name, null);
         }
-        return ItemMapper.mapToOpenHABItem(eshItem);
+        org.eclipse.smarthome.core.items.Item eshItem = matches.next();
+        if (matches.hasNext()) {
+            throw new ItemNotUniqueException(name, getItems(name));
+        }
+        Item item = getMappedItem(eshItem, mappedItems);
+        cacheMappedItems(mappedItems);
+        return item;
     }
 
     @Override
     public Collection<Item> getItems() {
+        MappingContext mappedItems = new MappingContext();
         Collection<org.eclipse.smarthome.core.items.Item> eshItems = itemUIRegistry.getItems();
         Collection<Item> ohItems = new HashSet<Item>(eshItems.size());
 
         for (org.eclipse.smarthome.core.items.Item eshItem : eshItems) {
-            ohItems.add(ItemMapper.mapToOpenHABItem(eshItem));
+            ohItems.add(getMappedItem(eshItem, mappedItems));
         }
+        cacheMappedItems(mappedItems);
         return ohItems;
     }
 
     @Override
     public Collection<Item> getItems(String pattern) {
-        Collection<org.eclipse.smarthome.core.items.Item> eshItems = itemUIRegistry.getItems(pattern);
-        Collection<Item> ohItems = new HashSet<Item>(eshItems.size());
-
-        for (org.eclipse.smarthome.core.items.Item eshItem : eshItems) {
-            ohItems.add(ItemMapper.mapToOpenHABItem(eshItem));
-        }
-        return ohItems;
+        final Iterable<org.eclipse.smarthome.core.items.Item> eshItems = nameIndex.match(pattern);
+        return new AbstractCollection<Item>() {
+            @Override
+            public Iterator<Item> iterator() {
+                final MappingContext mappedItems = new MappingContext();
+                final Iterator<org.eclipse.smarthome.core.items.Item> eshIterator = eshItems.iterator();
+                return new Iterator<Item>() {
+                    @Override
+                    public boolean hasNext() {
+                        return eshIterator.hasNext();
+                    }
+
+                    @Override
+                    public Item next() {
+                        Item item = getMappedItem(eshIterator.next(), mappedItems);
+                        if (item != null) {
+                            cacheMappedItem(item, mappedItems);
+                        }
+                        return item;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (Iterator<org.eclipse.smarthome.core.items.Item> iterator = eshItems.iterator(); iterator
+                        .hasNext(); iterator.next()) {
+                    size++;
+                }
+                return size;
+            }
+        };
     }
 
     @Override
@@ -103,6 +271,10 @@ public class ItemUIRegistryDelegate
 
     @Override
     public void added(org.eclipse.smarthome.core.items.Item element) {
+        // groups may contain the new item, so all cached items are discarded; the index is updated first, so
+        // that lookups which start after the cache has been cleared find the new item
+        nameIndex.add(element);
+        clearCache();
         Item ohItem = ItemMapper.mapToOpenHABItem(element);
         for (ItemRegistryChangeListener listener : listeners) {
             listener.itemAdded(ohItem);
@@ -111,6 +283,8 @@ public class ItemUIRegistryDelegate
 
     @Override
     public void removed(org.eclipse.smarthome.core.items.Item element) {
+        nameIndex.remove(element);
+        clearCache();
         Item ohItem = ItemMapper.mapToOpenHABItem(element);
         for (ItemRegistryChangeListener listener : listeners) {
             listener.itemRemoved(ohItem);
@@ -120,6 +294,9 @@ public class ItemUIRegistryDelegate
     @Override
     public void updated(org.eclipse.smarthome.core.items.Item oldElement,
             org.eclipse.smarthome.core.items.Item element) {
+        nameIndex.remove(oldElement);
+        nameIndex.add(element);
+        clearCache();
         Item ohItem = ItemMapper.mapToOpenHABItem(element);
         for (ItemRegistryChangeListener listener : listeners) {
             listener.itemRemoved(ohItem);
@@ -11,8 +11,12 @@ package org.openhab.core.library.types;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.openhab.core.items.GroupFunction;
+import org.openhab.core.items.GroupStateAggregator;
+import org.openhab.core.items.IncrementalGroupFunction;
 import org.openhab.core.items.Item;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
@@ -38,7 +42,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class And implements GroupFunction {
+	static class And implements IncrementalGroupFunction {
 		
 		protected final State activeState;
 		protected final State passiveState;
@@ -68,6 +72,29 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			}
 		}
 
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAggregator<?> createAggregator() {
+			return new ActiveStateCounter(activeState) {
+				@Override
+				public State getState() {
+					return stateFor(activeCount, size());
+				}
+			};
+		}
+
+		/**
+		 * Determines the group state from the number of items in the active state.
+		 * 
+		 * @param activeCount the number of items in the active state
+		 * @param itemCount the number of items
+		 * @return the group state
+		 */
+		protected State stateFor(int activeCount, int itemCount) {
+			return itemCount > 0 && activeCount == itemCount ? activeState : passiveState;
+		}
+
 		/**
 		 * @{inheritDoc
 		 */
@@ -113,7 +140,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Or implements GroupFunction {
+	static class Or implements IncrementalGroupFunction {
 
 		protected final State activeState;
 		protected final State passiveState;
@@ -139,6 +166,29 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			}
 			return passiveState;
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAggregator<?> createAggregator() {
+			return new ActiveStateCounter(activeState) {
+				@Override
+				public State getState() {
+					return stateFor(activeCount, size());
+				}
+			};
+		}
+
+		/**
+		 * Determines the group state from the number of items in the active state.
+		 * 
+		 * @param activeCount the number of items in the active state
+		 * @param itemCount the number of items
+		 * @return the group state
+		 */
+		protected State stateFor(int activeCount, int itemCount) {
+			return activeCount > 0 ? activeState : passiveState;
+		}
 		
 		/**
 		 * @{inheritDoc
@@ -190,6 +240,11 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 				result.equals(activeState) ? passiveState : activeState;
 			return notResult;
 		}
+
+		@Override
+		protected State stateFor(int activeCount, int itemCount) {
+			return super.stateFor(activeCount, itemCount).equals(activeState) ? passiveState : activeState;
+		}
 		
 	}
 
@@ -214,6 +269,11 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 				result.equals(activeState) ? passiveState : activeState;
 			return notResult;
 		}
+
+		@Override
+		protected State stateFor(int activeCount, int itemCount) {
+			return super.stateFor(activeCount, itemCount).equals(activeState) ? passiveState : activeState;
+		}
 		
 	}
 	
@@ -224,7 +284,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Avg implements GroupFunction {
+	static class Avg implements IncrementalGroupFunction {
 		
 		public Avg() {}
 
@@ -249,6 +309,22 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 				return UnDefType.UNDEF;
 			}
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAggregator<?> createAggregator() {
+			return new DecimalSum() {
+				@Override
+				public State getState() {
+					if(count>0) {
+						return new DecimalType(getSum().divide(new BigDecimal(count), RoundingMode.HALF_UP));
+					} else {
+						return UnDefType.UNDEF;
+					}
+				}
+			};
+		}
 		
 		/**
 		 * @{inheritDoc
@@ -270,7 +346,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 1.1.0
 	 *
 	 */
-	static class Sum implements GroupFunction {
+	static class Sum implements IncrementalGroupFunction {
 		
 		public Sum() {}
 
@@ -289,6 +365,18 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			}
 			return new DecimalType(sum);
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAggregator<?> createAggregator() {
+			return new DecimalSum() {
+				@Override
+				public State getState() {
+					return new DecimalType(getSum());
+				}
+			};
+		}
 		
 		/**
 		 * @{inheritDoc
@@ -310,7 +398,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Min implements GroupFunction {
+	static class Min implements IncrementalGroupFunction {
 		
 		public Min() {}
 
@@ -335,6 +423,18 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return UnDefType.UNDEF;
 		}
 
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAggregator<?> createAggregator() {
+			return new DecimalMultiset() {
+				@Override
+				public State getState() {
+					return values.isEmpty() ? UnDefType.UNDEF : new DecimalType(values.firstKey());
+				}
+			};
+		}
+
 		/**
 		 * @{inheritDoc
 		 */
@@ -355,7 +455,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Max implements GroupFunction {
+	static class Max implements IncrementalGroupFunction {
 		
 		public Max() {}
 
@@ -380,6 +480,18 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return UnDefType.UNDEF;
 		}
 
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAggregator<?> createAggregator() {
+			return new DecimalMultiset() {
+				@Override
+				public State getState() {
+					return values.isEmpty() ? UnDefType.UNDEF : new DecimalType(values.lastKey());
+				}
+			};
+		}
+
 		/**
 		 * @{inheritDoc
 		 */
@@ -392,6 +504,120 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			}
 		}
 	}
-	
-	
+
+	/**
+	 * Aggregator which counts the items that are in a given active state.
+	 */
+	abstract static class ActiveStateCounter extends GroupStateAggregator<Boolean> {
+
+		private final State activeState;
+
+		protected int activeCount = 0;
+
+		ActiveStateCounter(State activeState) {
+			this.activeState = activeState;
+		}
+
+		@Override
+		protected Boolean valueOf(Item item) {
+			return activeState.equals(item.getState());
+		}
+
+		@Override
+		protected void addValue(Boolean active) {
+			if(active) {
+				activeCount++;
+			}
+		}
+
+		@Override
+		protected void removeValue(Boolean active) {
+			if(active) {
+				activeCount--;
+			}
+		}
+	}
+
+	/**
+	 * Base class for aggregators over all item states of decimal type.
+	 */
+	abstract static class DecimalAggregator extends GroupStateAggregator<BigDecimal> {
+
+		@Override
+		protected BigDecimal valueOf(Item item) {
+			DecimalType itemState = (DecimalType) item.getStateAs(DecimalType.class);
+			return itemState!=null ? itemState.toBigDecimal() : null;
+		}
+
+		static <K> void increment(Map<K, Integer> counts, K key) {
+			Integer count = counts.get(key);
+			counts.put(key, count==null ? 1 : count + 1);
+		}
+
+		static <K> void decrement(Map<K, Integer> counts, K key) {
+			Integer count = counts.get(key);
+			if(count!=null) {
+				if(count > 1) {
+					counts.put(key, count - 1);
+				} else {
+					counts.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Aggregator which keeps a running sum and count of all decimal states. 
+	 * 
+	 * The sum is returned with the largest scale of the current values, so that the result
+	 * is exactly the same as if all values were summed up again.
+	 */
+	abstract static class DecimalSum extends DecimalAggregator {
+
+		private BigDecimal sum = BigDecimal.ZERO;
+
+		protected int count = 0;
+
+		/** the number of values per scale, to determine the scale of the sum */
+		private final TreeMap<Integer, Integer> scales = new TreeMap<Integer, Integer>();
+
+		@Override
+		protected void addValue(BigDecimal value) {
+			sum = sum.add(value);
+			count++;
+			increment(scales, value.scale());
+		}
+
+		@Override
+		protected void removeValue(BigDecimal value) {
+			sum = sum.subtract(value);
+			count--;
+			decrement(scales, value.scale());
+		}
+
+		protected BigDecimal getSum() {
+			int scale = scales.isEmpty() ? 0 : Math.max(0, scales.lastKey());
+			// this never rounds as no remaining value has more digits than the scale
+			return sum.setScale(scale, RoundingMode.UNNECESSARY);
+		}
+	}
+
+	/**
+	 * Aggregator which keeps all decimal states in a sorted multiset. 
+	 */
+	abstract static class DecimalMultiset extends DecimalAggregator {
+
+		protected final TreeMap<BigDecimal, Integer> values = new TreeMap<BigDecimal, Integer>();
+
+		@Override
+		protected void addValue(BigDecimal value) {
+			increment(values, value);
+		}
+
+		@Override
+		protected void removeValue(BigDecimal value) {
+			decrement(values, value);
+		}
+	}
+
 }
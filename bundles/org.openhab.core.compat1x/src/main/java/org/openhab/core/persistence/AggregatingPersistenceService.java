@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import org.openhab.core.persistence.FilterCriteria.AggregateFunction;
+
+/**
+ * A queryable persistence service which is able to aggregate the entries of a query
+ * itself, as requested by {@link FilterCriteria#getAggregateFunction()} and
+ * {@link FilterCriteria#getBucketSize()}.
+ * 
+ * <p>Queries with an aggregate function the service does not support are aggregated by
+ * the caller with the {@link HistoricItemAggregator} instead.</p>
+ */
+public interface AggregatingPersistenceService extends QueryablePersistenceService {
+
+	/**
+	 * Determines whether the service aggregates entries with the given function.
+	 * 
+	 * @param function the aggregate function
+	 * @return true, if {@link #query(FilterCriteria)} returns aggregated entries for this function
+	 */
+	boolean isAggregationSupported(AggregateFunction function);
+
+}
@@ -22,6 +22,10 @@ import org.openhab.core.types.State;
  * <p>Additionally, the filter criteria supports ordering and paging of the result, so the
  * caller can ask to only return chunks of the result of a certain size (=pageSize) from a
  * starting index (pageNumber*pageSize).</p>
+ * <p>Instead of the raw entries, aggregated entries can be requested by an aggregate function
+ * and a bucket size. Services which are able to aggregate implement the
+ * {@link AggregatingPersistenceService} interface, for all others the aggregation can be
+ * done by the {@link HistoricItemAggregator}.</p>
  * <p>All setter methods return the filter criteria instance, so that the methods can be
  * easily chained in order to define a filter.
  * 
@@ -55,6 +59,23 @@ public class FilterCriteria {
 		ASCENDING, DESCENDING
 	}
 	
+	/** Enumeration with all functions to aggregate the entries of a time bucket */
+	public enum AggregateFunction {
+		/** the entry with the lowest decimal value */
+		MIN,
+		/** the entry with the highest decimal value */
+		MAX,
+		/** the average of the decimal values, dated to the beginning of the bucket */
+		AVG,
+		/** the most recent entry */
+		LAST,
+		/** 
+		 * the entry which best preserves the visual shape of the series, 
+		 * following the "largest triangle three buckets" algorithm 
+		 */
+		LTTB
+	}
+	
 	/** filter result to only contain entries for the given item */
 	private String itemName;
 
@@ -78,6 +99,12 @@ public class FilterCriteria {
 
 	/** filter result to only contain entries that evaluate to true with the given operator and state */
 	private State state;
+	
+	/** aggregate the entries of each time bucket with this function, return raw entries if null */
+	private AggregateFunction aggregateFunction;
+	
+	/** the size of the time buckets in milliseconds, buckets start at multiples of it */
+	private long bucketSize = 0;
 
 	public String getItemName() {
 		return itemName;
@@ -110,6 +137,21 @@ public class FilterCriteria {
 	public State getState() {
 		return state;
 	}
+	
+	public AggregateFunction getAggregateFunction() {
+		return aggregateFunction;
+	}
+	
+	public long getBucketSize() {
+		return bucketSize;
+	}
+	
+	/**
+	 * @return true, if aggregated entries instead of the raw entries are requested
+	 */
+	public boolean isAggregated() {
+		return aggregateFunction!=null && bucketSize>0;
+	}
 
 	public FilterCriteria setItemName(String itemName) {
 		this.itemName = itemName;
@@ -150,5 +192,15 @@ public class FilterCriteria {
 		this.state = state;
 		return this;
 	}
+	
+	public FilterCriteria setAggregateFunction(AggregateFunction aggregateFunction) {
+		this.aggregateFunction = aggregateFunction;
+		return this;
+	}
+	
+	public FilterCriteria setBucketSize(long bucketSize) {
+		this.bucketSize = bucketSize;
+		return this;
+	}
 
 }
@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.FilterCriteria.AggregateFunction;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.types.State;
+
+/**
+ * Aggregates the entries of a query in memory, for persistence services which cannot aggregate
+ * them natively.
+ *
+ * <p>The entries are grouped into time buckets, which start at multiples of the bucket size.
+ * The functions {@link AggregateFunction#MIN}, {@link AggregateFunction#MAX} and
+ * {@link AggregateFunction#AVG} only consider entries with decimal states,
+ * {@link AggregateFunction#LAST} considers all entries. {@link AggregateFunction#LTTB} keeps
+ * the first and the last entry of the series and selects one entry with a decimal state per
+ * bucket in between.</p>
+ *
+ * @since 2.0.0
+ */
+public class HistoricItemAggregator {
+
+	private HistoricItemAggregator() {}
+
+	/**
+	 * Queries a persistence service and aggregates the result as requested by the filter. If the
+	 * service is able to aggregate the entries itself, the query is passed on unchanged, otherwise
+	 * the raw entries are queried and aggregated in memory, with ordering and paging applied to the
+	 * aggregated entries.
+	 *
+	 * @param service the service to query
+	 * @param filter the filter, possibly requesting aggregated entries
+	 * @return the entries of the query
+	 */
+	public static Iterable<HistoricItem> query(QueryablePersistenceService service, FilterCriteria filter) {
+		if(!filter.isAggregated() || (service instanceof AggregatingPersistenceService
+				&& ((AggregatingPersistenceService) service).isAggregationSupported(filter.getAggregateFunction()))) {
+			return service.query(filter);
+		}
+		FilterCriteria rawFilter = new FilterCriteria()
+			.setItemName(filter.getItemName())
+			.setBeginDate(filter.getBeginDate())
+			.setEndDate(filter.getEndDate())
+			.setOperator(filter.getOperator())
+			.setState(filter.getState())
+			.setOrdering(Ordering.ASCENDING);
+		List<HistoricItem> result = aggregate(service.query(rawFilter), filter.getAggregateFunction(), filter.getBucketSize());
+		if(filter.getOrdering()==Ordering.DESCENDING) {
+			Collections.reverse(result);
+		}
+		long first = (long) filter.getPageNumber() * filter.getPageSize();
+		if(first >= result.size()) {
+			return Collections.emptyList();
+		}
+		long last = Math.min(result.size(), first + filter.getPageSize());
+		return result.subList((int) first, (int) last);
+	}
+
+	/**
+	 * Aggregates the entries of each time bucket.
+	 *
+	 * @param items the entries in ascending order
+	 * @param function the aggregate function
+	 * @param bucketSize the size of the buckets in milliseconds
+	 * @return the aggregated entries in ascending order
+	 */
+	public static List<HistoricItem> aggregate(Iterable<HistoricItem> items, AggregateFunction function, long bucketSize) {
+		if(bucketSize<=0) {
+			throw new IllegalArgumentException("The bucket size must be positive.");
+		}
+		if(function==AggregateFunction.LTTB) {
+			return largestTriangleThreeBuckets(items, bucketSize);
+		}
+
+		List<HistoricItem> result = new ArrayList<HistoricItem>();
+		long currentBucket = 0;
+		HistoricItem selected = null;
+		BigDecimal sum = BigDecimal.ZERO;
+		int count = 0;
+		String name = null;
+		for(HistoricItem item : items) {
+			long bucket = bucketOf(item, bucketSize);
+			if((selected!=null || count>0) && bucket!=currentBucket) {
+				addResult(result, function, name, currentBucket * bucketSize, selected, sum, count);
+				selected = null;
+				sum = BigDecimal.ZERO;
+				count = 0;
+			}
+			currentBucket = bucket;
+			name = item.getName();
+			BigDecimal value = valueOf(item);
+			switch(function) {
+				case LAST:
+					selected = item;
+					break;
+				case MIN:
+					if(value!=null && (selected==null || value.compareTo(valueOf(selected)) < 0)) {
+						selected = item;
+					}
+					break;
+				case MAX:
+					if(value!=null && (selected==null || value.compareTo(valueOf(selected)) > 0)) {
+						selected = item;
+					}
+					break;
+				case AVG:
+					if(value!=null) {
+						sum = sum.add(value);
+						count++;
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unsupported aggregate function " + function);
+			}
+		}
+		if(selected!=null || count>0) {
+			addResult(result, function, name, currentBucket * bucketSize, selected, sum, count);
+		}
+		return result;
+	}
+
+	private static void addResult(List<HistoricItem> result, AggregateFunction function, String name,
+			long bucketStart, HistoricItem selected, BigDecimal sum, int count) {
+		if(function==AggregateFunction.AVG) {
+			BigDecimal average = sum.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+			result.add(new AggregatedHistoricItem(name, new Date(bucketStart), new DecimalType(average)));
+		} else {
+			result.add(selected);
+		}
+	}
+
+	/*
+	 * Selects per bucket the entry which forms the largest triangle with the entry selected in
+	 * the previous bucket and the average of the next bucket.
+	 */
+	private static List<HistoricItem> largestTriangleThreeBuckets(Iterable<HistoricItem> items, long bucketSize) {
+		HistoricItem first = null;
+		HistoricItem last = null;
+		List<List<HistoricItem>> buckets = new ArrayList<List<HistoricItem>>();
+		List<HistoricItem> bucket = null;
+		long currentBucket = 0;
+		for(HistoricItem item : items) {
+			if(first==null) {
+				first = item;
+			} else {
+				if(last!=null && valueOf(last)!=null) {
+					// the first and the last entry are kept anyway, all others are candidates
+					long bucketOfLast = bucketOf(last, bucketSize);
+					if(bucket==null || bucketOfLast!=currentBucket) {
+						bucket = new ArrayList<HistoricItem>();
+						buckets.add(bucket);
+						currentBucket = bucketOfLast;
+					}
+					bucket.add(last);
+				}
+				last = item;
+			}
+		}
+
+		List<HistoricItem> result = new ArrayList<HistoricItem>(buckets.size() + 2);
+		if(first==null) {
+			return result;
+		}
+		result.add(first);
+		HistoricItem previous = first;
+		for(int i = 0; i < buckets.size(); i++) {
+			double nextTime;
+			double nextValue;
+			BigDecimal lastDecimal = valueOf(last);
+			if(i + 1 < buckets.size() || lastDecimal==null) {
+				// the average of the next bucket or - if the last entry has no value - of this bucket
+				List<HistoricItem> averaged = buckets.get(i + 1 < buckets.size() ? i + 1 : i);
+				nextTime = 0;
+				nextValue = 0;
+				for(HistoricItem item : averaged) {
+					nextTime += item.getTimestamp().getTime();
+					nextValue += valueOf(item).doubleValue();
+				}
+				nextTime /= averaged.size();
+				nextValue /= averaged.size();
+			} else {
+				nextTime = last.getTimestamp().getTime();
+				nextValue = lastDecimal.doubleValue();
+			}
+			BigDecimal previousDecimal = valueOf(previous);
+			double previousValue = previousDecimal!=null ? previousDecimal.doubleValue() : nextValue;
+			double previousTime = previous.getTimestamp().getTime();
+
+			HistoricItem selected = null;
+			double maxArea = -1;
+			for(HistoricItem item : buckets.get(i)) {
+				double time = item.getTimestamp().getTime();
+				double value = valueOf(item).doubleValue();
+				double area = Math.abs((previousTime - nextTime) * (value - previousValue)
+						- (previousTime - time) * (nextValue - previousValue));
+				if(area > maxArea) {
+					maxArea = area;
+					selected = item;
+				}
+			}
+			result.add(selected);
+			previous = selected;
+		}
+		if(last!=null) {
+			result.add(last);
+		}
+		return result;
+	}
+
+	private static long bucketOf(HistoricItem item, long bucketSize) {
+		long time = item.getTimestamp().getTime();
+		// round down for dates before 1970 as well
+		return time >= 0 ? time / bucketSize : (time + 1) / bucketSize - 1;
+	}
+
+	private static BigDecimal valueOf(HistoricItem item) {
+		State state = item.getState();
+		return state instanceof DecimalType ? ((DecimalType) state).toBigDecimal() : null;
+	}
+
+	private static class AggregatedHistoricItem implements HistoricItem {
+
+		private final String name;
+		private final Date timestamp;
+		private final State state;
+
+		AggregatedHistoricItem(String name, Date timestamp, State state) {
+			this.name = name;
+			this.timestamp = timestamp;
+			this.state = state;
+		}
+
+		@Override
+		public Date getTimestamp() {
+			return timestamp;
+		}
+
+		@Override
+		public State getState() {
+			return state;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String toString() {
+			return name + " " + timestamp.getTime() + " " + state;
+		}
+	}
+
+}
@@ -10,7 +10,10 @@ package org.openhab.core.persistence.internal;
 
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.persistence.PersistenceService;
+import org.eclipse.smarthome.core.types.State;
 import org.openhab.core.compat1x.internal.ItemMapper;
+import org.openhab.core.compat1x.internal.TypeMapper;
+import org.openhab.core.items.GenericItem;
 
 
 /**
@@ -18,16 +21,33 @@ import org.openhab.core.compat1x.internal.ItemMapper;
  * namespace for the persistence service. It wraps an instance with the old interface
  * into a class with the new interface. 
  * 
+ * If a {@link PersistenceWriteQueue} is set, stores are passed to the wrapped service asynchronously.
+ * 
  * @author Kai Kreuzer - Initial contribution and API
  */
 public class PersistenceServiceDelegate implements PersistenceService {
 
 	protected org.openhab.core.persistence.PersistenceService service;
+	
+	private PersistenceWriteQueue writeQueue;
 
 	public PersistenceServiceDelegate(org.openhab.core.persistence.PersistenceService service) {
 		this.service = service;
 	}
 
+	/**
+	 * Sets the queue to store items asynchronously; must be called before the delegate is registered.
+	 * 
+	 * @param writeQueue the queue or <code>null</code> to store items on the calling thread
+	 */
+	void setWriteQueue(PersistenceWriteQueue writeQueue) {
+		this.writeQueue = writeQueue;
+	}
+
+	PersistenceWriteQueue getWriteQueue() {
+		return writeQueue;
+	}
+
 	@Override
 	public String getName() {
 		return service.getName();
@@ -35,6 +55,10 @@ public class PersistenceServiceDelegate implements PersistenceService {
 
 	@Override
 	public void store(Item item) {
+		if(writeQueue!=null) {
+			writeQueue.add(item, item.getState(), null);
+			return;
+		}
 		org.openhab.core.items.Item ohItem = ItemMapper.mapToOpenHABItem(item);
 		if(ohItem!=null) {
 			service.store(ohItem);
@@ -43,10 +67,39 @@ public class PersistenceServiceDelegate implements PersistenceService {
 
 	@Override
 	public void store(Item item, String alias) {
+		if(writeQueue!=null) {
+			writeQueue.add(item, item.getState(), alias);
+			return;
+		}
 		org.openhab.core.items.Item ohItem = ItemMapper.mapToOpenHABItem(item);
 		if(ohItem!=null) {
 			service.store(ohItem, alias);
 		}
 	}
 
+	/**
+	 * Stores an item with the state it had when the store was requested. Called by the write queue.
+	 * 
+	 * @param item the item to store
+	 * @param state the state to store
+	 * @param alias the alias to store the item with, may be <code>null</code>
+	 */
+	void storeNow(Item item, State state, String alias) {
+		org.openhab.core.items.Item ohItem = ItemMapper.mapToOpenHABItem(item);
+		if(ohItem==null) {
+			return;
+		}
+		if(ohItem instanceof GenericItem && state!=null) {
+			org.openhab.core.types.State ohState = (org.openhab.core.types.State) TypeMapper.mapToOpenHABType(state);
+			if(ohState!=null) {
+				((GenericItem) ohItem).setState(ohState);
+			}
+		}
+		if(alias==null) {
+			service.store(ohItem);
+		} else {
+			service.store(ohItem, alias);
+		}
+	}
+
 }
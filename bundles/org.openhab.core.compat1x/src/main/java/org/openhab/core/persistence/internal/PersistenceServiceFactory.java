@@ -18,16 +18,41 @@ import java.util.Set;
 import org.openhab.core.persistence.PersistenceService;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.ServiceRegistration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This class listens for services that implement the old persistence service interface and registers
  * an according service for each under the new interface.
  * 
+ * <p>Stores can be passed to selected services asynchronously through a {@link PersistenceWriteQueue}.
+ * This is configured by the following system properties:
+ * <ul>
+ * <li><code>openhab.compat1x.persistence.async</code>: a comma separated list of the names of the
+ * services which store asynchronously or <code>*</code> for all services (default: none)</li>
+ * <li><code>openhab.compat1x.persistence.queueSize</code>: the capacity of each queue (default: 10000)</li>
+ * <li><code>openhab.compat1x.persistence.batchSize</code>: the maximum number of stores processed at once (default: 100)</li>
+ * <li><code>openhab.compat1x.persistence.overflow</code>: what happens if a queue is full, one of
+ * <code>block</code>, <code>drop-oldest</code> and <code>coalesce</code> (default: block)</li>
+ * </ul>
+ * </p>
+ * 
  * @author Kai Kreuzer - Initial contribution and API
  */
 public class PersistenceServiceFactory {
 
+	private static final Logger logger = LoggerFactory.getLogger(PersistenceServiceFactory.class);
+
+	private static final String ASYNC_SERVICES = System.getProperty("openhab.compat1x.persistence.async", "");
+	private static final int QUEUE_SIZE = Integer.getInteger("openhab.compat1x.persistence.queueSize", 10000);
+	private static final int BATCH_SIZE = Integer.getInteger("openhab.compat1x.persistence.batchSize", 100);
+	private static final String OVERFLOW_POLICY = System.getProperty("openhab.compat1x.persistence.overflow", "block");
+
+	/** the time in milliseconds to wait for a write queue to be processed when a service is removed */
+	private static final long SHUTDOWN_TIMEOUT = 5000;
+
 	private Map<String, ServiceRegistration<org.eclipse.smarthome.core.persistence.PersistenceService>> delegates = new HashMap<>();
+	private Map<String, PersistenceWriteQueue> writeQueues = new HashMap<>();
 	private BundleContext context;
 	
 	private Set<PersistenceService> persistenceServices = new HashSet<>();
@@ -44,6 +69,10 @@ public class PersistenceServiceFactory {
 			serviceReg.unregister();
 		}
 		delegates.clear();
+		for(PersistenceWriteQueue writeQueue : writeQueues.values()) {
+			writeQueue.shutdown(SHUTDOWN_TIMEOUT);
+		}
+		writeQueues.clear();
 		this.context = null;
 	}
 
@@ -63,10 +92,15 @@ public class PersistenceServiceFactory {
 
 	private void registerDelegateService(PersistenceService persistenceService) {
 		if(!delegates.containsKey(persistenceService.getName())) {
-			org.eclipse.smarthome.core.persistence.PersistenceService service = 
+			PersistenceServiceDelegate service = 
 					(persistenceService instanceof org.openhab.core.persistence.QueryablePersistenceService) ?
 					new QueryablePersistenceServiceDelegate(persistenceService) 
 				:	new PersistenceServiceDelegate(persistenceService);
+			if(isAsync(persistenceService.getName())) {
+				PersistenceWriteQueue writeQueue = new PersistenceWriteQueue(service, QUEUE_SIZE, BATCH_SIZE, getOverflowPolicy());
+				service.setWriteQueue(writeQueue);
+				writeQueues.put(persistenceService.getName(), writeQueue);
+			}
 			Dictionary<String, Object> props = new Hashtable<String, Object>();
 			ServiceRegistration<org.eclipse.smarthome.core.persistence.PersistenceService> serviceReg = 
 					context.registerService(org.eclipse.smarthome.core.persistence.PersistenceService.class, service, props);
@@ -81,5 +115,27 @@ public class PersistenceServiceFactory {
 			delegates.remove(service.getName());
 			serviceReg.unregister();
 		}
+		PersistenceWriteQueue writeQueue = writeQueues.remove(service.getName());
+		if(writeQueue!=null) {
+			writeQueue.shutdown(SHUTDOWN_TIMEOUT);
+		}
+	}
+
+	private static boolean isAsync(String serviceName) {
+		for(String name : ASYNC_SERVICES.split(",")) {
+			if(name.trim().equals("*") || name.trim().equals(serviceName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static PersistenceWriteQueue.OverflowPolicy getOverflowPolicy() {
+		PersistenceWriteQueue.OverflowPolicy policy = PersistenceWriteQueue.OverflowPolicy.parse(OVERFLOW_POLICY);
+		if(policy==null) {
+			logger.warn("Unknown overflow policy '{}' - using 'block' instead.", OVERFLOW_POLICY);
+			policy = PersistenceWriteQueue.OverflowPolicy.BLOCK;
+		}
+		return policy;
 	}
 }
@@ -0,0 +1,308 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded write-behind queue for a {@link PersistenceServiceDelegate}. Stores are queued together with
+ * the state of the item at the time of the call and passed to the 1.x persistence service in batches by
+ * a dedicated thread, so that a slow persistence service does not block the caller.
+ *
+ * <p>If the queue is full, the {@link OverflowPolicy} decides whether the caller waits, the oldest store
+ * is dropped or - if a store of the same item is still waiting - the waiting store is updated to the new
+ * state.</p>
+ */
+public class PersistenceWriteQueue {
+
+	private static final Logger logger = LoggerFactory.getLogger(PersistenceWriteQueue.class);
+
+	public enum OverflowPolicy {
+		/** the caller waits until there is space in the queue */
+		BLOCK,
+		/** the oldest waiting store is dropped */
+		DROP_OLDEST,
+		/** a waiting store of the same item and alias is updated, otherwise the oldest store is dropped */
+		COALESCE;
+
+		/**
+		 * Parses a policy name such as <code>drop-oldest</code>, ignoring the case.
+		 *
+		 * @param name the name of the policy
+		 * @return the policy or <code>null</code> if the name is unknown
+		 */
+		public static OverflowPolicy parse(String name) {
+			for(OverflowPolicy policy : values()) {
+				if(policy.name().replace('_', '-').equalsIgnoreCase(name.trim())) {
+					return policy;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final class Entry {
+		final Item item;
+		final String alias;
+		final String key;
+		final long enqueued;
+		State state;
+
+		Entry(Item item, State state, String alias) {
+			this.item = item;
+			this.state = state;
+			this.alias = alias;
+			this.key = alias==null ? item.getName() : item.getName() + "\u0000" + alias;
+			this.enqueued = System.nanoTime();
+		}
+	}
+
+	private final PersistenceServiceDelegate delegate;
+	private final int capacity;
+	private final int batchSize;
+	private final OverflowPolicy overflowPolicy;
+
+	private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+	/** the waiting stores by item and alias, only maintained for {@link OverflowPolicy#COALESCE} */
+	private final Map<String, Entry> pending = new HashMap<>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	private final AtomicLong stored = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	public PersistenceWriteQueue(PersistenceServiceDelegate delegate, int capacity, int batchSize, OverflowPolicy overflowPolicy) {
+		if(capacity<=0 || batchSize<=0) {
+			throw new IllegalArgumentException("Capacity and batch size must be positive.");
+		}
+		this.delegate = delegate;
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.overflowPolicy = overflowPolicy;
+		this.worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				processQueue();
+			}
+		}, "openHAB-persistence-" + delegate.getName());
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Queues a store of an item with the given state.
+	 *
+	 * @param item the item to store
+	 * @param state the state of the item at the time of the call
+	 * @param alias the alias to store the item with, may be <code>null</code>
+	 */
+	public void add(Item item, State state, String alias) {
+		Entry entry = new Entry(item, state, alias);
+		lock.lock();
+		try {
+			if(overflowPolicy==OverflowPolicy.COALESCE && queue.size()>=capacity) {
+				Entry waiting = pending.get(entry.key);
+				if(waiting!=null) {
+					waiting.state = state;
+					coalesced.incrementAndGet();
+					return;
+				}
+			}
+			while(queue.size()>=capacity && running) {
+				if(overflowPolicy==OverflowPolicy.BLOCK) {
+					notFull.awaitUninterruptibly();
+				} else {
+					removePending(queue.poll());
+					dropped.incrementAndGet();
+				}
+			}
+			if(!running) {
+				dropped.incrementAndGet();
+				return;
+			}
+			queue.add(entry);
+			if(overflowPolicy==OverflowPolicy.COALESCE) {
+				pending.put(entry.key, entry);
+			}
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the worker thread after all waiting stores have been passed to the persistence service. If the
+	 * worker does not finish within the timeout, the stores which are still waiting are discarded and counted
+	 * as dropped, so that the worker stops after the batch it is currently storing.
+	 *
+	 * @param timeout the maximum time in milliseconds to wait for the worker
+	 */
+	public void shutdown(long timeout) {
+		lock.lock();
+		try {
+			running = false;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			worker.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(worker.isAlive()) {
+			int discarded;
+			lock.lock();
+			try {
+				discarded = queue.size();
+				queue.clear();
+				pending.clear();
+				dropped.addAndGet(discarded);
+			} finally {
+				lock.unlock();
+			}
+			logger.warn("Persistence service '{}' did not store the queued items within {}ms, {} pending stores have been dropped.",
+					delegate.getName(), timeout, discarded);
+		}
+		logger.debug("Write queue of persistence service '{}' stopped: {}", delegate.getName(), this);
+	}
+
+	private void processQueue() {
+		List<Entry> batch = new ArrayList<>(batchSize);
+		while(true) {
+			lock.lock();
+			try {
+				while(queue.isEmpty() && running) {
+					notEmpty.awaitUninterruptibly();
+				}
+				if(queue.isEmpty()) {
+					return;
+				}
+				while(!queue.isEmpty() && batch.size()<batchSize) {
+					Entry entry = queue.poll();
+					removePending(entry);
+					batch.add(entry);
+				}
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			batches.incrementAndGet();
+			for(Entry entry : batch) {
+				long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.enqueued);
+				totalLatency.addAndGet(latency);
+				updateMax(maxLatency, latency);
+				try {
+					delegate.storeNow(entry.item, entry.state, entry.alias);
+					stored.incrementAndGet();
+				} catch (RuntimeException e) {
+					failures.incrementAndGet();
+					logger.warn("Persistence service '{}' failed to store item '{}': {}", delegate.getName(), entry.item.getName(), e.getMessage());
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Removes an entry taken from the queue from the waiting stores, unless a later store of the same item
+	 * and alias is waiting.
+	 */
+	private void removePending(Entry entry) {
+		if(pending.get(entry.key)==entry) {
+			pending.remove(entry.key);
+		}
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current = max.get();
+		while(value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * @return the number of stores currently waiting
+	 */
+	public int getSize() {
+		lock.lock();
+		try {
+			return queue.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getStoredCount() {
+		return stored.get();
+	}
+
+	public long getFailureCount() {
+		return failures.get();
+	}
+
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	/**
+	 * @return the maximum time in milliseconds a store has been waiting in the queue
+	 */
+	public long getMaxLatency() {
+		return maxLatency.get();
+	}
+
+	/**
+	 * @return the average time in milliseconds a store has been waiting in the queue
+	 */
+	public long getAverageLatency() {
+		long count = stored.get() + failures.get();
+		return count==0 ? 0 : totalLatency.get() / count;
+	}
+
+	@Override
+	public String toString() {
+		return "size=" + getSize() + ", stored=" + getStoredCount() + ", failures=" + getFailureCount()
+				+ ", dropped=" + getDroppedCount() + ", coalesced=" + getCoalescedCount() + ", batches="
+				+ getBatchCount() + ", latency (avg/max)=" + getAverageLatency() + "/" + getMaxLatency() + "ms";
+	}
+
+}
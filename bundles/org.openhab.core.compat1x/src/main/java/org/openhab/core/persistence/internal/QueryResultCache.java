@@ -0,0 +1,293 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.smarthome.core.persistence.FilterCriteria;
+import org.eclipse.smarthome.core.persistence.HistoricItem;
+
+/**
+ * Caches the results of persistence queries, so that repeated identical queries (e.g. periodic chart
+ * refreshes) do not reach the persistence service.
+ *
+ * <p>
+ * Queries are identified by their filter criteria, with begin and end date rounded to a configurable bucket
+ * size: queries for a window relative to the current time therefore share their result while the window
+ * stays in the same bucket. Entries expire after a time to live and the least recently used entries are
+ * evicted if the cache is full. Storing an item invalidates all results for this item.
+ * </p>
+ *
+ * <p>
+ * Results are not copied upfront: a result is recorded while it is iterated and only added to the cache once
+ * it has been iterated completely, without an intermediate store of the item and without exceeding the
+ * maximum number of cached rows per result.
+ * </p>
+ */
+public class QueryResultCache {
+
+	private static final class Entry {
+		final List<HistoricItem> result;
+		final long generation;
+		final long expires;
+
+		Entry(List<HistoricItem> result, long generation, long expires) {
+			this.result = result;
+			this.generation = generation;
+			this.expires = expires;
+		}
+	}
+
+	private final int maxResultSize;
+	private final long timeToLive;
+	private final long bucketSize;
+
+	private final Map<QueryKey, Entry> entries;
+
+	/** incremented on every store, invalidates the results of queries which are not restricted to one item */
+	private final AtomicLong globalGeneration = new AtomicLong();
+	/** incremented on every store of an item, invalidates the results of queries for this item */
+	private final ConcurrentMap<String, AtomicLong> itemGenerations = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxEntries the maximum number of cached results
+	 * @param maxResultSize the maximum number of rows of a cached result
+	 * @param timeToLive the time in milliseconds after which a cached result expires
+	 * @param bucketSize the time in milliseconds to which begin and end dates are rounded, 0 to compare them exactly
+	 */
+	public QueryResultCache(final int maxEntries, int maxResultSize, long timeToLive, long bucketSize) {
+		this.maxResultSize = maxResultSize;
+		this.timeToLive = timeToLive;
+		this.bucketSize = bucketSize;
+		this.entries = new LinkedHashMap<QueryKey, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<QueryKey, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached result of a query or executes the query through the given delegate.
+	 *
+	 * @param filter the filter criteria of the query
+	 * @param query executes the query if there is no cached result
+	 * @return the result of the query
+	 */
+	public Iterable<HistoricItem> query(FilterCriteria filter, Query query) {
+		final QueryKey key = new QueryKey(filter, bucketSize);
+		final long generation = getGeneration(key.itemName);
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.generation == generation && entry.expires > System.currentTimeMillis()) {
+					hits.incrementAndGet();
+					return entry.result;
+				}
+				entries.remove(key);
+			}
+		}
+		misses.incrementAndGet();
+		final Iterable<HistoricItem> result = query.execute(filter);
+		return new Iterable<HistoricItem>() {
+			@Override
+			public Iterator<HistoricItem> iterator() {
+				return new RecordingIterator(result.iterator(), key, generation);
+			}
+		};
+	}
+
+	/**
+	 * Invalidates all cached results for an item.
+	 *
+	 * @param itemName the name of the item which has been stored
+	 */
+	public void invalidate(String itemName) {
+		globalGeneration.incrementAndGet();
+		AtomicLong generation = itemGenerations.get(itemName);
+		if (generation == null) {
+			AtomicLong newGeneration = new AtomicLong();
+			generation = itemGenerations.putIfAbsent(itemName, newGeneration);
+			if (generation == null) {
+				generation = newGeneration;
+			}
+		}
+		generation.incrementAndGet();
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	private long getGeneration(String itemName) {
+		if (itemName == null) {
+			return globalGeneration.get();
+		}
+		AtomicLong generation = itemGenerations.get(itemName);
+		return generation == null ? 0 : generation.get();
+	}
+
+	private void put(QueryKey key, List<HistoricItem> result, long generation) {
+		if (getGeneration(key.itemName) != generation) {
+			// the item has been stored while the result was read
+			return;
+		}
+		synchronized (entries) {
+			entries.put(key, new Entry(Collections.unmodifiableList(result), generation,
+					System.currentTimeMillis() + timeToLive));
+		}
+	}
+
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return "size=" + getSize() + ", hits=" + getHitCount() + ", misses=" + getMissCount();
+	}
+
+	/**
+	 * Executes a query on a persistence service.
+	 */
+	public interface Query {
+		Iterable<HistoricItem> execute(FilterCriteria filter);
+	}
+
+	private class RecordingIterator implements Iterator<HistoricItem> {
+
+		private final Iterator<HistoricItem> iterator;
+		private final QueryKey key;
+		private final long generation;
+		private List<HistoricItem> recorded = new ArrayList<>();
+
+		RecordingIterator(Iterator<HistoricItem> iterator, QueryKey key, long generation) {
+			this.iterator = iterator;
+			this.key = key;
+			this.generation = generation;
+		}
+
+		@Override
+		public boolean hasNext() {
+			boolean hasNext = iterator.hasNext();
+			if (!hasNext && recorded != null) {
+				put(key, recorded, generation);
+				recorded = null;
+			}
+			return hasNext;
+		}
+
+		@Override
+		public HistoricItem next() {
+			HistoricItem item = iterator.next();
+			if (recorded != null) {
+				if (recorded.size() < maxResultSize) {
+					recorded.add(item);
+				} else {
+					// too large to be cached
+					recorded = null;
+				}
+			}
+			return item;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * The normalized filter criteria of a query.
+	 */
+	static final class QueryKey {
+		final String itemName;
+		final Long begin;
+		final Long end;
+		final int pageNumber;
+		final int pageSize;
+		final FilterCriteria.Operator operator;
+		final FilterCriteria.Ordering ordering;
+		final Object state;
+
+		QueryKey(FilterCriteria filter, long bucketSize) {
+			this.itemName = filter.getItemName();
+			this.begin = round(filter.getBeginDate(), bucketSize);
+			this.end = round(filter.getEndDate(), bucketSize);
+			this.pageNumber = filter.getPageNumber();
+			this.pageSize = filter.getPageSize();
+			this.operator = filter.getOperator();
+			this.ordering = filter.getOrdering();
+			this.state = filter.getState();
+		}
+
+		private static Long round(Date date, long bucketSize) {
+			if (date == null) {
+				return null;
+			}
+			return bucketSize > 0 ? date.getTime() / bucketSize : date.getTime();
+		}
+
+		@Override
+		public int hashCode() {
+			int result = 1;
+			for (Object value : new Object[] { itemName, begin, end, operator, ordering, state }) {
+				result = 31 * result + (value == null ? 0 : value.hashCode());
+			}
+			return 31 * (31 * result + pageNumber) + pageSize;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof QueryKey)) {
+				return false;
+			}
+			QueryKey other = (QueryKey) obj;
+			return pageNumber == other.pageNumber && pageSize == other.pageSize && operator == other.operator
+					&& ordering == other.ordering && equal(itemName, other.itemName) && equal(begin, other.begin)
+					&& equal(end, other.end) && equal(state, other.state);
+		}
+
+		private static boolean equal(Object o1, Object o2) {
+			return o1 == null ? o2 == null : o1.equals(o2);
+		}
+	}
+
+}
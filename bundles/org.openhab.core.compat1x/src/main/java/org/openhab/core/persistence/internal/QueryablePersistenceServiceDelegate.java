@@ -8,16 +8,20 @@
  */
 package org.openhab.core.persistence.internal;
 
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 
+import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.persistence.FilterCriteria;
 import org.eclipse.smarthome.core.persistence.HistoricItem;
 import org.eclipse.smarthome.core.persistence.QueryablePersistenceService;
 import org.eclipse.smarthome.core.types.State;
 import org.openhab.core.compat1x.internal.TypeMapper;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.FilterCriteria.AggregateFunction;
 import org.openhab.core.persistence.FilterCriteria.Operator;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItemAggregator;
 
 
 /**
@@ -25,18 +29,122 @@ import org.openhab.core.persistence.FilterCriteria.Ordering;
  * namespace for the queryable persistence service. It wraps an instance with the old interface
  * into a class with the new interface. 
  * 
+ * <p>Query results can be cached in a {@link QueryResultCache}, which is configured by the following
+ * system properties:
+ * <ul>
+ * <li><code>openhab.compat1x.persistence.queryCache.size</code>: the maximum number of cached results per
+ * service, 0 disables the cache (default: 0)</li>
+ * <li><code>openhab.compat1x.persistence.queryCache.maxRows</code>: the maximum number of rows of a cached
+ * result (default: 10000)</li>
+ * <li><code>openhab.compat1x.persistence.queryCache.ttl</code>: the time to live of a cached result in
+ * milliseconds (default: 10000)</li>
+ * <li><code>openhab.compat1x.persistence.queryCache.bucket</code>: the time in milliseconds to which the
+ * begin and end dates of queries are rounded (default: 10000)</li>
+ * </ul>
+ * </p>
+ * 
  * @author Kai Kreuzer - Initial contribution and API
  */
 public class QueryablePersistenceServiceDelegate extends PersistenceServiceDelegate implements QueryablePersistenceService {
 
+	private static final int QUERY_CACHE_SIZE = Integer.getInteger("openhab.compat1x.persistence.queryCache.size", 0);
+	private static final int QUERY_CACHE_MAX_ROWS = Integer.getInteger("openhab.compat1x.persistence.queryCache.maxRows", 10000);
+	private static final long QUERY_CACHE_TTL = Long.getLong("openhab.compat1x.persistence.queryCache.ttl", 10000);
+	private static final long QUERY_CACHE_BUCKET = Long.getLong("openhab.compat1x.persistence.queryCache.bucket", 10000);
+
+	/** the cache for query results or <code>null</code> if results are not cached */
+	private final QueryResultCache queryCache;
+
+	private final QueryResultCache.Query uncachedQuery = new QueryResultCache.Query() {
+		@Override
+		public Iterable<HistoricItem> execute(FilterCriteria filter) {
+			return queryService(filter);
+		}
+	};
+
 	public QueryablePersistenceServiceDelegate(
 			org.openhab.core.persistence.PersistenceService persistenceService) {
+		this(persistenceService, QUERY_CACHE_SIZE > 0 ? new QueryResultCache(QUERY_CACHE_SIZE, QUERY_CACHE_MAX_ROWS,
+				QUERY_CACHE_TTL, QUERY_CACHE_BUCKET) : null);
+	}
+
+	QueryablePersistenceServiceDelegate(
+			org.openhab.core.persistence.PersistenceService persistenceService, QueryResultCache queryCache) {
 		super(persistenceService);
+		this.queryCache = queryCache;
+	}
+
+	QueryResultCache getQueryCache() {
+		return queryCache;
+	}
+
+	@Override
+	public void store(Item item) {
+		invalidate(item.getName());
+		super.store(item);
+		// invalidate again, a query may have been answered while the store was running
+		invalidate(item.getName());
+	}
+
+	@Override
+	public void store(Item item, String alias) {
+		String itemName = alias!=null ? alias : item.getName();
+		invalidate(itemName);
+		super.store(item, alias);
+		invalidate(itemName);
+	}
+
+	@Override
+	void storeNow(Item item, State state, String alias) {
+		super.storeNow(item, state, alias);
+		// invalidate again, a query may have been answered while the store was waiting in the write queue
+		invalidate(alias!=null ? alias : item.getName());
+	}
+
+	private void invalidate(String itemName) {
+		if(queryCache!=null && itemName!=null) {
+			queryCache.invalidate(itemName);
+		}
 	}
 
 	@Override
 	public Iterable<HistoricItem> query(FilterCriteria filter) {
-		org.openhab.core.persistence.FilterCriteria mappedFilter = new org.openhab.core.persistence.FilterCriteria()
+		if(queryCache!=null) {
+			return queryCache.query(filter, uncachedQuery);
+		}
+		return queryService(filter);
+	}
+
+	/**
+	 * Queries aggregated entries instead of the raw entries. The aggregation is passed on to the 1.x
+	 * persistence service if it is an {@link AggregatingPersistenceService} which supports the function,
+	 * otherwise the raw entries are aggregated in memory by the {@link HistoricItemAggregator}.
+	 * Aggregated results are not cached.
+	 *
+	 * @param filter the filter criteria of the query
+	 * @param function the function to aggregate the entries of each time bucket with, <code>null</code> for
+	 *            the raw entries
+	 * @param bucketSize the size of the time buckets in milliseconds
+	 * @return the aggregated entries
+	 */
+	public Iterable<HistoricItem> query(FilterCriteria filter, AggregateFunction function, long bucketSize) {
+		org.openhab.core.persistence.FilterCriteria mappedFilter = mapFilter(filter)
+			.setAggregateFunction(function)
+			.setBucketSize(bucketSize);
+		if(!mappedFilter.isAggregated()) {
+			return query(filter);
+		}
+		org.openhab.core.persistence.QueryablePersistenceService pService = (org.openhab.core.persistence.QueryablePersistenceService) service;
+		return wrap(HistoricItemAggregator.query(pService, mappedFilter));
+	}
+
+	private Iterable<HistoricItem> queryService(FilterCriteria filter) {
+		org.openhab.core.persistence.QueryablePersistenceService pService = (org.openhab.core.persistence.QueryablePersistenceService) service;
+		return wrap(pService.query(mapFilter(filter)));
+	}
+
+	private org.openhab.core.persistence.FilterCriteria mapFilter(FilterCriteria filter) {
+		return new org.openhab.core.persistence.FilterCriteria()
 			.setBeginDate(filter.getBeginDate())
 			.setEndDate(filter.getEndDate())
 			.setItemName(filter.getItemName())
@@ -45,28 +153,63 @@ public class QueryablePersistenceServiceDelegate extends PersistenceServiceDeleg
 			.setPageNumber(filter.getPageNumber())
 			.setPageSize(filter.getPageSize())
 			.setState(mapState(filter.getState()));
-		org.openhab.core.persistence.QueryablePersistenceService pService = (org.openhab.core.persistence.QueryablePersistenceService) service;
-		Iterable<org.openhab.core.persistence.HistoricItem> historicItems = pService.query(mappedFilter);
-		ArrayList<HistoricItem> result = new ArrayList<>();
-		for(final org.openhab.core.persistence.HistoricItem item : historicItems) {
-			result.add(new HistoricItem() {
-				@Override
-				public Date getTimestamp() {
-					return item.getTimestamp();
-				}
-				
-				@Override
-				public State getState() {
-				    return (State) TypeMapper.mapToESHType(item.getState());
-				}
-				
-				@Override
-				public String getName() {
-					return item.getName();
-				}
-			});
+	}
+
+	private static Iterable<HistoricItem> wrap(final Iterable<org.openhab.core.persistence.HistoricItem> historicItems) {
+		// the results are wrapped while they are iterated, so that they are never copied as a whole
+		return new Iterable<HistoricItem>() {
+			@Override
+			public Iterator<HistoricItem> iterator() {
+				final Iterator<org.openhab.core.persistence.HistoricItem> iterator = historicItems.iterator();
+				return new Iterator<HistoricItem>() {
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+
+					@Override
+					public HistoricItem next() {
+						return new MappedHistoricItem(iterator.next());
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+	
+	/**
+	 * Wraps a 1.x historic item; its state is mapped on the first access.
+	 */
+	private static class MappedHistoricItem implements HistoricItem {
+		
+		private final org.openhab.core.persistence.HistoricItem item;
+		private State state;
+		
+		MappedHistoricItem(org.openhab.core.persistence.HistoricItem item) {
+			this.item = item;
+		}
+
+		@Override
+		public Date getTimestamp() {
+			return item.getTimestamp();
+		}
+		
+		@Override
+		public State getState() {
+			if(state==null) {
+				state = (State) TypeMapper.mapToESHType(item.getState());
+			}
+			return state;
+		}
+		
+		@Override
+		public String getName() {
+			return item.getName();
 		}
-		return result;
 	}
 
 	private org.openhab.core.types.State mapState(State state) {
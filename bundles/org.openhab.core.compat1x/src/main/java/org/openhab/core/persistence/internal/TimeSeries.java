@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The entries of one item (or alias) of the {@link TimeSeriesPersistenceService}. They are stored in a directory
+ * of numbered {@link TimeSeriesSegment}s, entries are only appended to the last one.
+ *
+ * <p>Segment files which cannot be opened are skipped, so that the remaining entries of the series can still
+ * be queried. If the last segment cannot be opened, new entries are appended to a new segment.</p>
+ */
+class TimeSeries {
+
+	private static final Logger logger = LoggerFactory.getLogger(TimeSeries.class);
+
+	private static final String SEGMENT_EXTENSION = ".seg";
+
+	private final String name;
+	private final File directory;
+	private final int segmentSize;
+
+	/** all segments of the series in ascending order, guarded by this */
+	private final List<TimeSeriesSegment> segments = new ArrayList<>();
+
+	/** the number of the next segment to create, guarded by this */
+	private int nextNumber = 0;
+
+	/**
+	 * Opens a series, creating its directory if necessary.
+	 *
+	 * @param name the name of the series
+	 * @param directory the directory of the segment files
+	 * @param segmentSize the size of new segment files in bytes
+	 * @throws IOException if the directory cannot be created or listed
+	 */
+	TimeSeries(String name, File directory, int segmentSize) throws IOException {
+		this.name = name;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory '" + directory + "'.");
+		}
+		File[] files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String fileName) {
+				return fileName.endsWith(SEGMENT_EXTENSION);
+			}
+		});
+		if(files==null) {
+			throw new IOException("Cannot list directory '" + directory + "'.");
+		}
+		TreeMap<Integer, File> segmentFiles = new TreeMap<>();
+		for(File file : files) {
+			try {
+				segmentFiles.put(getSegmentNumber(file), file);
+			} catch (IOException e) {
+				logger.warn("Ignoring file of time series '{}': {}", name, e.getMessage());
+			}
+		}
+		for(Map.Entry<Integer, File> entry : segmentFiles.entrySet()) {
+			int number = entry.getKey();
+			nextNumber = number + 1;
+			try {
+				segments.add(TimeSeriesSegment.open(entry.getValue(), number, number==segmentFiles.lastKey()));
+			} catch (IOException e) {
+				logger.warn("Ignoring segment of time series '{}': {}", name, e.getMessage());
+			}
+		}
+	}
+
+	private static int getSegmentNumber(File file) throws IOException {
+		String fileName = file.getName();
+		try {
+			int number = Integer.parseInt(fileName.substring(0, fileName.length() - SEGMENT_EXTENSION.length()));
+			if(number < 0) {
+				throw new NumberFormatException();
+			}
+			return number;
+		} catch (NumberFormatException e) {
+			throw new IOException("File '" + file + "' is not a numbered time series segment.");
+		}
+	}
+
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Appends an entry to the last segment, starting a new segment if it is full.
+	 *
+	 * @param timestamp the timestamp of the entry
+	 * @param state the state of the entry
+	 * @throws IOException if a new segment cannot be created or the state does not fit into an empty segment
+	 */
+	synchronized void append(long timestamp, State state) throws IOException {
+		TimeSeriesSegment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+		if(segment!=null && segment.append(timestamp, state)) {
+			return;
+		}
+		if(segment!=null && segment.isWritable() && segment.getCount()==0) {
+			throw new IOException("State of '" + name + "' is too large for a segment of " + segmentSize + " bytes.");
+		}
+		if(segment!=null) {
+			segment.seal();
+		}
+		int number = nextNumber;
+		File file = new File(directory, String.format("%010d", number) + SEGMENT_EXTENSION);
+		TimeSeriesSegment newSegment = TimeSeriesSegment.create(file, number, segmentSize);
+		nextNumber = number + 1;
+		segments.add(newSegment);
+		if(!newSegment.append(timestamp, state)) {
+			throw new IOException("State of '" + name + "' is too large for a segment of " + segmentSize + " bytes.");
+		}
+	}
+
+	/**
+	 * Writes all changes to the file system.
+	 */
+	synchronized void force() {
+		for(TimeSeriesSegment segment : segments) {
+			if(segment.isWritable()) {
+				segment.force();
+			}
+		}
+	}
+
+	/**
+	 * Writes all changes to the file system and releases the mapping of the last segment. Entries which are
+	 * appended afterwards are written to a new segment.
+	 */
+	synchronized void close() {
+		for(TimeSeriesSegment segment : segments) {
+			if(segment.isWritable()) {
+				segment.seal();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of entries of the series
+	 */
+	synchronized long getCount() {
+		long count = 0;
+		for(TimeSeriesSegment segment : segments) {
+			count += segment.getCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Iterates over the entries within a time range. Entries which are appended while iterating are not
+	 * returned.
+	 *
+	 * @param begin the minimum timestamp, <code>null</code> for no lower bound
+	 * @param end the maximum timestamp, <code>null</code> for no upper bound
+	 * @param descending true to return the newest entries first
+	 * @return the iterator
+	 */
+	Iterator<HistoricItem> iterator(Date begin, Date end, boolean descending) {
+		List<TimeSeriesSegment> snapshot;
+		int[] counts;
+		synchronized (this) {
+			snapshot = new ArrayList<>(segments);
+			counts = new int[snapshot.size()];
+			for(int i = 0; i < counts.length; i++) {
+				counts[i] = snapshot.get(i).getCount();
+			}
+		}
+		return new EntryIterator(snapshot, counts, begin!=null ? begin.getTime() : Long.MIN_VALUE,
+				end!=null ? end.getTime() : Long.MAX_VALUE, descending);
+	}
+
+	private class EntryIterator implements Iterator<HistoricItem> {
+
+		private final List<TimeSeriesSegment> segments;
+		private final int[] counts;
+		private final long begin;
+		private final long end;
+		private final boolean descending;
+
+		/** the index of the next segment to read */
+		private int segmentIndex;
+		/** the codec and remaining entries of the current segment when reading in ascending order */
+		private TimeSeriesCodec reader;
+		private int remaining;
+		/** the entries of the current segment in descending order */
+		private Iterator<HistoricItem> buffered = Collections.emptyIterator();
+
+		private HistoricItem next;
+
+		EntryIterator(List<TimeSeriesSegment> segments, int[] counts, long begin, long end, boolean descending) {
+			this.segments = segments;
+			this.counts = counts;
+			this.begin = begin;
+			this.end = end;
+			this.descending = descending;
+			this.segmentIndex = descending ? segments.size() - 1 : 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while(next==null) {
+				if(buffered.hasNext()) {
+					next = buffered.next();
+				} else if(reader!=null && remaining > 0) {
+					reader.read();
+					remaining--;
+					if(reader.getTimestamp()>=begin && reader.getTimestamp()<=end) {
+						next = new TimeSeriesHistoricItem(name, reader.getTimestamp(), reader.getState());
+					}
+				} else if(!nextSegment()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean nextSegment() {
+			reader = null;
+			while(segmentIndex>=0 && segmentIndex < segments.size()) {
+				int index = segmentIndex;
+				segmentIndex += descending ? -1 : 1;
+				TimeSeriesSegment segment = segments.get(index);
+				if(counts[index]==0 || segment.getMaxTimestamp() < begin || segment.getMinTimestamp() > end) {
+					continue;
+				}
+				TimeSeriesCodec segmentReader;
+				try {
+					segmentReader = segment.newReader();
+				} catch (IOException e) {
+					logger.warn("Cannot read segment '{}' of time series '{}': {}", segment, name, e.getMessage());
+					continue;
+				}
+				if(descending) {
+					List<HistoricItem> entries = new ArrayList<>(counts[index]);
+					for(int i = 0; i < counts[index]; i++) {
+						segmentReader.read();
+						if(segmentReader.getTimestamp()>=begin && segmentReader.getTimestamp()<=end) {
+							entries.add(new TimeSeriesHistoricItem(name, segmentReader.getTimestamp(), segmentReader.getState()));
+						}
+					}
+					Collections.reverse(entries);
+					buffered = entries.iterator();
+				} else {
+					reader = segmentReader;
+					remaining = counts[index];
+				}
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public HistoricItem next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			HistoricItem result = next;
+			next = null;
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static class TimeSeriesHistoricItem implements HistoricItem {
+
+		private final String name;
+		private final long timestamp;
+		private final State state;
+
+		TimeSeriesHistoricItem(String name, long timestamp, State state) {
+			this.name = name;
+			this.timestamp = timestamp;
+			this.state = state;
+		}
+
+		@Override
+		public Date getTimestamp() {
+			return new Date(timestamp);
+		}
+
+		@Override
+		public State getState() {
+			return state;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String toString() {
+			return name + " " + new Date(timestamp) + " " + state;
+		}
+	}
+
+}
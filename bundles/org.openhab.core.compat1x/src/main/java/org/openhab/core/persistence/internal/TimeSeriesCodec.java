@@ -0,0 +1,436 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.State;
+import org.openhab.core.types.TypeParser;
+
+/**
+ * Encodes the entries of a {@link TimeSeriesSegment} into a bit stream and decodes them again.
+ *
+ * <p>Timestamps are stored as the difference between consecutive deltas, which is usually zero or
+ * small for periodic stores. Decimal and percent states are stored as doubles, XOR-ed with the previous
+ * value, so that repeated and slowly changing values only need a few bits. All other states are stored as
+ * their string representation, which is dictionary-encoded: a string is written in full on its first
+ * occurrence in a segment and referenced by its index afterwards. The types of the states are stored in
+ * the same way.</p>
+ *
+ * <p>Each segment is encoded on its own, so decoding always starts at the beginning of a segment. A codec
+ * which has read all entries of a segment can continue to write to it.</p>
+ */
+class TimeSeriesCodec {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String DECIMAL_TYPE = DecimalType.class.getName();
+	private static final String PERCENT_TYPE = PercentType.class.getName();
+	private static final String STRING_TYPE = StringType.class.getName();
+
+	/** the size of an entry without the bytes of its strings, rounded up */
+	private static final int MAX_ENTRY_SIZE = 64;
+
+	private static final ConcurrentMap<String, List<Class<? extends State>>> stateTypes = new ConcurrentHashMap<>();
+
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final long capacity;
+
+	/** the position in bits relative to the offset */
+	private long position = 0;
+	private int count = 0;
+
+	private long previousTimestamp = 0;
+	private long previousDelta = 0;
+	private long previousValue = 0;
+	private int previousLeading = -1;
+	private int previousTrailing = 0;
+	private String previousType;
+	private String previousText;
+	private State previousState;
+
+	private final List<String> strings = new ArrayList<>();
+	private final Map<String, Integer> ids = new HashMap<>();
+
+	/** the timestamp of the entry read last */
+	private long timestamp;
+	/** the state of the entry read last */
+	private State state;
+
+	/**
+	 * @param buffer the buffer to read from or write to
+	 * @param offset the index of the first byte of the bit stream
+	 */
+	TimeSeriesCodec(ByteBuffer buffer, int offset) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.capacity = (long) (buffer.capacity() - offset) * 8;
+	}
+
+	/**
+	 * @return the number of bits read or written
+	 */
+	long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the number of entries read or written
+	 */
+	int getCount() {
+		return count;
+	}
+
+	long getTimestamp() {
+		return timestamp;
+	}
+
+	State getState() {
+		return state;
+	}
+
+	/**
+	 * Checks whether a state can be stored by this codec.
+	 *
+	 * @param state the state to store
+	 * @return true, if the state is either numeric or its type can be parsed from a string
+	 */
+	static boolean isSupported(State state) {
+		return isNumeric(state.getClass().getName()) || getStateTypes(state.getClass().getName())!=null;
+	}
+
+	/**
+	 * Writes an entry, if there is enough space left.
+	 *
+	 * @param timestamp the timestamp of the entry
+	 * @param state the state of the entry
+	 * @return false, if the entry does not fit into the buffer
+	 */
+	boolean write(long timestamp, State state) {
+		String type = state.getClass().getName();
+		boolean numeric = isNumeric(type);
+		String text = numeric ? null : state.toString();
+		long required = MAX_ENTRY_SIZE * 8;
+		if(!type.equals(previousType) && !ids.containsKey(type)) {
+			required += type.length() * 3 * 8;
+		}
+		if(text!=null && !text.equals(previousText) && !ids.containsKey(text)) {
+			required += (long) text.length() * 3 * 8;
+		}
+		if(position + required > capacity) {
+			return false;
+		}
+
+		writeTimestamp(timestamp);
+		if(type.equals(previousType)) {
+			writeBits(0, 1);
+		} else {
+			writeBits(1, 1);
+			writeString(type);
+			previousType = type;
+		}
+		if(numeric) {
+			writeDouble(((DecimalType) state).doubleValue());
+		} else if(text.equals(previousText)) {
+			writeBits(0, 1);
+		} else {
+			writeBits(1, 1);
+			writeString(text);
+			previousText = text;
+		}
+		count++;
+		return true;
+	}
+
+	/**
+	 * Reads the next entry, which is available by {@link #getTimestamp()} and {@link #getState()} afterwards.
+	 *
+	 * @throws IllegalStateException if the entry cannot be decoded, i.e. the bit stream is corrupt
+	 */
+	void read() {
+		timestamp = readTimestamp();
+		boolean typeChanged = readBits(1)==1;
+		if(typeChanged) {
+			previousType = readString();
+		} else if(previousType==null) {
+			throw new IllegalStateException("The first entry has no type.");
+		}
+		if(isNumeric(previousType)) {
+			double value = readDouble();
+			// integral values are restored without a fraction digit
+			BigDecimal decimal = value==Math.rint(value) && Math.abs(value) < 1e15 ?
+					BigDecimal.valueOf((long) value) : BigDecimal.valueOf(value);
+			state = previousType.equals(PERCENT_TYPE) ? new PercentType(decimal) : new DecimalType(decimal);
+		} else {
+			boolean textChanged = readBits(1)==1;
+			if(textChanged) {
+				previousText = readString();
+			} else if(previousText==null) {
+				throw new IllegalStateException("The first text entry has no text.");
+			}
+			if(textChanged || typeChanged) {
+				previousState = parseState(previousType, previousText);
+			}
+			state = previousState;
+		}
+		count++;
+	}
+
+	private void writeTimestamp(long timestamp) {
+		if(count==0) {
+			writeBits(timestamp, 64);
+		} else {
+			long delta = timestamp - previousTimestamp;
+			long deltaOfDelta = delta - previousDelta;
+			if(deltaOfDelta==0) {
+				writeBits(0, 1);
+			} else if(fits(deltaOfDelta, 7)) {
+				writeBits(0x2, 2);
+				writeBits(deltaOfDelta, 7);
+			} else if(fits(deltaOfDelta, 9)) {
+				writeBits(0x6, 3);
+				writeBits(deltaOfDelta, 9);
+			} else if(fits(deltaOfDelta, 12)) {
+				writeBits(0xE, 4);
+				writeBits(deltaOfDelta, 12);
+			} else if(fits(deltaOfDelta, 32)) {
+				writeBits(0x1E, 5);
+				writeBits(deltaOfDelta, 32);
+			} else {
+				writeBits(0x1F, 5);
+				writeBits(deltaOfDelta, 64);
+			}
+			previousDelta = delta;
+		}
+		previousTimestamp = timestamp;
+	}
+
+	private long readTimestamp() {
+		if(count==0) {
+			previousTimestamp = readBits(64);
+		} else {
+			int bits;
+			if(readBits(1)==0) {
+				bits = 0;
+			} else if(readBits(1)==0) {
+				bits = 7;
+			} else if(readBits(1)==0) {
+				bits = 9;
+			} else if(readBits(1)==0) {
+				bits = 12;
+			} else if(readBits(1)==0) {
+				bits = 32;
+			} else {
+				bits = 64;
+			}
+			long deltaOfDelta = bits==0 ? 0 : signExtend(readBits(bits), bits);
+			previousDelta += deltaOfDelta;
+			previousTimestamp += previousDelta;
+		}
+		return previousTimestamp;
+	}
+
+	private void writeDouble(double value) {
+		long bits = Double.doubleToLongBits(value);
+		long xor = bits ^ previousValue;
+		if(xor==0) {
+			writeBits(0, 1);
+		} else {
+			int leading = Long.numberOfLeadingZeros(xor);
+			int trailing = Long.numberOfTrailingZeros(xor);
+			if(previousLeading>=0 && leading>=previousLeading && trailing>=previousTrailing) {
+				// the changed bits fit into the window of the previous value
+				writeBits(0x2, 2);
+				writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+			} else {
+				int significant = 64 - leading - trailing;
+				writeBits(0x3, 2);
+				writeBits(leading, 6);
+				writeBits(significant - 1, 6);
+				writeBits(xor >>> trailing, significant);
+				previousLeading = leading;
+				previousTrailing = trailing;
+			}
+		}
+		previousValue = bits;
+	}
+
+	private double readDouble() {
+		if(readBits(1)==1) {
+			long xor;
+			if(readBits(1)==0) {
+				if(previousLeading < 0) {
+					throw new IllegalStateException("The first changed value refers to a previous value.");
+				}
+				xor = readBits(64 - previousLeading - previousTrailing) << previousTrailing;
+			} else {
+				previousLeading = (int) readBits(6);
+				int significant = (int) readBits(6) + 1;
+				previousTrailing = 64 - previousLeading - significant;
+				if(previousTrailing < 0) {
+					throw new IllegalStateException("Invalid number of significant bits: " + significant);
+				}
+				xor = readBits(significant) << previousTrailing;
+			}
+			previousValue ^= xor;
+		}
+		return Double.longBitsToDouble(previousValue);
+	}
+
+	private void writeString(String string) {
+		Integer id = ids.get(string);
+		if(id!=null) {
+			writeBits(1, 1);
+			writeBits(id, idBits());
+		} else {
+			byte[] bytes = string.getBytes(UTF_8);
+			writeBits(0, 1);
+			writeVarInt(bytes.length);
+			for(byte b : bytes) {
+				writeBits(b, 8);
+			}
+			addString(string);
+		}
+	}
+
+	private String readString() {
+		if(readBits(1)==1) {
+			int id = (int) readBits(idBits());
+			if(id>=strings.size()) {
+				throw new IllegalStateException("Unknown string index: " + id);
+			}
+			return strings.get(id);
+		}
+		int length = readVarInt();
+		if(length < 0 || length > (capacity - position) / 8) {
+			throw new IllegalStateException("Invalid string length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) readBits(8);
+		}
+		String string = new String(bytes, UTF_8);
+		addString(string);
+		return string;
+	}
+
+	private void addString(String string) {
+		ids.put(string, strings.size());
+		strings.add(string);
+	}
+
+	/**
+	 * @return the number of bits of a string index, which depends on the number of known strings
+	 */
+	private int idBits() {
+		return strings.size()<=1 ? 0 : 32 - Integer.numberOfLeadingZeros(strings.size() - 1);
+	}
+
+	private void writeVarInt(int value) {
+		while((value & ~0x7F)!=0) {
+			writeBits((value & 0x7F) | 0x80, 8);
+			value >>>= 7;
+		}
+		writeBits(value, 8);
+	}
+
+	private int readVarInt() {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			int b = (int) readBits(8);
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80)==0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("Invalid variable-length integer.");
+	}
+
+	private void writeBits(long value, int bits) {
+		while(bits > 0) {
+			int index = offset + (int) (position >>> 3);
+			int bitOffset = (int) (position & 7);
+			int n = Math.min(8 - bitOffset, bits);
+			int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+			// keep the bits written before, but not any garbage after them
+			int current = buffer.get(index) & (0xFF00 >>> bitOffset) & 0xFF;
+			buffer.put(index, (byte) (current | (chunk << (8 - bitOffset - n))));
+			bits -= n;
+			position += n;
+		}
+	}
+
+	private long readBits(int bits) {
+		if(position + bits > capacity) {
+			throw new IllegalStateException("Cannot read beyond the end of the segment.");
+		}
+		long value = 0;
+		while(bits > 0) {
+			int index = offset + (int) (position >>> 3);
+			int bitOffset = (int) (position & 7);
+			int n = Math.min(8 - bitOffset, bits);
+			int chunk = ((buffer.get(index) & 0xFF) >>> (8 - bitOffset - n)) & ((1 << n) - 1);
+			value = (value << n) | chunk;
+			bits -= n;
+			position += n;
+		}
+		return value;
+	}
+
+	private static boolean fits(long value, int bits) {
+		return value >= -(1L << (bits - 1)) && value < (1L << (bits - 1));
+	}
+
+	private static long signExtend(long value, int bits) {
+		return bits==64 ? value : (value << (64 - bits)) >> (64 - bits);
+	}
+
+	private static boolean isNumeric(String type) {
+		return DECIMAL_TYPE.equals(type) || PERCENT_TYPE.equals(type);
+	}
+
+	private static State parseState(String type, String text) {
+		if(STRING_TYPE.equals(type)) {
+			return new StringType(text);
+		}
+		List<Class<? extends State>> types = getStateTypes(type);
+		State state = types!=null ? TypeParser.parseState(types, text) : null;
+		return state!=null ? state : new StringType(text);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Class<? extends State>> getStateTypes(String type) {
+		List<Class<? extends State>> types = stateTypes.get(type);
+		if(types==null) {
+			try {
+				Class<?> stateClass = Class.forName(type, false, TimeSeriesCodec.class.getClassLoader());
+				stateClass.getMethod("valueOf", String.class);
+				types = Collections.<Class<? extends State>> singletonList((Class<? extends State>) stateClass);
+				stateTypes.putIfAbsent(type, types);
+			} catch (ClassNotFoundException | NoSuchMethodException e) {
+				return null;
+			}
+		}
+		return types;
+	}
+
+}
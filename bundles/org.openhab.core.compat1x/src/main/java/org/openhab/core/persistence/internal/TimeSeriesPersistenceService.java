@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openhab.core.items.Item;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Operator;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.QueryablePersistenceService;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A built-in persistence service, which stores the states of each item in memory-mapped, append-only
+ * segment files with a compact binary encoding (see {@link TimeSeriesCodec}). Stores only write to memory
+ * and are therefore fast enough to be processed synchronously.
+ *
+ * <p>Decimal and percent states are stored as doubles, all other states by their string representation.
+ * Undefined states are not stored. The service is configured by the following system properties:
+ * <ul>
+ * <li><code>openhab.compat1x.persistence.timeseries.dir</code>: the directory of the segment files
+ * (default: <code>persistence/timeseries</code> in the user data directory)</li>
+ * <li><code>openhab.compat1x.persistence.timeseries.segmentSize</code>: the size of each segment file in
+ * bytes (default: 262144)</li>
+ * </ul>
+ * </p>
+ */
+public class TimeSeriesPersistenceService implements QueryablePersistenceService {
+
+	private static final Logger logger = LoggerFactory.getLogger(TimeSeriesPersistenceService.class);
+
+	private static final String DEFAULT_DIRECTORY = System.getProperty("smarthome.userdata", "userdata")
+			+ File.separator + "persistence" + File.separator + "timeseries";
+
+	private final File directory;
+	private final int segmentSize;
+
+	private final ConcurrentMap<String, TimeSeries> series = new ConcurrentHashMap<>();
+
+	public TimeSeriesPersistenceService() {
+		this(new File(System.getProperty("openhab.compat1x.persistence.timeseries.dir", DEFAULT_DIRECTORY)),
+				Integer.getInteger("openhab.compat1x.persistence.timeseries.segmentSize", 262144));
+	}
+
+	TimeSeriesPersistenceService(File directory, int segmentSize) {
+		if(segmentSize < 1024) {
+			throw new IllegalArgumentException("The segment size must be at least 1024 bytes.");
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+	}
+
+	public void deactivate() {
+		for(TimeSeries timeSeries : series.values()) {
+			timeSeries.close();
+		}
+		series.clear();
+	}
+
+	@Override
+	public String getName() {
+		return "timeseries";
+	}
+
+	@Override
+	public void store(Item item) {
+		store(item, null);
+	}
+
+	@Override
+	public void store(Item item, String alias) {
+		store(alias!=null ? alias : item.getName(), System.currentTimeMillis(), item.getState());
+	}
+
+	void store(String name, long timestamp, State state) {
+		if(state==null || state instanceof UnDefType) {
+			return;
+		}
+		if(!TimeSeriesCodec.isSupported(state)) {
+			logger.debug("Cannot persist state '{}' of '{}' of type {}.", state, name, state.getClass().getName());
+			return;
+		}
+		try {
+			getSeries(name, true).append(timestamp, state);
+		} catch (IOException e) {
+			logger.warn("Cannot persist state '{}' of '{}': {}", state, name, e.getMessage());
+		}
+	}
+
+	@Override
+	public Iterable<HistoricItem> query(final FilterCriteria filter) {
+		return new Iterable<HistoricItem>() {
+			@Override
+			public Iterator<HistoricItem> iterator() {
+				return new QueryIterator(filter, entries(filter));
+			}
+		};
+	}
+
+	private Iterator<HistoricItem> entries(FilterCriteria filter) {
+		boolean descending = filter.getOrdering()==Ordering.DESCENDING;
+		try {
+			if(filter.getItemName()!=null) {
+				TimeSeries timeSeries = getSeries(filter.getItemName(), false);
+				if(timeSeries==null) {
+					return Collections.<HistoricItem> emptyIterator();
+				}
+				return timeSeries.iterator(filter.getBeginDate(), filter.getEndDate(), descending);
+			}
+			// entries of all items have to be merged by their timestamps
+			List<HistoricItem> entries = new ArrayList<>();
+			for(TimeSeries timeSeries : getAllSeries()) {
+				Iterator<HistoricItem> iterator = timeSeries.iterator(filter.getBeginDate(), filter.getEndDate(), descending);
+				while(iterator.hasNext()) {
+					HistoricItem entry = iterator.next();
+					if(matches(filter, entry.getState())) {
+						entries.add(entry);
+					}
+				}
+			}
+			final int sign = descending ? -1 : 1;
+			Collections.sort(entries, new Comparator<HistoricItem>() {
+				@Override
+				public int compare(HistoricItem o1, HistoricItem o2) {
+					return sign * o1.getTimestamp().compareTo(o2.getTimestamp());
+				}
+			});
+			return entries.iterator();
+		} catch (IOException e) {
+			logger.warn("Cannot query persistence service '{}': {}", getName(), e.getMessage());
+			return Collections.<HistoricItem> emptyIterator();
+		}
+	}
+
+	private TimeSeries getSeries(String name, boolean create) throws IOException {
+		TimeSeries timeSeries = series.get(name);
+		if(timeSeries==null) {
+			File seriesDirectory = new File(directory, encode(name));
+			if(!create && !seriesDirectory.isDirectory()) {
+				return null;
+			}
+			synchronized (series) {
+				timeSeries = series.get(name);
+				if(timeSeries==null) {
+					timeSeries = new TimeSeries(name, seriesDirectory, segmentSize);
+					series.put(name, timeSeries);
+				}
+			}
+		}
+		return timeSeries;
+	}
+
+	private List<TimeSeries> getAllSeries() {
+		List<TimeSeries> allSeries = new ArrayList<>();
+		File[] directories = directory.listFiles();
+		if(directories!=null) {
+			for(File seriesDirectory : directories) {
+				if(seriesDirectory.isDirectory()) {
+					String name = decode(seriesDirectory.getName());
+					if(name==null) {
+						continue;
+					}
+					try {
+						TimeSeries timeSeries = getSeries(name, false);
+						if(timeSeries!=null) {
+							allSeries.add(timeSeries);
+						}
+					} catch (IOException e) {
+						logger.warn("Cannot read time series '{}': {}", name, e.getMessage());
+					}
+				}
+			}
+		}
+		return allSeries;
+	}
+
+	/*
+	 * Item names are valid file names, but aliases might not be. Names which only differ in case must be
+	 * stored in different directories on case-insensitive file systems as well, so upper-case letters are
+	 * written in lower case, prefixed with '^' (which is escaped by the URL encoding otherwise).
+	 */
+	static String encode(String name) {
+		String encoded;
+		try {
+			encoded = URLEncoder.encode(name, "UTF-8").replace(".", "%2E").replace("*", "%2A");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		StringBuilder fileName = new StringBuilder(encoded.length() + 8);
+		for(int i = 0; i < encoded.length(); i++) {
+			char c = encoded.charAt(i);
+			if(c>='A' && c<='Z') {
+				fileName.append('^').append(Character.toLowerCase(c));
+			} else {
+				fileName.append(c);
+			}
+		}
+		return fileName.toString();
+	}
+
+	/**
+	 * @return the name of a directory created by {@link #encode(String)} or <code>null</code> if the name is
+	 *         not encoded
+	 */
+	static String decode(String fileName) {
+		StringBuilder encoded = new StringBuilder(fileName.length());
+		for(int i = 0; i < fileName.length(); i++) {
+			char c = fileName.charAt(i);
+			if(c=='^') {
+				if(++i==fileName.length()) {
+					return null;
+				}
+				c = Character.toUpperCase(fileName.charAt(i));
+			}
+			encoded.append(c);
+		}
+		try {
+			return URLDecoder.decode(encoded.toString(), "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static boolean matches(FilterCriteria filter, State state) {
+		State expected = filter.getState();
+		if(expected==null) {
+			return true;
+		}
+		Operator operator = filter.getOperator()!=null ? filter.getOperator() : Operator.EQ;
+		int comparison;
+		if(state instanceof DecimalType && expected instanceof DecimalType) {
+			comparison = ((DecimalType) state).compareTo((DecimalType) expected);
+		} else if(state.getClass()==expected.getClass() && state instanceof Comparable) {
+			comparison = ((Comparable) state).compareTo(expected);
+		} else {
+			boolean equal = state.equals(expected);
+			return operator==Operator.EQ ? equal : operator==Operator.NEQ && !equal;
+		}
+		switch(operator) {
+			case EQ: return comparison==0;
+			case NEQ: return comparison!=0;
+			case GT: return comparison > 0;
+			case LT: return comparison < 0;
+			case GTE: return comparison >= 0;
+			case LTE: return comparison <= 0;
+			default: return false;
+		}
+	}
+
+	/**
+	 * Applies the state condition and the paging of a filter to the entries of a query.
+	 */
+	private static class QueryIterator implements Iterator<HistoricItem> {
+
+		private final FilterCriteria filter;
+		private final Iterator<HistoricItem> entries;
+		private long skip;
+		private int remaining;
+		private HistoricItem next;
+
+		QueryIterator(FilterCriteria filter, Iterator<HistoricItem> entries) {
+			this.filter = filter;
+			this.entries = entries;
+			this.skip = (long) filter.getPageNumber() * filter.getPageSize();
+			this.remaining = filter.getPageSize();
+		}
+
+		@Override
+		public boolean hasNext() {
+			while(next==null && remaining > 0 && entries.hasNext()) {
+				HistoricItem entry = entries.next();
+				if(matches(filter, entry.getState())) {
+					if(skip > 0) {
+						skip--;
+					} else {
+						next = entry;
+						remaining--;
+					}
+				}
+			}
+			return next!=null;
+		}
+
+		@Override
+		public HistoricItem next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			HistoricItem result = next;
+			next = null;
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.openhab.core.types.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only file with the entries of a {@link TimeSeries}. The file has a fixed size and starts with a
+ * header, which holds the number of entries, their minimum and maximum timestamp and the length of the
+ * encoded entries. The header is updated after each entry, so readers which take a snapshot of it see a
+ * consistent state of the segment without locking.
+ *
+ * <p>Only a writable segment keeps its file memory-mapped. Sealed segments are mapped for each reader and
+ * unmapped once the reader is no longer used.</p>
+ *
+ * <p>When a segment is opened, its entries are decoded and only those which decode consistently with the
+ * header are used, so that a segment which has not been written completely - e.g. because the system
+ * crashed before all pages were flushed - is truncated to its last consistent entry instead of being
+ * rejected.</p>
+ */
+class TimeSeriesSegment {
+
+	private static final Logger logger = LoggerFactory.getLogger(TimeSeriesSegment.class);
+
+	static final int HEADER_SIZE = 64;
+
+	private static final int MAGIC = 0x4F485453;
+	private static final int VERSION = 1;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int COUNT_OFFSET = 8;
+	private static final int MIN_TIMESTAMP_OFFSET = 12;
+	private static final int MAX_TIMESTAMP_OFFSET = 20;
+	private static final int BIT_LENGTH_OFFSET = 28;
+
+	private final File file;
+	private final int number;
+
+	/** the mapped file while the segment is writable, <code>null</code> afterwards */
+	private volatile MappedByteBuffer buffer;
+
+	/** the codec to append entries with, <code>null</code> if the segment is read-only or full */
+	private TimeSeriesCodec writer;
+
+	private volatile int count;
+	private volatile long minTimestamp;
+	private volatile long maxTimestamp;
+
+	private TimeSeriesSegment(File file, int number, int count, long minTimestamp, long maxTimestamp) {
+		this.file = file;
+		this.number = number;
+		this.count = count;
+		this.minTimestamp = minTimestamp;
+		this.maxTimestamp = maxTimestamp;
+	}
+
+	/**
+	 * Creates a new, empty segment.
+	 *
+	 * @param file the file of the segment, which must not exist
+	 * @param number the number of the segment within its series
+	 * @param size the size of the file in bytes
+	 * @return the segment, open for appending
+	 * @throws IOException if the file cannot be created
+	 */
+	static TimeSeriesSegment create(File file, int number, int size) throws IOException {
+		MappedByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(size);
+			buffer = raf.getChannel().map(MapMode.READ_WRITE, 0, size);
+		}
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+		buffer.putInt(VERSION_OFFSET, VERSION);
+		TimeSeriesSegment segment = new TimeSeriesSegment(file, number, 0, Long.MAX_VALUE, Long.MIN_VALUE);
+		segment.writeHeader(buffer, 0);
+		segment.buffer = buffer;
+		segment.writer = new TimeSeriesCodec(buffer, HEADER_SIZE);
+		return segment;
+	}
+
+	/**
+	 * Opens an existing segment. If the entries do not match the header, the segment is truncated to the
+	 * entries which can be decoded consistently.
+	 *
+	 * @param file the file of the segment
+	 * @param number the number of the segment within its series
+	 * @param writable true, if entries are going to be appended to the segment
+	 * @return the segment
+	 * @throws IOException if the file cannot be read or is not a segment
+	 */
+	static TimeSeriesSegment open(File file, int number, boolean writable) throws IOException {
+		MappedByteBuffer buffer = map(file, writable);
+		if(buffer.getInt(MAGIC_OFFSET)!=MAGIC || buffer.getInt(VERSION_OFFSET)!=VERSION) {
+			throw new IOException("File '" + file + "' is not a time series segment of version " + VERSION + ".");
+		}
+		int headerCount = buffer.getInt(COUNT_OFFSET);
+		long bitLength = buffer.getLong(BIT_LENGTH_OFFSET);
+
+		TimeSeriesCodec reader = new TimeSeriesCodec(buffer.duplicate(), HEADER_SIZE);
+		int count = 0;
+		long position = 0;
+		long minTimestamp = Long.MAX_VALUE;
+		long maxTimestamp = Long.MIN_VALUE;
+		while(count < headerCount) {
+			try {
+				reader.read();
+			} catch (RuntimeException e) {
+				break;
+			}
+			if(reader.getPosition() > bitLength) {
+				break;
+			}
+			count++;
+			position = reader.getPosition();
+			minTimestamp = Math.min(minTimestamp, reader.getTimestamp());
+			maxTimestamp = Math.max(maxTimestamp, reader.getTimestamp());
+		}
+
+		TimeSeriesSegment segment = new TimeSeriesSegment(file, number, count, minTimestamp, maxTimestamp);
+		boolean consistent = count==headerCount && position==bitLength
+				&& (count==0 || minTimestamp==buffer.getLong(MIN_TIMESTAMP_OFFSET)
+						&& maxTimestamp==buffer.getLong(MAX_TIMESTAMP_OFFSET));
+		if(!consistent) {
+			logger.warn("Time series segment '{}' is corrupt, {} of {} entries have been recovered.", file, count,
+					headerCount);
+		}
+		if(writable) {
+			// restore the state of the encoder by reading the consistent entries again
+			TimeSeriesCodec writer = new TimeSeriesCodec(buffer, HEADER_SIZE);
+			for(int i = 0; i < count; i++) {
+				writer.read();
+			}
+			if(!consistent) {
+				segment.writeHeader(buffer, position);
+			}
+			segment.buffer = buffer;
+			segment.writer = writer;
+		}
+		return segment;
+	}
+
+	private static MappedByteBuffer map(File file, boolean writable) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r")) {
+			if(raf.length() < HEADER_SIZE) {
+				throw new IOException("File '" + file + "' is too short for a time series segment.");
+			}
+			return raf.getChannel().map(writable ? MapMode.READ_WRITE : MapMode.READ_ONLY, 0, raf.length());
+		}
+	}
+
+	private void writeHeader(MappedByteBuffer buffer, long bitLength) {
+		buffer.putInt(COUNT_OFFSET, count);
+		buffer.putLong(MIN_TIMESTAMP_OFFSET, minTimestamp);
+		buffer.putLong(MAX_TIMESTAMP_OFFSET, maxTimestamp);
+		buffer.putLong(BIT_LENGTH_OFFSET, bitLength);
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	int getNumber() {
+		return number;
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	long getMinTimestamp() {
+		return minTimestamp;
+	}
+
+	long getMaxTimestamp() {
+		return maxTimestamp;
+	}
+
+	boolean isWritable() {
+		return writer!=null;
+	}
+
+	/**
+	 * Appends an entry. Must not be called concurrently.
+	 *
+	 * @param timestamp the timestamp of the entry
+	 * @param state the state of the entry
+	 * @return false, if the segment is full
+	 */
+	boolean append(long timestamp, State state) {
+		if(writer==null || !writer.write(timestamp, state)) {
+			return false;
+		}
+		if(timestamp < minTimestamp) {
+			minTimestamp = timestamp;
+			buffer.putLong(MIN_TIMESTAMP_OFFSET, timestamp);
+		}
+		if(timestamp > maxTimestamp) {
+			maxTimestamp = timestamp;
+			buffer.putLong(MAX_TIMESTAMP_OFFSET, timestamp);
+		}
+		buffer.putLong(BIT_LENGTH_OFFSET, writer.getPosition());
+		buffer.putInt(COUNT_OFFSET, writer.getCount());
+		count = writer.getCount();
+		return true;
+	}
+
+	/**
+	 * Marks the segment as full, so that no more entries are appended, and releases its mapping after
+	 * writing the changes to the file system.
+	 */
+	void seal() {
+		force();
+		writer = null;
+		buffer = null;
+	}
+
+	/**
+	 * Creates a codec to read the entries of the segment from the beginning. The codec can safely read as
+	 * many entries as {@link #getCount()} returned before, even while entries are appended.
+	 *
+	 * @return a new codec
+	 * @throws IOException if the segment is sealed and its file cannot be mapped
+	 */
+	TimeSeriesCodec newReader() throws IOException {
+		MappedByteBuffer current = buffer;
+		if(current==null) {
+			current = map(file, false);
+		}
+		return new TimeSeriesCodec(current.duplicate(), HEADER_SIZE);
+	}
+
+	/**
+	 * Writes the changes of the segment to the file system.
+	 */
+	void force() {
+		MappedByteBuffer current = buffer;
+		if(current!=null && !current.isReadOnly()) {
+			current.force();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return file.getName() + " (" + count + " entries)";
+	}
+
+}
@@ -8,6 +8,21 @@
  */
 package org.openhab.core.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,12 +31,41 @@ import org.slf4j.LoggerFactory;
  * Base class for services that frequently run some action in a separate thread in the 
  * background.
  * 
+ * <p>By default every service gets its own refresh thread. If the system property
+ * <code>openhab.compat1x.activeService.pooled</code> is set to <code>true</code> (or a service
+ * overrides {@link #isPooled()}), the service is instead executed on a shared scheduler whose size
+ * is given by <code>openhab.compat1x.activeService.poolSize</code>. Pooled services keep the fixed-delay
+ * semantics of the refresh thread, never run concurrently with themselves and have their delays
+ * randomly spread by <code>openhab.compat1x.activeService.jitter</code> percent of the refresh interval.</p>
+ * 
+ * <p>If adaptive back-off is enabled through <code>openhab.compat1x.activeService.adaptive</code> (or
+ * {@link #isAdaptive()}), the pause between two executions is stretched whenever an execution takes longer
+ * than the current interval, up to <code>openhab.compat1x.activeService.maxBackoff</code> times the
+ * refresh interval, and is shortened again step by step once the executions are fast again.</p>
+ * 
  * @author Kai Kreuzer
  * @since 0.7.0
  */
 public abstract class AbstractActiveService {
 
 	private static final Logger logger = LoggerFactory.getLogger(AbstractActiveService.class);
+
+	private static final boolean POOLED_EXECUTION = Boolean.getBoolean("openhab.compat1x.activeService.pooled");
+
+	private static final int POOL_SIZE = Integer.getInteger("openhab.compat1x.activeService.poolSize", 4);
+
+	private static final int JITTER_PERCENT = Integer.getInteger("openhab.compat1x.activeService.jitter", 10);
+
+	private static final boolean ADAPTIVE_BACKOFF = Boolean.getBoolean("openhab.compat1x.activeService.adaptive");
+
+	private static final int MAX_BACKOFF_FACTOR = Integer.getInteger("openhab.compat1x.activeService.maxBackoff", 8);
+
+	/** all service instances, so that their state can be inspected e.g. from the console */
+	private static final Set<AbstractActiveService> services = Collections.synchronizedSet(
+			Collections.newSetFromMap(new WeakHashMap<AbstractActiveService, Boolean>()));
+
+	/** the scheduler shared by all pooled services, created on first use */
+	private static ScheduledThreadPoolExecutor scheduler;
 	
 	/** <code>true</code> if this binding is configured properly which means that all necessary data is available */
 	private boolean properlyConfigured = false;
@@ -38,9 +82,33 @@ public abstract class AbstractActiveService {
 	 */
 	private Thread refreshThread;
 	
+	/**
+	 * holds the task which is scheduled on the shared scheduler in pooled mode or 
+	 * is <code>null</code> if there is no task active at the moment
+	 */
+	private volatile PooledRefreshTask refreshTask;
+	
+	/** guards against concurrent executions of the same service */
+	private final AtomicBoolean executing = new AtomicBoolean();
+	
+	private final ActiveServiceStatistics statistics = new ActiveServiceStatistics();
+	
+	/** the pause which is currently applied after each execution, 0 if there was no execution yet */
+	private volatile long effectiveRefreshInterval = 0;
+	
 	
 	public AbstractActiveService() {
 		super();
+		services.add(this);
+	}
+	
+	/**
+	 * @return a snapshot of all instantiated active services
+	 */
+	public static List<AbstractActiveService> getServices() {
+		synchronized (services) {
+			return new ArrayList<AbstractActiveService>(services);
+		}
 	}
 	
 
@@ -64,8 +132,19 @@ public abstract class AbstractActiveService {
 				
 		shutdown = false;
 		if (!isRunning()) {
-			this.refreshThread = new RefreshThread(getName(), getRefreshInterval());
-			this.refreshThread.start();
+			if (isPooled()) {
+				PooledRefreshTask task = new PooledRefreshTask(getName());
+				synchronized (this) {
+					if (this.refreshTask != null) {
+						return;
+					}
+					this.refreshTask = task;
+				}
+				task.start();
+			} else {
+				this.refreshThread = new RefreshThread(getName(), getRefreshInterval());
+				this.refreshThread.start();
+			}
 		} else {
 			logger.trace("{} is already started > calling start() changed nothing.", getName());
 		}
@@ -77,6 +156,10 @@ public abstract class AbstractActiveService {
 	 */
 	public void shutdown() {
 		this.shutdown = true;
+		PooledRefreshTask task = refreshTask;
+		if (task != null) {
+			task.cancel(false);
+		}
 	}
 	
 	/**
@@ -84,7 +167,14 @@ public abstract class AbstractActiveService {
 	 */
 	public void interrupt() {
 		if (isRunning()) {
-			this.refreshThread.interrupt();
+			Thread thread = this.refreshThread;
+			if (thread != null) {
+				thread.interrupt();
+			}
+			PooledRefreshTask task = refreshTask;
+			if (task != null) {
+				task.cancel(true);
+			}
 			logger.trace("{} has been interrupted.", getName());
 		}
 	}
@@ -93,10 +183,69 @@ public abstract class AbstractActiveService {
 	 * {@inheritDoc}
 	 */
 	public boolean isRunning() {
-		if (this.refreshThread != null) {
-			return this.refreshThread.isAlive();
+		Thread thread = this.refreshThread;
+		if (thread != null && thread.isAlive()) {
+			return true;
 		}
-		return false;
+		return this.refreshTask != null;
+	}
+	
+	/**
+	 * Returns whether this service is executed on the shared scheduler instead of
+	 * a dedicated refresh thread. The decision is taken whenever the service is started.
+	 * 
+	 * @return <code>true</code> if the service should use the shared scheduler
+	 */
+	protected boolean isPooled() {
+		return isPooledExecutionEnabled();
+	}
+	
+	/**
+	 * Returns whether the pause between two executions is adapted to the execution time.
+	 * 
+	 * @return <code>true</code> if adaptive back-off should be applied
+	 */
+	protected boolean isAdaptive() {
+		return isAdaptiveBackoffEnabled();
+	}
+	
+	/**
+	 * @return <code>true</code> if adaptive back-off has been enabled for all services
+	 */
+	public static boolean isAdaptiveBackoffEnabled() {
+		return ADAPTIVE_BACKOFF;
+	}
+	
+	/**
+	 * Returns the pause which is currently applied between two executions. Unless adaptive
+	 * back-off is active, this is the refresh interval.
+	 * 
+	 * @return the effective refresh interval in milliseconds
+	 */
+	public long getEffectiveRefreshInterval() {
+		long interval = effectiveRefreshInterval;
+		return interval > 0 ? interval : getRefreshInterval();
+	}
+	
+	/**
+	 * @return the name of this service
+	 */
+	public String getServiceName() {
+		return getName();
+	}
+	
+	/**
+	 * @return <code>true</code> if pooled execution has been enabled for all services
+	 */
+	public static boolean isPooledExecutionEnabled() {
+		return POOLED_EXECUTION;
+	}
+	
+	/**
+	 * @return the execution statistics of this service
+	 */
+	public ActiveServiceStatistics getStatistics() {
+		return statistics;
 	}
 	
 	/**
@@ -146,6 +295,187 @@ public abstract class AbstractActiveService {
 	 */
 	protected abstract String getName();
 	
+	/**
+	 * Calls {@link #execute()} unless the previous execution is still running and
+	 * records the statistics.
+	 * 
+	 * @param plannedStart the {@link System#nanoTime()} at which the execution was planned
+	 * @param refreshInterval the configured refresh interval
+	 * @return the pause to apply before the next execution
+	 */
+	private long runExecution(long plannedStart, long refreshInterval) {
+		if (!executing.compareAndSet(false, true)) {
+			statistics.recordSkipped();
+			logger.debug("Skipping execution of {} as the previous one is still running.", getName());
+			return getEffectiveRefreshInterval();
+		}
+		long start = System.nanoTime();
+		boolean failed = false;
+		try {
+			execute();
+		} catch(RuntimeException e) {
+			failed = true;
+			logger.error("Error while executing background thread " + getName(), e);
+		} finally {
+			executing.set(false);
+		}
+		long executionTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		long lag = TimeUnit.NANOSECONDS.toMillis(Math.max(0, start - plannedStart));
+		boolean overrun = refreshInterval > 0 && executionTime > refreshInterval;
+		if (overrun) {
+			logger.debug("Execution of {} took {}ms which exceeds the refresh interval of {}ms.", 
+					getName(), executionTime, refreshInterval);
+		}
+		statistics.recordExecution(executionTime, lag, failed, overrun);
+		
+		long interval = refreshInterval;
+		if (isAdaptive() && refreshInterval > 0) {
+			interval = adaptInterval(Math.max(effectiveRefreshInterval, refreshInterval), refreshInterval, executionTime);
+			if (interval != getEffectiveRefreshInterval()) {
+				logger.info("{} took {}ms, changing its refresh interval to {}ms.", getName(), executionTime, interval);
+			}
+		}
+		effectiveRefreshInterval = interval;
+		return interval;
+	}
+	
+	/**
+	 * Calculates the next pause for adaptive back-off: it is doubled (or set to the execution time)
+	 * if the execution took longer than the current pause and halved if the execution took less
+	 * than half of it, but it always stays between the refresh interval and its configured maximum
+	 * multiple.
+	 * 
+	 * @param current the pause which has been applied so far
+	 * @param refreshInterval the configured refresh interval
+	 * @param executionTime the duration of the last execution
+	 * @return the pause to apply next
+	 */
+	static long adaptInterval(long current, long refreshInterval, long executionTime) {
+		long interval = current;
+		if (executionTime > current) {
+			interval = Math.max(current * 2, executionTime);
+		} else if (executionTime * 2 < current) {
+			interval = current / 2;
+		}
+		long max = refreshInterval * Math.max(1, MAX_BACKOFF_FACTOR);
+		return Math.min(max, Math.max(refreshInterval, interval));
+	}
+	
+	/**
+	 * Returns the given delay, randomly varied by the configured jitter.
+	 * 
+	 * @param delay the delay in milliseconds
+	 * @return the varied delay, which is never negative
+	 */
+	private static long applyJitter(long delay) {
+		long jitter = delay * JITTER_PERCENT / 100;
+		if (jitter <= 0) {
+			return Math.max(0, delay);
+		}
+		return Math.max(0, delay + ThreadLocalRandom.current().nextLong(-jitter, jitter + 1));
+	}
+	
+	private static synchronized ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			final AtomicInteger threadNumber = new AtomicInteger();
+			scheduler = new ScheduledThreadPoolExecutor(Math.max(1, POOL_SIZE), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "openHAB 1.x active service " + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			scheduler.setRemoveOnCancelPolicy(true);
+		}
+		return scheduler;
+	}
+	
+	/**
+	 * Stops the scheduler shared by all pooled services. Running executions are
+	 * interrupted, a subsequent start of a pooled service creates a new scheduler.
+	 */
+	public static synchronized void shutdownScheduler() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+	
+	/**
+	 * Task which calls the execute method frequently on the shared scheduler. Each
+	 * execution schedules the next one, so that the refresh interval is always
+	 * the pause between two executions as it is for the {@link RefreshThread}.
+	 */
+	class PooledRefreshTask implements Runnable {
+		
+		private final String name;
+		
+		private volatile boolean cancelled = false;
+		
+		private volatile ScheduledFuture<?> future;
+		
+		private long plannedStart;
+		
+		public PooledRefreshTask(String name) {
+			this.name = name;
+		}
+		
+		void start() {
+			logger.info(name + " has been started");
+			// spread the first executions of all services which are started at the same time
+			long initialDelay = getRefreshInterval() * JITTER_PERCENT / 100;
+			schedule(initialDelay > 0 ? ThreadLocalRandom.current().nextLong(initialDelay + 1) : 0);
+		}
+		
+		@Override
+		public void run() {
+			long nextInterval = -1;
+			try {
+				if (!cancelled && !shutdown) {
+					nextInterval = runExecution(plannedStart, getRefreshInterval());
+				}
+			} finally {
+				if (nextInterval >= 0 && !cancelled && !shutdown) {
+					schedule(applyJitter(nextInterval));
+				} else {
+					finish();
+				}
+			}
+		}
+		
+		private void schedule(long delay) {
+			plannedStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+			try {
+				future = getScheduler().schedule(this, delay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				logger.debug("{} could not be scheduled: {}", name, e.getMessage());
+				finish();
+			}
+		}
+		
+		void cancel(boolean mayInterrupt) {
+			cancelled = true;
+			ScheduledFuture<?> scheduled = future;
+			if (scheduled != null && scheduled.cancel(mayInterrupt)) {
+				// the task will not run anymore
+				finish();
+			}
+		}
+		
+		private void finish() {
+			cancelled = true;
+			synchronized (AbstractActiveService.this) {
+				if (refreshTask != this) {
+					return;
+				}
+				refreshTask = null;
+			}
+			logger.info(name + " has been shut down");
+		}
+		
+	}
+	
 	/**
 	 * Worker thread which calls the execute method frequently.
 	 *  
@@ -168,13 +498,11 @@ public abstract class AbstractActiveService {
 		public void run() {
 			logger.info(getName() + " has been started");
 			
+			long plannedStart = System.nanoTime();
 			while (!shutdown) {
-				try {
-					execute();
-				} catch(RuntimeException e) {
-					logger.error("Error while executing background thread " + getName(), e);
-				}
-				pause(refreshInterval);
+				long interval = runExecution(plannedStart, refreshInterval);
+				plannedStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(interval);
+				pause(interval);
 			}
 			
 			refreshThread = null;
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects execution statistics of an {@link AbstractActiveService}.
+ *
+ * <p>
+ * The execution time is the time spent in <code>execute()</code>, the lag is the delay between the
+ * moment an execution was planned for and the moment it actually started (which grows if the
+ * shared scheduler is saturated). An overrun is an execution which took longer than the refresh
+ * interval. All values are in milliseconds.
+ * </p>
+ *
+ * <p>
+ * Execution times and lags are additionally counted in histograms with exponentially growing buckets:
+ * bucket 0 counts values below 1ms, bucket <code>i</code> values below <code>2^i</code>ms and the last
+ * bucket all larger values.
+ * </p>
+ */
+public class ActiveServiceStatistics {
+
+    /** the number of histogram buckets, the last one counts values of 2^15ms (about 33s) and more */
+    public static final int HISTOGRAM_BUCKETS = 17;
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    private final AtomicLong totalExecutionTime = new AtomicLong();
+    private final AtomicLong maxExecutionTime = new AtomicLong();
+    private volatile long lastExecutionTime;
+
+    private final AtomicLong totalLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+    private volatile long lastLag;
+
+    private final AtomicLongArray executionTimeHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLongArray lagHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    void recordExecution(long executionTime, long lag, boolean failed, boolean overrun) {
+        executions.incrementAndGet();
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        if (overrun) {
+            overruns.incrementAndGet();
+        }
+        lastExecutionTime = executionTime;
+        totalExecutionTime.addAndGet(executionTime);
+        updateMax(maxExecutionTime, executionTime);
+        lastLag = lag;
+        totalLag.addAndGet(lag);
+        updateMax(maxLag, lag);
+        executionTimeHistogram.incrementAndGet(bucketOf(executionTime));
+        lagHistogram.incrementAndGet(bucketOf(lag));
+    }
+
+    private static int bucketOf(long value) {
+        if (value <= 0) {
+            return 0;
+        }
+        return Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * Returns the exclusive upper bound of a histogram bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the upper bound in milliseconds or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket >= HISTOGRAM_BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    private static long[] snapshot(AtomicLongArray histogram) {
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return counts;
+    }
+
+    void recordSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getExecutionCount() {
+        return executions.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getOverrunCount() {
+        return overruns.get();
+    }
+
+    /**
+     * @return the number of executions which have been skipped as the previous execution was still running
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    public long getLastExecutionTime() {
+        return lastExecutionTime;
+    }
+
+    public long getMaxExecutionTime() {
+        return maxExecutionTime.get();
+    }
+
+    public long getAverageExecutionTime() {
+        long count = executions.get();
+        return count == 0 ? 0 : totalExecutionTime.get() / count;
+    }
+
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    public long getMaxLag() {
+        return maxLag.get();
+    }
+
+    public long getAverageLag() {
+        long count = executions.get();
+        return count == 0 ? 0 : totalLag.get() / count;
+    }
+
+    /**
+     * @return a snapshot of the number of executions per execution time bucket
+     */
+    public long[] getExecutionTimeHistogram() {
+        return snapshot(executionTimeHistogram);
+    }
+
+    /**
+     * @return a snapshot of the number of executions per lag bucket
+     */
+    public long[] getLagHistogram() {
+        return snapshot(lagHistogram);
+    }
+
+    @Override
+    public String toString() {
+        return "executions=" + getExecutionCount() + ", failures=" + getFailureCount() + ", overruns="
+                + getOverrunCount() + ", skipped=" + getSkippedCount() + ", execution time (last/avg/max)="
+                + getLastExecutionTime() + "/" + getAverageExecutionTime() + "/" + getMaxExecutionTime()
+                + "ms, lag (last/avg/max)=" + getLastLag() + "/" + getAverageLag() + "/" + getMaxLag() + "ms";
+    }
+
+}
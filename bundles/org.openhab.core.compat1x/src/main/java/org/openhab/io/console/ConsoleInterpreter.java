@@ -10,6 +10,7 @@ package org.openhab.io.console;
 
 import java.util.Collection;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.eclipse.smarthome.model.script.engine.Script;
 import org.eclipse.smarthome.model.script.engine.ScriptEngine;
@@ -21,6 +22,8 @@ import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemNotUniqueException;
 import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.service.AbstractActiveService;
+import org.openhab.core.service.ActiveServiceStatistics;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
 import org.openhab.core.types.TypeParser;
@@ -59,6 +62,8 @@ public class ConsoleInterpreter {
             ConsoleInterpreter.handleStatus(args, console);
         } else if (arg.equals("say")) {
             ConsoleInterpreter.handleSay(args, console);
+        } else if (arg.equals("services")) {
+            ConsoleInterpreter.handleServices(args, console);
         } else if (arg.equals(">")) {
             ConsoleInterpreter.handleScript(args, console);
         } else {
@@ -264,6 +269,42 @@ public class ConsoleInterpreter {
         }
     }
 
+    /**
+     * This method handles a services command.
+     *
+     * @param args array which contains the arguments for the services command
+     * @param console the console for printing messages for the user
+     */
+    static public void handleServices(String[] args, Console console) {
+        String pattern = (args.length == 0) ? "*" : args[0];
+        boolean verbose = args.length > 1 && args[1].equals("-v");
+        for (AbstractActiveService service : AbstractActiveService.getServices()) {
+            String name = service.getServiceName();
+            if (name == null || !FilenameUtils.wildcardMatch(name, pattern)) {
+                continue;
+            }
+            ActiveServiceStatistics statistics = service.getStatistics();
+            console.println(name + " (" + (service.isRunning() ? "running" : "stopped") + ", interval "
+                    + service.getEffectiveRefreshInterval() + "ms): " + statistics);
+            if (verbose) {
+                printHistogram("  execution time", statistics.getExecutionTimeHistogram(), console);
+                printHistogram("  lag", statistics.getLagHistogram(), console);
+            }
+        }
+    }
+
+    private static void printHistogram(String title, long[] counts, Console console) {
+        StringBuilder sb = new StringBuilder(title).append(':');
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                long bound = ActiveServiceStatistics.getBucketUpperBound(i);
+                sb.append(' ').append(bound == Long.MAX_VALUE ? ">=" + ActiveServiceStatistics.getBucketUpperBound(i - 1)
+                        : "<" + bound).append("ms=").append(counts[i]);
+            }
+        }
+        console.println(sb.toString());
+    }
+
     public static void handleScript(String[] args, Console console) {
         ScriptEngine scriptEngine = CompatibilityActivator.scriptEngineTracker.getService();
         if (scriptEngine != null) {
@@ -300,7 +341,7 @@ public class ConsoleInterpreter {
     /** returns an array of the usage texts for all available commands */
     static public String[] getUsages() {
         return new String[] { getUpdateUsage(), getCommandUsage(), getStatusUsage(), getItemsUsage(), getSayUsage(),
-                getScriptUsage() };
+                getServicesUsage(), getScriptUsage() };
     }
 
     static public String getUpdateUsage() {
@@ -323,6 +364,10 @@ public class ConsoleInterpreter {
         return "say <sentence to say> - Says a message through TTS on the host machine";
     }
 
+    public static String getServicesUsage() {
+        return "services [<pattern> [-v]] - lists the active services with their refresh interval and statistics";
+    }
+
     public static String getScriptUsage() {
         return "> <script to execute> - Executes a script";
     }
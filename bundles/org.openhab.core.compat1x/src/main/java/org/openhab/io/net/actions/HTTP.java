@@ -8,7 +8,11 @@
  */
 package org.openhab.io.net.actions;
 
+import java.util.concurrent.Future;
+
 import org.apache.commons.io.IOUtils;
+import org.openhab.io.net.http.AsyncHttpUtil;
+import org.openhab.io.net.http.AsyncHttpUtil.ResponseCallback;
 import org.openhab.io.net.http.HttpUtil;
 
 /** 
@@ -90,5 +94,68 @@ public class HTTP {
 	static public String sendHttpDeleteRequest(String url) { 
 		return HttpUtil.executeUrl("DELETE", url, 1000); 
 	}
+	
+	/** 
+	* Send out a GET-HTTP request without waiting for the response. 
+	*
+	* @param url the URL to be used for the GET request. 
+	* @return the future response body, which is <code>NULL</code> when the request went wrong
+	*/ 
+	static public Future<String> sendHttpGetRequestAsync(String url) { 
+		return AsyncHttpUtil.executeUrl("GET", url, 5000); 
+	}
+	
+	/** 
+	* Send out a GET-HTTP request without waiting for the response. 
+	*
+	* @param url the URL to be used for the GET request. 
+	* @param callback is called with the response body or <code>NULL</code> when the request went wrong
+	* @return the future response body
+	*/ 
+	static public Future<String> sendHttpGetRequestAsync(String url, ResponseCallback callback) { 
+		return AsyncHttpUtil.executeUrl("GET", url, 5000, callback); 
+	}
+	
+	/** 
+	* Send out a PUT-HTTP request without waiting for the response. 
+	*
+	* @param url the URL to be used for the PUT request. 
+	* @param contentType the content type of the given <code>content</code>
+	* @param content the content to be send to the given <code>url</code> or
+	*  <code>null</code> if no content should be send.
+	* @param callback is called with the response body or <code>NULL</code> when the request went wrong,
+	*  may be <code>null</code>
+	* @return the future response body
+	*/ 
+	static public Future<String> sendHttpPutRequestAsync(String url, String contentType, String content, ResponseCallback callback) { 
+		return AsyncHttpUtil.executeUrl("PUT", url, IOUtils.toInputStream(content), contentType, 1000, callback); 
+	}
+	
+	/** 
+	* Send out a POST-HTTP request without waiting for the response. 
+	*
+	* @param url the URL to be used for the POST request.
+	* @param contentType the content type of the given <code>content</code>
+	* @param content the content to be send to the given <code>url</code> or
+	*  <code>null</code> if no content should be send.
+	* @param callback is called with the response body or <code>NULL</code> when the request went wrong,
+	*  may be <code>null</code>
+	* @return the future response body
+	*/ 
+	static public Future<String> sendHttpPostRequestAsync(String url, String contentType, String content, ResponseCallback callback) { 
+		return AsyncHttpUtil.executeUrl("POST", url, IOUtils.toInputStream(content), contentType, 1000, callback); 
+	}
+	
+	/** 
+	* Send out a DELETE-HTTP request without waiting for the response. 
+	*
+	* @param url the URL to be used for the DELETE request. 
+	* @param callback is called with the response body or <code>NULL</code> when the request went wrong,
+	*  may be <code>null</code>
+	* @return the future response body
+	*/ 
+	static public Future<String> sendHttpDeleteRequestAsync(String url, ResponseCallback callback) { 
+		return AsyncHttpUtil.executeUrl("DELETE", url, 1000, callback); 
+	}
 
 }
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes requests of the {@link HttpUtil} in the background, so that rules and bindings can send several
+ * requests in parallel without blocking their own thread. The result is available as a {@link Future} and
+ * is optionally passed to a {@link ResponseCallback}.
+ * 
+ * <p>At most <code>openhab.compat1x.http.async.maxRequests</code> requests (default: 10) are executed at
+ * the same time, further requests wait in a queue of <code>openhab.compat1x.http.async.maxQueued</code>
+ * requests (default: 100). Requests which do not fit into the queue are rejected; their result is
+ * <code>null</code> like that of any other failed request.</p>
+ * 
+ * @since 2.0.0
+ */
+public class AsyncHttpUtil {
+
+	private static final Logger logger = LoggerFactory.getLogger(AsyncHttpUtil.class);
+	
+	private static final int MAX_REQUESTS = Integer.getInteger("openhab.compat1x.http.async.maxRequests", 10);
+	
+	private static final int MAX_QUEUED = Integer.getInteger("openhab.compat1x.http.async.maxQueued", 100);
+	
+	/** the executor shared by all asynchronous requests, created on first use */
+	private static ThreadPoolExecutor executor;
+	
+	private AsyncHttpUtil() {}
+	
+	/**
+	 * Receives the result of an asynchronous request.
+	 */
+	public interface ResponseCallback {
+		
+		/**
+		 * Is called once the request is complete. This is usually done by the thread which executed the
+		 * request; requests which are rejected or discarded before they are executed are completed by the
+		 * thread which rejected or discarded them.
+		 * 
+		 * @param response the response body or <code>null</code> when the request went wrong
+		 */
+		void completed(String response);
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> in the background.
+	 * 
+	 * @see HttpUtil#executeUrl(String, String, int)
+	 * @return the future response body, which is <code>null</code> when the request went wrong
+	 */
+	public static Future<String> executeUrl(String httpMethod, String url, int timeout) {
+		return executeUrl(httpMethod, url, null, null, null, timeout, null);
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> in the background.
+	 * 
+	 * @see HttpUtil#executeUrl(String, String, int)
+	 * @param callback the callback which receives the response or <code>null</code>
+	 * @return the future response body, which is <code>null</code> when the request went wrong
+	 */
+	public static Future<String> executeUrl(String httpMethod, String url, int timeout, ResponseCallback callback) {
+		return executeUrl(httpMethod, url, null, null, null, timeout, callback);
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> in the background.
+	 * 
+	 * @see HttpUtil#executeUrl(String, String, InputStream, String, int)
+	 * @return the future response body, which is <code>null</code> when the request went wrong
+	 */
+	public static Future<String> executeUrl(String httpMethod, String url, InputStream content, String contentType, int timeout) {
+		return executeUrl(httpMethod, url, null, content, contentType, timeout, null);
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> in the background.
+	 * 
+	 * @see HttpUtil#executeUrl(String, String, InputStream, String, int)
+	 * @param callback the callback which receives the response or <code>null</code>
+	 * @return the future response body, which is <code>null</code> when the request went wrong
+	 */
+	public static Future<String> executeUrl(String httpMethod, String url, InputStream content, String contentType, int timeout, ResponseCallback callback) {
+		return executeUrl(httpMethod, url, null, content, contentType, timeout, callback);
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> in the background.
+	 * 
+	 * @see HttpUtil#executeUrl(String, String, Properties, InputStream, String, int)
+	 * @param callback the callback which receives the response or <code>null</code>
+	 * @return the future response body, which is <code>null</code> when the request went wrong
+	 */
+	public static Future<String> executeUrl(final String httpMethod, final String url, final Properties httpHeaders, final InputStream content, final String contentType, final int timeout, final ResponseCallback callback) {
+		RequestTask task = new RequestTask(new Callable<String>() {
+			@Override
+			public String call() {
+				return HttpUtil.executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout);
+			}
+		}, callback);
+		try {
+			getExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			logger.warn("Too many pending HTTP requests, rejecting {} request to '{}'", httpMethod, url);
+			task.discard();
+		}
+		return task;
+	}
+	
+	/**
+	 * A request which passes its response to its callback once it is complete, whether it has been
+	 * executed or discarded.
+	 */
+	private static class RequestTask extends FutureTask<String> {
+		
+		private final ResponseCallback callback;
+		
+		RequestTask(Callable<String> request, ResponseCallback callback) {
+			super(request);
+			this.callback = callback;
+		}
+		
+		/**
+		 * Completes the request without executing it, its response is <code>null</code>.
+		 */
+		void discard() {
+			set(null);
+		}
+		
+		@Override
+		protected void done() {
+			if (callback == null) {
+				return;
+			}
+			String response = null;
+			if (!isCancelled()) {
+				try {
+					response = get();
+				} catch (InterruptedException | ExecutionException e) {
+					// the request went wrong
+				}
+			}
+			try {
+				callback.completed(response);
+			} catch (RuntimeException e) {
+				logger.error("HTTP response callback failed", e);
+			}
+		}
+	}
+	
+	private static synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			final AtomicInteger threadNumber = new AtomicInteger();
+			int poolSize = Math.max(1, MAX_REQUESTS);
+			executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(Math.max(1, MAX_QUEUED)), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "openHAB 1.x HTTP request " + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+	
+	/**
+	 * Stops the threads of the asynchronous requests. Running requests are interrupted, waiting requests
+	 * are discarded and completed with a <code>null</code> response. A subsequent request creates new threads.
+	 */
+	public static synchronized void shutdownExecutor() {
+		if (executor != null) {
+			List<Runnable> waiting = executor.shutdownNow();
+			executor = null;
+			for (Runnable runnable : waiting) {
+				((RequestTask) runnable).discard();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+/**
+ * A pool of persistent HTTP connections which is shared by all requests of the {@link HttpUtil}.
+ *
+ * <p>There is one {@link HttpClient} per proxy configuration, all of them share the same connection
+ * manager. The clients do not hold any credentials, these are passed with a separate {@link HttpState}
+ * per request. Connections which have been idle for longer than the idle timeout are closed.</p>
+ *
+ * @since 2.0.0
+ */
+class HttpClientPool {
+
+	private final MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+
+	private final IdleConnectionTimeoutThread idleConnectionThread = new IdleConnectionTimeoutThread();
+
+	private final ConcurrentMap<ClientKey, HttpClient> clients = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new pool.
+	 *
+	 * @param maxConnectionsPerHost the maximum number of connections to a single host
+	 * @param maxConnections the maximum number of connections in total
+	 * @param idleTimeout the time in milliseconds after which an idle connection is closed
+	 */
+	HttpClientPool(int maxConnectionsPerHost, int maxConnections, long idleTimeout) {
+		HttpConnectionManagerParams params = connectionManager.getParams();
+		params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+		params.setMaxTotalConnections(maxConnections);
+		idleConnectionThread.setName("openHAB 1.x HTTP idle connection closer");
+		idleConnectionThread.setConnectionTimeout(idleTimeout);
+		idleConnectionThread.setTimeoutInterval(Math.max(1000, idleTimeout / 2));
+		idleConnectionThread.addConnectionManager(connectionManager);
+		idleConnectionThread.start();
+	}
+
+	/**
+	 * Returns the client for a proxy configuration.
+	 *
+	 * @param proxyHost the host of the proxy or <code>null</code> for direct connections
+	 * @param proxyPort the port of the proxy
+	 * @param preemptiveAuthentication true, if credentials are sent without being asked for
+	 * @return the client, which must only be used with a separate {@link HttpState}
+	 */
+	HttpClient getClient(String proxyHost, int proxyPort, boolean preemptiveAuthentication) {
+		ClientKey key = new ClientKey(proxyHost, proxyPort, preemptiveAuthentication);
+		HttpClient client = clients.get(key);
+		if (client == null) {
+			client = new HttpClient(connectionManager);
+			if (proxyHost != null) {
+				client.getHostConfiguration().setProxy(proxyHost, proxyPort);
+			}
+			client.getParams().setAuthenticationPreemptive(preemptiveAuthentication);
+			HttpClient existingClient = clients.putIfAbsent(key, client);
+			if (existingClient != null) {
+				client = existingClient;
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * @return the number of open connections
+	 */
+	int getConnectionCount() {
+		return connectionManager.getConnectionsInPool();
+	}
+
+	/**
+	 * Closes all connections and stops the idle connection thread.
+	 */
+	void shutdown() {
+		idleConnectionThread.shutdown();
+		connectionManager.shutdown();
+		clients.clear();
+	}
+
+	@Override
+	public String toString() {
+		HttpConnectionManagerParams params = connectionManager.getParams();
+		return "connections=" + getConnectionCount() + ", maxConnectionsPerHost="
+				+ params.getDefaultMaxConnectionsPerHost() + ", maxConnections=" + params.getMaxTotalConnections();
+	}
+
+	private static final class ClientKey {
+		private final String proxyHost;
+		private final int proxyPort;
+		private final boolean preemptiveAuthentication;
+
+		ClientKey(String proxyHost, int proxyPort, boolean preemptiveAuthentication) {
+			this.proxyHost = proxyHost;
+			this.proxyPort = proxyHost != null ? proxyPort : 0;
+			this.preemptiveAuthentication = preemptiveAuthentication;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = proxyHost == null ? 0 : proxyHost.hashCode();
+			result = 31 * result + proxyPort;
+			return 31 * result + (preemptiveAuthentication ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ClientKey)) {
+				return false;
+			}
+			ClientKey other = (ClientKey) obj;
+			return proxyPort == other.proxyPort && preemptiveAuthentication == other.preemptiveAuthentication
+					&& (proxyHost == null ? other.proxyHost == null : proxyHost.equals(other.proxyHost));
+		}
+	}
+
+}
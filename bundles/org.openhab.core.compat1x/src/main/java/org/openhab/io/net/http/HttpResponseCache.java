@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HeaderElement;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.util.DateParseException;
+import org.apache.commons.httpclient.util.DateUtil;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size-bounded LRU cache for the responses of GET requests of the {@link HttpUtil}.
+ * 
+ * <p>Responses are fresh as long as their <code>Cache-Control: max-age</code> or <code>Expires</code>
+ * header allows, or for the time configured for their URL. Fresh responses are served from memory, stale
+ * responses with an <code>ETag</code> or <code>Last-Modified</code> header are revalidated by a
+ * conditional request. Responses with <code>Cache-Control: no-store</code> or a <code>Vary</code>
+ * header are not cached.</p>
+ * 
+ * @since 2.0.0
+ */
+class HttpResponseCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(HttpResponseCache.class);
+
+	private final int maxEntrySize;
+
+	/** the time to live in milliseconds by URL prefix */
+	private final Map<String, Long> timesToLive = new LinkedHashMap<>();
+
+	private final Map<String, Entry> entries;
+
+	/**
+	 * Creates a new cache.
+	 * 
+	 * @param maxEntries the maximum number of cached responses
+	 * @param maxEntrySize the maximum size of a cached response in bytes
+	 * @param timesToLive the times to live of URLs, in the format
+	 * <code>urlPrefix=seconds|urlPrefix=seconds</code>, or <code>null</code>
+	 */
+	HttpResponseCache(final int maxEntries, int maxEntrySize, String timesToLive) {
+		this.maxEntrySize = maxEntrySize;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		if (StringUtils.isNotBlank(timesToLive)) {
+			for (String timeToLive : timesToLive.split("\\|")) {
+				int separator = timeToLive.lastIndexOf('=');
+				try {
+					this.timesToLive.put(timeToLive.substring(0, separator).trim(),
+							Long.parseLong(timeToLive.substring(separator + 1).trim()) * 1000);
+				} catch (RuntimeException e) {
+					logger.warn("Ignoring invalid HTTP cache time to live '{}'", timeToLive);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A cached response.
+	 */
+	static class Entry {
+		final byte[] body;
+		final String charset;
+		final String etag;
+		final String lastModified;
+		volatile long expires;
+
+		Entry(byte[] body, String charset, String etag, String lastModified, long expires) {
+			this.body = body;
+			this.charset = charset;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.expires = expires;
+		}
+
+		boolean isFresh(long now) {
+			return now < expires;
+		}
+	}
+
+	/**
+	 * @return the maximum size of a cached response in bytes
+	 */
+	int getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	/**
+	 * Determines the key of a request. Requests with different headers are cached separately.
+	 * 
+	 * @param url the URL of the request
+	 * @param httpHeaders the headers of the request or <code>null</code>
+	 * @return the key
+	 */
+	static String getKey(String url, Properties httpHeaders) {
+		if (httpHeaders == null || httpHeaders.isEmpty()) {
+			return url;
+		}
+		return url + " " + new TreeMap<Object, Object>(httpHeaders);
+	}
+
+	synchronized Entry get(String key) {
+		return entries.get(key);
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Adds the headers which make a request conditional on the cached response.
+	 */
+	static void addConditionalHeaders(HttpMethod method, Entry entry) {
+		if (entry.etag != null) {
+			method.setRequestHeader("If-None-Match", entry.etag);
+		}
+		if (entry.lastModified != null) {
+			method.setRequestHeader("If-Modified-Since", entry.lastModified);
+		}
+	}
+
+	/**
+	 * Caches a complete response, if its headers allow it.
+	 * 
+	 * @param key the key of the request
+	 * @param url the URL of the request
+	 * @param method the executed method with a status code of 200
+	 * @param body the body of the response
+	 * @param charset the charset of the response or <code>null</code>
+	 */
+	void put(String key, String url, HttpMethod method, byte[] body, String charset) {
+		if (body.length > maxEntrySize || method.getResponseHeader("Vary") != null
+				|| hasDirective(method, "no-store")) {
+			return;
+		}
+		String etag = getHeader(method, "ETag");
+		String lastModified = getHeader(method, "Last-Modified");
+		long expires = getExpires(url, method);
+		if (expires > System.currentTimeMillis() || etag != null || lastModified != null) {
+			synchronized (this) {
+				entries.put(key, new Entry(body, charset, etag, lastModified, expires));
+			}
+		}
+	}
+
+	/**
+	 * Renews a cached response after the server confirmed it with a status code of 304.
+	 * 
+	 * @param url the URL of the request
+	 * @param method the executed method
+	 * @param entry the confirmed response
+	 */
+	void revalidated(String url, HttpMethod method, Entry entry) {
+		entry.expires = getExpires(url, method);
+	}
+
+	/**
+	 * Determines until when a response is fresh.
+	 * 
+	 * @return the time in milliseconds, which is not in the future if the response has to be revalidated
+	 */
+	private long getExpires(String url, HttpMethod method) {
+		long now = System.currentTimeMillis();
+		Long timeToLive = getTimeToLive(url);
+		if (timeToLive != null) {
+			return now + timeToLive;
+		}
+		Header cacheControl = method.getResponseHeader("Cache-Control");
+		if (cacheControl != null) {
+			for (HeaderElement element : cacheControl.getElements()) {
+				if ("no-cache".equalsIgnoreCase(element.getName())) {
+					return now;
+				}
+				if ("max-age".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+					try {
+						return now + Long.parseLong(element.getValue().trim()) * 1000;
+					} catch (NumberFormatException e) {
+						return now;
+					}
+				}
+			}
+		}
+		String expires = getHeader(method, "Expires");
+		if (expires != null) {
+			try {
+				return DateUtil.parseDate(expires).getTime();
+			} catch (DateParseException e) {
+				return now;
+			}
+		}
+		return now;
+	}
+
+	/**
+	 * @return the time to live configured for the longest matching URL prefix or <code>null</code>
+	 */
+	private Long getTimeToLive(String url) {
+		String prefix = null;
+		for (String candidate : timesToLive.keySet()) {
+			if (url.startsWith(candidate) && (prefix == null || candidate.length() > prefix.length())) {
+				prefix = candidate;
+			}
+		}
+		return prefix != null ? timesToLive.get(prefix) : null;
+	}
+
+	private static boolean hasDirective(HttpMethod method, String directive) {
+		Header cacheControl = method.getResponseHeader("Cache-Control");
+		if (cacheControl != null) {
+			for (HeaderElement element : cacheControl.getElements()) {
+				if (directive.equalsIgnoreCase(element.getName())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static String getHeader(HttpMethod method, String name) {
+		Header header = method.getResponseHeader(name);
+		return header != null ? header.getValue() : null;
+	}
+
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Processes the body of a response while it is received, so that large responses do not have to be
+ * buffered completely.
+ * 
+ * @param <T> the type of the result
+ * 
+ * @since 2.0.0
+ */
+public interface HttpResponseHandler<T> {
+
+	/**
+	 * Processes the body of a response. The stream must not be used after this method returned, the
+	 * connection is released afterwards.
+	 * 
+	 * @param statusCode the HTTP status code of the response
+	 * @param body the body of the response, which is empty if there is none
+	 * @param charset the charset given by the <code>Content-Type</code> header of the response or
+	 * <code>null</code> if there is none or it is not supported
+	 * @return the result of the request
+	 * @throws IOException if the body cannot be read or processed
+	 */
+	T handleResponse(int statusCode, InputStream body, String charset) throws IOException;
+
+}
@@ -8,20 +8,30 @@
  */
 package org.openhab.io.net.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
 import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HeaderElement;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
@@ -42,6 +52,25 @@ import org.slf4j.LoggerFactory;
 /**
  * Some common methods to be used in both HTTP-In-Binding and HTTP-Out-Binding
  * 
+ * <p>By default every request opens a new connection. If the system property
+ * <code>openhab.compat1x.http.pooled</code> is set to <code>true</code>, connections are kept alive and
+ * reused from a shared pool instead, which is limited to <code>openhab.compat1x.http.maxConnectionsPerHost</code>
+ * connections per host (default: 4) and <code>openhab.compat1x.http.maxConnections</code> connections in
+ * total (default: 40). Connections which are idle for <code>openhab.compat1x.http.idleTimeout</code>
+ * milliseconds (default: 60000) are closed.</p>
+ * 
+ * <p>Responses which are returned as a whole are limited to <code>openhab.compat1x.http.maxResponseSize</code>
+ * bytes (default: unlimited), larger responses are treated as failed requests. Large responses should
+ * rather be processed by a {@link HttpResponseHandler} while they are received.</p>
+ * 
+ * <p>If the system property <code>openhab.compat1x.http.cache</code> is set to <code>true</code>, the
+ * responses of GET requests are cached as far as their <code>Cache-Control</code>, <code>Expires</code>,
+ * <code>ETag</code> and <code>Last-Modified</code> headers allow (see {@link HttpResponseCache}). The cache
+ * holds up to <code>openhab.compat1x.http.cache.maxEntries</code> responses (default: 100) of at most
+ * <code>openhab.compat1x.http.cache.maxEntrySize</code> bytes (default: 262144). The time to live of
+ * responses can be overridden by <code>openhab.compat1x.http.cache.ttl</code>, e.g.
+ * <code>http://weather.example.org/=300|http://nas.local/status=10</code> (in seconds by URL prefix).</p>
+ * 
  * @author Thomas.Eichstaedt-Engelen
  * @author Kai Kreuzer
  * @since 0.6.0
@@ -53,6 +82,52 @@ public class HttpUtil {
 	/** {@link Pattern} which matches the credentials out of an URL */ 
 	private static final Pattern URL_CREDENTIALS_PATTERN = Pattern.compile("http://(.*?):(.*?)@.*");
 	
+	/** the maximum number of URL prefixes whose credentials are cached */
+	private static final int CREDENTIALS_CACHE_SIZE = 256;
+	
+	/** the credentials extracted from URLs, by the URL prefix up to the end of the user info */
+	private static final ConcurrentMap<String, Credentials> credentialsCache = new ConcurrentHashMap<>();
+	
+	/** the last compiled <code>nonProxyHosts</code> */
+	private static volatile NonProxyHostMatcher nonProxyHostMatcher;
+	
+	private static final boolean POOLED_CONNECTIONS = Boolean.getBoolean("openhab.compat1x.http.pooled");
+	
+	private static final int MAX_CONNECTIONS_PER_HOST = Integer.getInteger("openhab.compat1x.http.maxConnectionsPerHost", 4);
+	
+	private static final int MAX_CONNECTIONS = Integer.getInteger("openhab.compat1x.http.maxConnections", 40);
+	
+	private static final long IDLE_TIMEOUT = Long.getLong("openhab.compat1x.http.idleTimeout", 60000);
+	
+	private static final long MAX_RESPONSE_SIZE = Long.getLong("openhab.compat1x.http.maxResponseSize", 0);
+	
+	/** reads the whole response as a string, using the platform charset if the response does not specify one */
+	private static final HttpResponseHandler<String> STRING_RESPONSE_HANDLER = new HttpResponseHandler<String>() {
+		@Override
+		public String handleResponse(int statusCode, InputStream body, String charset) throws IOException {
+			String responseBody = IOUtils.toString(limit(body, MAX_RESPONSE_SIZE), charset);
+			if (!responseBody.isEmpty()) {
+				logger.debug("Received response of {} characters", responseBody.length());
+				logger.trace(responseBody);
+			}
+			return responseBody;
+		}
+	};
+	
+	/** the connection pool shared by all requests, created on first use if pooling is enabled */
+	private static HttpClientPool clientPool;
+	
+	private static final boolean RESPONSE_CACHE = Boolean.getBoolean("openhab.compat1x.http.cache");
+	
+	private static final int CACHE_MAX_ENTRIES = Integer.getInteger("openhab.compat1x.http.cache.maxEntries", 100);
+	
+	private static final int CACHE_MAX_ENTRY_SIZE = Integer.getInteger("openhab.compat1x.http.cache.maxEntrySize", 262144);
+	
+	private static final String CACHE_TIMES_TO_LIVE = System.getProperty("openhab.compat1x.http.cache.ttl");
+	
+	/** the cache of GET responses, created on first use if caching is enabled */
+	private static HttpResponseCache responseCache;
+	
 
 	/**
 	 * Executes the given <code>url</code> with the given <code>httpMethod</code>.
@@ -104,6 +179,48 @@ public class HttpUtil {
 	 * @return the response body or <code>NULL</code> when the request went wrong
 	 */
 	public static String executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout) {
+		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, STRING_RESPONSE_HANDLER);
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> and returns the body
+	 * of the response as bytes. Furthermore the <code>http.proxyXXX</code> System variables are read and
+	 * set into the {@link HttpClient}.
+	 * 
+	 * @param httpMethod the HTTP method to use
+	 * @param url the url to execute
+	 * @param timeout the socket timeout to wait for data (in milliseconds)
+	 * @param maxSize the maximum size of the response in bytes or <code>0</code> for no limit
+	 * 
+	 * @return the response body or <code>NULL</code> when the request went wrong or the response
+	 * is larger than <code>maxSize</code>
+	 */
+	public static byte[] executeUrlAsBytes(String httpMethod, String url, int timeout, final long maxSize) {
+		return executeUrl(httpMethod, url, null, null, null, timeout, new HttpResponseHandler<byte[]>() {
+			@Override
+			public byte[] handleResponse(int statusCode, InputStream body, String charset) throws IOException {
+				return IOUtils.toByteArray(limit(body, maxSize));
+			}
+		});
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> and passes the body of
+	 * the response to the given <code>handler</code> while it is received. Furthermore the
+	 * <code>http.proxyXXX</code> System variables are read and set into the {@link HttpClient}.
+	 * 
+	 * @param httpMethod the HTTP method to use
+	 * @param url the url to execute
+	 * @param httpHeaders optional http request headers which has to be sent within request 
+	 * @param content the content to be send to the given <code>url</code> or 
+	 * <code>null</code> if no content should be send.
+	 * @param contentType the content type of the given <code>content</code>
+	 * @param timeout the socket timeout to wait for data (in milliseconds)
+	 * @param handler the handler which processes the response body
+	 * 
+	 * @return the result of the handler or <code>NULL</code> when the request went wrong
+	 */
+	public static <T> T executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout, HttpResponseHandler<T> handler) {
 		String proxySet = System.getProperty("http.proxySet");
 		
 		String proxyHost = null;
@@ -127,7 +244,7 @@ public class HttpUtil {
 			nonProxyHosts = System.getProperty("http.nonProxyHosts");
 		}
 		
-		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, proxyHost, proxyPort, proxyUser, proxyPassword, nonProxyHosts);
+		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, proxyHost, proxyPort, proxyUser, proxyPassword, nonProxyHosts, handler);
 
 	}
 	
@@ -149,16 +266,66 @@ public class HttpUtil {
 	 * @return the response body or <code>NULL</code> when the request went wrong
 	 */
 	public static String executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout, String proxyHost, Integer proxyPort, String proxyUser, String proxyPassword, String nonProxyHosts) {
+		return executeUrl(httpMethod, url, httpHeaders, content, contentType, timeout, proxyHost, proxyPort, proxyUser, proxyPassword, nonProxyHosts, STRING_RESPONSE_HANDLER);
+	}
+	
+	/**
+	 * Executes the given <code>url</code> with the given <code>httpMethod</code> and passes the body of
+	 * the response to the given <code>handler</code> while it is received.
+	 * 
+	 * @param httpMethod the HTTP method to use
+	 * @param url the url to execute
+	 * @param httpHeaders optional HTTP headers which has to be set on request
+	 * @param content the content to be send to the given <code>url</code> or 
+	 * <code>null</code> if no content should be send.
+	 * @param contentType the content type of the given <code>content</code>
+	 * @param timeout the socket timeout to wait for data (in milliseconds)
+	 * @param proxyHost the hostname of the proxy
+	 * @param proxyPort the port of the proxy
+	 * @param proxyUser the username to authenticate with the proxy
+	 * @param proxyPassword the password to authenticate with the proxy
+	 * @param nonProxyHosts the hosts that won't be routed through the proxy
+	 * @param handler the handler which processes the response body
+	 * @return the result of the handler or <code>NULL</code> when the request went wrong
+	 */
+	public static <T> T executeUrl(String httpMethod, String url, Properties httpHeaders, InputStream content, String contentType, int timeout, String proxyHost, Integer proxyPort, String proxyUser, String proxyPassword, String nonProxyHosts, HttpResponseHandler<T> handler) {
 		
-		HttpClient client = new HttpClient();
+		HttpResponseCache cache = getResponseCache();
+		String cacheKey = null;
+		HttpResponseCache.Entry cachedResponse = null;
+		if (cache != null && "GET".equals(httpMethod) && content == null) {
+			cacheKey = HttpResponseCache.getKey(url, httpHeaders);
+			cachedResponse = cache.get(cacheKey);
+			if (cachedResponse != null && cachedResponse.isFresh(System.currentTimeMillis())) {
+				logger.debug("Using cached response for '{}'", url);
+				return handleCachedResponse(cachedResponse, handler);
+			}
+		}
 		
 		// only configure a proxy if a host is provided
-		if (StringUtils.isNotBlank(proxyHost) && proxyPort != null && shouldUseProxy(url, nonProxyHosts)) {
-			client.getHostConfiguration().setProxy(proxyHost, proxyPort);
-			if (StringUtils.isNotBlank(proxyUser)) {
-				client.getState().setProxyCredentials(AuthScope.ANY,
-					new UsernamePasswordCredentials(proxyUser, proxyPassword));
+		boolean useProxy = StringUtils.isNotBlank(proxyHost) && proxyPort != null && shouldUseProxy(url, nonProxyHosts);
+		Credentials credentials = extractCredentials(url);
+
+		HttpClient client;
+		HttpState state;
+		HttpClientPool pool = getClientPool();
+		if (pool != null) {
+			// shared clients must not hold any request specific state
+			client = pool.getClient(useProxy ? proxyHost : null, useProxy ? proxyPort : 0, credentials != null);
+			state = new HttpState();
+		} else {
+			client = new HttpClient();
+			if (useProxy) {
+				client.getHostConfiguration().setProxy(proxyHost, proxyPort);
+			}
+			if (credentials != null) {
+				client.getParams().setAuthenticationPreemptive(true);
 			}
+			state = client.getState();
+		}
+		
+		if (useProxy && StringUtils.isNotBlank(proxyUser)) {
+			state.setProxyCredentials(AuthScope.ANY, new UsernamePasswordCredentials(proxyUser, proxyPassword));
 		}
 		  
 		HttpMethod method = HttpUtil.createHttpMethod(httpMethod, url);
@@ -176,10 +343,12 @@ public class HttpUtil {
 			eeMethod.setRequestEntity(new InputStreamRequestEntity(content, contentType));
 		}
 
-		Credentials credentials = extractCredentials(url);
 		if (credentials != null) {
-			client.getParams().setAuthenticationPreemptive(true); 
-			client.getState().setCredentials(AuthScope.ANY, credentials);			
+			state.setCredentials(AuthScope.ANY, credentials);
+		}
+		
+		if (cachedResponse != null) {
+			HttpResponseCache.addConditionalHeaders(method, cachedResponse);
 		}
 
 		if (logger.isDebugEnabled()) {
@@ -190,19 +359,34 @@ public class HttpUtil {
 			}
 		}
 
+		// the connection can only be reused if the whole response body has been read, otherwise releasing it
+		// would read the rest of the body, which may be arbitrarily large
+		boolean consumed = false;
 		try {
 			
-			int statusCode = client.executeMethod(method);
+			int statusCode = client.executeMethod(null, method, state);
+			if (cachedResponse != null && statusCode == HttpStatus.SC_NOT_MODIFIED) {
+				logger.debug("Response for '{}' has not been modified, using cached response", url);
+				consumed = true;
+				cache.revalidated(url, method, cachedResponse);
+				return handleCachedResponse(cachedResponse, handler);
+			}
 			if (statusCode != HttpStatus.SC_OK) {
 				logger.warn("Method failed: " + method.getStatusLine());
 			}
 
-			String responseBody = IOUtils.toString(method.getResponseBodyAsStream());
-			if (!responseBody.isEmpty()) {
-				logger.debug(responseBody);
+			InputStream body = method.getResponseBodyAsStream();
+			if (body == null) {
+				body = new ByteArrayInputStream(new byte[0]);
 			}
-			
-			return responseBody;
+			String charset = getResponseCharset(method);
+			if (cacheKey != null && statusCode == HttpStatus.SC_OK) {
+				body = cacheResponse(cache, cacheKey, url, method, body, charset);
+			}
+			EndTrackingInputStream trackedBody = new EndTrackingInputStream(body);
+			T result = handler.handleResponse(statusCode, trackedBody, charset);
+			consumed = trackedBody.isAtEnd();
+			return result;
 		}
 		catch (HttpException he) {
 			logger.error("Fatal protocol violation: {}", he.toString());
@@ -211,12 +395,196 @@ public class HttpUtil {
 			logger.error("Fatal transport error: {}", ioe.toString());
 		}
 		finally {
+			if (!consumed) {
+				// closes the connection, so that the rest of the body is not read when it is released
+				method.abort();
+			}
 			method.releaseConnection();
 		}
 		
 		return null;
 	}
 
+	private static <T> T handleCachedResponse(HttpResponseCache.Entry cachedResponse, HttpResponseHandler<T> handler) {
+		try {
+			return handler.handleResponse(HttpStatus.SC_OK, new ByteArrayInputStream(cachedResponse.body), cachedResponse.charset);
+		} catch (IOException ioe) {
+			logger.error("Cannot process cached response: {}", ioe.toString());
+			return null;
+		}
+	}
+	
+	/**
+	 * Buffers a response and caches it, if it is small enough.
+	 * 
+	 * @return a stream of the complete response body
+	 */
+	private static InputStream cacheResponse(HttpResponseCache cache, String cacheKey, String url, HttpMethod method, InputStream body, String charset) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] chunk = new byte[4096];
+		int count;
+		while (buffer.size() <= cache.getMaxEntrySize() && (count = body.read(chunk)) != -1) {
+			buffer.write(chunk, 0, count);
+		}
+		byte[] bytes = buffer.toByteArray();
+		if (bytes.length > cache.getMaxEntrySize()) {
+			// too large to be cached, the rest is passed on without buffering
+			return new SequenceInputStream(new ByteArrayInputStream(bytes), body);
+		}
+		cache.put(cacheKey, url, method, bytes, charset);
+		return new ByteArrayInputStream(bytes);
+	}
+	
+	/**
+	 * Determines the charset of a response from its <code>Content-Type</code> header.
+	 * 
+	 * @param method the executed method
+	 * @return the charset or <code>null</code> if there is none or it is not supported
+	 */
+	private static String getResponseCharset(HttpMethod method) {
+		Header contentType = method.getResponseHeader("Content-Type");
+		if (contentType != null) {
+			for (HeaderElement element : contentType.getElements()) {
+				NameValuePair charset = element.getParameterByName("charset");
+				if (charset != null && StringUtils.isNotBlank(charset.getValue())) {
+					String name = charset.getValue().trim();
+					try {
+						if (Charset.isSupported(name)) {
+							return name;
+						}
+					} catch (IllegalArgumentException e) {
+						// illegal charset name
+					}
+					logger.debug("Unsupported charset '{}' in response", name);
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Limits the number of bytes which can be read from a stream.
+	 * 
+	 * @param in the stream to limit
+	 * @param maxSize the maximum number of bytes or <code>0</code> for no limit
+	 * @return a stream which fails with an {@link IOException} when more than <code>maxSize</code> bytes are read
+	 */
+	static InputStream limit(InputStream in, final long maxSize) {
+		if (maxSize <= 0) {
+			return in;
+		}
+		return new FilterInputStream(in) {
+			private long remaining = maxSize;
+			
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b != -1) {
+					consume(1);
+				}
+				return b;
+			}
+			
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int count = super.read(b, off, (int) Math.min(len, remaining + 1));
+				if (count > 0) {
+					consume(count);
+				}
+				return count;
+			}
+			
+			private void consume(int count) throws IOException {
+				remaining -= count;
+				if (remaining < 0) {
+					throw new IOException("Response exceeds the limit of " + maxSize + " bytes");
+				}
+			}
+		};
+	}
+
+	/**
+	 * A stream which records whether it has been read to its end.
+	 */
+	private static class EndTrackingInputStream extends FilterInputStream {
+		
+		private boolean atEnd;
+		
+		EndTrackingInputStream(InputStream in) {
+			super(in);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b == -1) {
+				atEnd = true;
+			}
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = super.read(b, off, len);
+			if (count == -1) {
+				atEnd = true;
+			}
+			return count;
+		}
+		
+		boolean isAtEnd() {
+			return atEnd;
+		}
+	}
+
+	private static synchronized HttpClientPool getClientPool() {
+		if (clientPool == null && POOLED_CONNECTIONS) {
+			clientPool = new HttpClientPool(MAX_CONNECTIONS_PER_HOST, MAX_CONNECTIONS, IDLE_TIMEOUT);
+		}
+		return clientPool;
+	}
+	
+	private static synchronized HttpResponseCache getResponseCache() {
+		if (responseCache == null && RESPONSE_CACHE) {
+			responseCache = new HttpResponseCache(CACHE_MAX_ENTRIES, CACHE_MAX_ENTRY_SIZE, CACHE_TIMES_TO_LIVE);
+		}
+		return responseCache;
+	}
+	
+	/**
+	 * Replaces the response cache, e.g. to test caching without system properties.
+	 * 
+	 * @param cache the new cache or <code>null</code>
+	 * @return the previous cache
+	 */
+	static synchronized HttpResponseCache setResponseCache(HttpResponseCache cache) {
+		HttpResponseCache previousCache = responseCache;
+		responseCache = cache;
+		return previousCache;
+	}
+	
+	/**
+	 * Replaces the shared connection pool, e.g. to compare pooled and unpooled requests in tests.
+	 * 
+	 * @param pool the new pool or <code>null</code>
+	 * @return the previous pool
+	 */
+	static synchronized HttpClientPool setClientPool(HttpClientPool pool) {
+		HttpClientPool previousPool = clientPool;
+		clientPool = pool;
+		return previousPool;
+	}
+	
+	/**
+	 * Closes all pooled connections. A subsequent request creates a new pool.
+	 */
+	public static synchronized void shutdownConnectionPool() {
+		if (clientPool != null) {
+			clientPool.shutdown();
+			clientPool = null;
+		}
+	}
+
 	/**
 	 * Determines whether the list of <code>nonProxyHosts</code> contains the
 	 * host (which is part of the given <code>urlString</code> or not.
@@ -228,7 +596,7 @@ public class HttpUtil {
 	 * is contained in <code>nonProxyHosts</code>-list and <code>true</code>
 	 * otherwise
 	 */
-	private static boolean shouldUseProxy(String urlString, String nonProxyHosts) {
+	static boolean shouldUseProxy(String urlString, String nonProxyHosts) {
 		
 		if (StringUtils.isNotBlank(nonProxyHosts)) {
 			String givenHost = urlString;
@@ -240,21 +608,14 @@ public class HttpUtil {
 				logger.error("the given url {} is malformed", urlString);
 			}
 			
-			String[] hosts = nonProxyHosts.split("\\|");
-			for (String host : hosts) {
-				if (host.contains("*")) {
-					// the nonProxyHots-pattern allows wildcards '*' which must
-					// be masked to be used with regular expressions
-					String hostRegexp = host.replaceAll("\\.", "\\\\.");
-					hostRegexp = hostRegexp.replaceAll("\\*", ".*");
-					if (givenHost.matches(hostRegexp)) {
-						return false;
-					}
-				} else {
-					if (givenHost.equals(host)) {
-						return false;
-					}
-				}
+			// the hosts are only compiled again when they changed
+			NonProxyHostMatcher matcher = nonProxyHostMatcher;
+			if (matcher == null || !matcher.getNonProxyHosts().equals(nonProxyHosts)) {
+				matcher = new NonProxyHostMatcher(nonProxyHosts);
+				nonProxyHostMatcher = matcher;
+			}
+			if (matcher.matches(givenHost)) {
+				return false;
 			}
 		}
 		
@@ -275,6 +636,29 @@ public class HttpUtil {
  	 */
 	protected static Credentials extractCredentials(String url) {
 		
+		int start = url.indexOf("://");
+		int end = url.indexOf('@', start < 0 ? 0 : start + 3);
+		if (end < 0) {
+			return null;
+		}
+		// the credentials only depend on the scheme and the user info, i.e. the part of the URL up to the
+		// first '@', so that URLs which only differ in their path or query share the cached credentials
+		String prefix = url.substring(0, end + 1);
+		Credentials credentials = credentialsCache.get(prefix);
+		if (credentials == null) {
+			credentials = parseCredentials(prefix);
+			if (credentials != null) {
+				if (credentialsCache.size() >= CREDENTIALS_CACHE_SIZE) {
+					credentialsCache.clear();
+				}
+				credentialsCache.put(prefix, credentials);
+			}
+		}
+		return credentials;
+	}
+	
+	private static Credentials parseCredentials(String url) {
+		
 		Matcher matcher = URL_CREDENTIALS_PATTERN.matcher(url);
 		
 		if (matcher.matches()) {
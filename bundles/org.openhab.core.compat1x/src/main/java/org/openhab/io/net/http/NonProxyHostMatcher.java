@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.net.http;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Matches host names against a list of hosts in the format of the <code>http.nonProxyHosts</code> system
+ * property, i.e. host names separated by <code>|</code>, which may contain <code>*</code> as a wildcard.
+ * 
+ * <p>Hosts without wildcard are looked up in a set, all hosts with wildcards are combined into a single
+ * precompiled pattern.</p>
+ * 
+ * @since 2.0.0
+ */
+class NonProxyHostMatcher {
+
+	private final String nonProxyHosts;
+
+	private final Set<String> exactHosts = new HashSet<>();
+
+	private final Pattern wildcardHosts;
+
+	/**
+	 * Compiles a list of hosts.
+	 * 
+	 * @param nonProxyHosts the hosts separated by <code>|</code>
+	 */
+	NonProxyHostMatcher(String nonProxyHosts) {
+		this.nonProxyHosts = nonProxyHosts;
+		StringBuilder wildcardRegex = new StringBuilder();
+		for (String host : nonProxyHosts.split("\\|")) {
+			if (host.contains("*")) {
+				if (wildcardRegex.length() > 0) {
+					wildcardRegex.append('|');
+				}
+				wildcardRegex.append("(?:");
+				String[] parts = StringUtils.splitPreserveAllTokens(host, '*');
+				for (int i = 0; i < parts.length; i++) {
+					if (i > 0) {
+						wildcardRegex.append(".*");
+					}
+					if (!parts[i].isEmpty()) {
+						wildcardRegex.append(Pattern.quote(parts[i]));
+					}
+				}
+				wildcardRegex.append(')');
+			} else {
+				exactHosts.add(host);
+			}
+		}
+		wildcardHosts = wildcardRegex.length() > 0 ? Pattern.compile(wildcardRegex.toString()) : null;
+	}
+
+	/**
+	 * @return the list of hosts this matcher was compiled from
+	 */
+	String getNonProxyHosts() {
+		return nonProxyHosts;
+	}
+
+	/**
+	 * Determines whether a host is contained in the list of hosts.
+	 * 
+	 * @param host the host name
+	 * @return true, if the host is one of the hosts or matches one with wildcards
+	 */
+	boolean matches(String host) {
+		return exactHosts.contains(host) || (wildcardHosts != null && wildcardHosts.matcher(host).matches());
+	}
+
+}
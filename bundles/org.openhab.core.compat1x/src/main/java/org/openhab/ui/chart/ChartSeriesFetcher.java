@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2015-2015 Kai Kreuzer and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.chart;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.QueryablePersistenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helps {@link ChartProvider}s to fetch the data of all series of a chart in parallel instead of one
+ * after the other, so that a chart with many series takes about as long as its slowest query.
+ *
+ * <p>The queries run on a shared pool of <code>openhab.compat1x.chart.threads</code> threads (default: 4).
+ * A fetch waits at most <code>openhab.compat1x.chart.timeout</code> milliseconds (default: 30000) for all
+ * of its series; series which are not complete by then are cancelled and reported as failed.</p>
+ *
+ * @since 2.0.0
+ */
+public class ChartSeriesFetcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChartSeriesFetcher.class);
+
+	private static final int POOL_SIZE = Integer.getInteger("openhab.compat1x.chart.threads", 4);
+
+	private static final long TIMEOUT = Long.getLong("openhab.compat1x.chart.timeout", 30000);
+
+	/** the executor shared by all chart providers, created on first use */
+	private static ThreadPoolExecutor executor;
+
+	private ChartSeriesFetcher() {}
+
+	/**
+	 * Queries the data of one series.
+	 *
+	 * @param <T> the type of the data
+	 */
+	public interface SeriesQuery<T> {
+
+		/**
+		 * Fetches the data of a series. This method is called concurrently for different series.
+		 *
+		 * @param name the name of the series, usually an item name
+		 * @return the data of the series
+		 * @throws Exception if the data cannot be fetched
+		 */
+		T fetch(String name) throws Exception;
+	}
+
+	/**
+	 * The result of a query for one series.
+	 *
+	 * @param <T> the type of the data
+	 */
+	public static class Series<T> {
+
+		private final String name;
+		private final T data;
+		private final Exception error;
+		private final long fetchTime;
+
+		Series(String name, T data, Exception error, long fetchTime) {
+			this.name = name;
+			this.data = data;
+			this.error = error;
+			this.fetchTime = fetchTime;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the data of the series or <code>null</code> if the query failed
+		 */
+		public T getData() {
+			return data;
+		}
+
+		/**
+		 * @return the reason why the query failed or <code>null</code> if it succeeded
+		 */
+		public Exception getError() {
+			return error;
+		}
+
+		/**
+		 * @return the time in milliseconds the query took, not including the time it waited for a thread
+		 */
+		public long getFetchTime() {
+			return fetchTime;
+		}
+
+		@Override
+		public String toString() {
+			return name + "=" + (error!=null ? "failed" : fetchTime + "ms");
+		}
+	}
+
+	/**
+	 * Splits a comma separated list of item or group names, as it is passed to
+	 * {@link ChartProvider#createChart(String, String, Date, Date, int, int, String, String)}.
+	 *
+	 * @param names the comma separated names, may be <code>null</code>
+	 * @return the names without surrounding whitespace
+	 */
+	public static List<String> split(String names) {
+		List<String> result = new ArrayList<String>();
+		if(names!=null) {
+			for(String name : names.split(",")) {
+				if(StringUtils.isNotBlank(name)) {
+					result.add(name.trim());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Fetches the data of several series in parallel.
+	 *
+	 * @param names the names of the series
+	 * @param query the query which fetches a single series
+	 * @return the results in the order of the names
+	 */
+	public static <T> List<Series<T>> fetch(Collection<String> names, final SeriesQuery<T> query) {
+		if(names.isEmpty()) {
+			return Collections.emptyList();
+		}
+		long start = System.nanoTime();
+		List<Series<T>> result = new ArrayList<Series<T>>(names.size());
+		if(names.size()==1) {
+			// not worth a thread switch
+			result.add(fetchSeries(names.iterator().next(), query));
+		} else {
+			List<Future<Series<T>>> futures = new ArrayList<Future<Series<T>>>(names.size());
+			ThreadPoolExecutor executor = getExecutor();
+			for(final String name : names) {
+				futures.add(executor.submit(new Callable<Series<T>>() {
+					@Override
+					public Series<T> call() {
+						return fetchSeries(name, query);
+					}
+				}));
+			}
+			long deadline = start + TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+			int index = 0;
+			for(String name : names) {
+				Future<Series<T>> future = futures.get(index++);
+				try {
+					result.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+				} catch (TimeoutException e) {
+					future.cancel(true);
+					result.add(new Series<T>(name, null, e, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+				} catch (ExecutionException e) {
+					Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					result.add(new Series<T>(name, null, cause, 0));
+				} catch (CancellationException e) {
+					result.add(new Series<T>(name, null, e, 0));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					for(Future<Series<T>> remaining : futures) {
+						remaining.cancel(true);
+					}
+					result.add(new Series<T>(name, null, e, 0));
+				}
+			}
+		}
+		logger.debug("Fetched {} chart series in {}ms: {}", result.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), result);
+		return result;
+	}
+
+	/**
+	 * Fetches the persisted states of several items in parallel. The results of each query are
+	 * read completely by the pool threads, so that no lazy query work is left to the caller.
+	 *
+	 * @param service the persistence service to query
+	 * @param itemNames the names of the items
+	 * @param startTime the start time of the chart
+	 * @param endTime the end time of the chart
+	 * @return the persisted states of each item in ascending order
+	 */
+	public static List<Series<List<HistoricItem>>> fetchHistory(final QueryablePersistenceService service,
+			Collection<String> itemNames, final Date startTime, final Date endTime) {
+		return fetch(itemNames, new SeriesQuery<List<HistoricItem>>() {
+			@Override
+			public List<HistoricItem> fetch(String itemName) {
+				FilterCriteria filter = new FilterCriteria()
+					.setItemName(itemName)
+					.setBeginDate(startTime)
+					.setEndDate(endTime)
+					.setOrdering(Ordering.ASCENDING);
+				List<HistoricItem> result = new ArrayList<HistoricItem>();
+				for(HistoricItem historicItem : service.query(filter)) {
+					result.add(historicItem);
+				}
+				return result;
+			}
+		});
+	}
+
+	private static <T> Series<T> fetchSeries(String name, SeriesQuery<T> query) {
+		long start = System.nanoTime();
+		T data = null;
+		Exception error = null;
+		try {
+			data = query.fetch(name);
+		} catch (Exception e) {
+			error = e;
+		}
+		return new Series<T>(name, data, error, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor() {
+		if(executor==null) {
+			final AtomicInteger threadNumber = new AtomicInteger();
+			int poolSize = Math.max(1, POOL_SIZE);
+			executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "openHAB 1.x chart series " + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Stops the threads shared by all chart providers. Running queries are interrupted, a subsequent
+	 * fetch creates new threads.
+	 */
+	public static synchronized void shutdownExecutor() {
+		if(executor!=null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+}
@@ -14,6 +14,9 @@ import java.util.Date;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.smarthome.core.items.ItemNotFoundException;
 import org.openhab.ui.chart.ChartProvider;
+import org.openhab.ui.chart.ChartSeriesFetcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
@@ -21,10 +24,14 @@ import org.openhab.ui.chart.ChartProvider;
  * namespace for the action service. It wraps an instance with the old interface
  * into a class with the new interface. 
  * 
+ * <p>Providers can fetch the data of their series in parallel with the {@link ChartSeriesFetcher}.</p>
+ * 
  * @author Kai Kreuzer - Initial contribution and API
  */
 public class ChartProviderDelegate implements org.eclipse.smarthome.ui.chart.ChartProvider {
 
+	private static final Logger logger = LoggerFactory.getLogger(ChartProviderDelegate.class);
+
 	private ChartProvider provider;
 
 	public ChartProviderDelegate(ChartProvider chartProvider) {
@@ -40,7 +47,12 @@ public class ChartProviderDelegate implements org.eclipse.smarthome.ui.chart.Cha
     public BufferedImage createChart(String service, String theme, Date startTime, Date endTime, int height, int width,
             String items, String groups) throws ItemNotFoundException {
         try {
-            return provider.createChart(service, theme, startTime, endTime, height, width, items, groups);
+            long start = System.currentTimeMillis();
+            BufferedImage chart = provider.createChart(service, theme, startTime, endTime, height, width, items,
+                    groups);
+            logger.debug("Chart provider '{}' created chart for items '{}' and groups '{}' in {}ms.", getName(), items,
+                    groups, System.currentTimeMillis() - start);
+            return chart;
         } catch (org.openhab.core.items.ItemNotFoundException e) {
             throw new ItemNotFoundException(StringUtils.substringBetween(e.getMessage(), "'"));
         }